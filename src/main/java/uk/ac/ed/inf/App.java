@@ -3,19 +3,89 @@ import uk.ac.ed.inf.ilp.constant.OrderStatus;
 import uk.ac.ed.inf.ilp.data.Order;
 import uk.ac.ed.inf.ilp.data.Restaurant;
 import uk.ac.ed.inf.client.ApiClient;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.ClusterGraph;
+import uk.ac.ed.inf.path.DistanceField;
+import uk.ac.ed.inf.path.ExportFormat;
+import uk.ac.ed.inf.path.ExportPipeline;
 import uk.ac.ed.inf.path.FlightPlanner;
+import uk.ac.ed.inf.path.Heuristic;
+import uk.ac.ed.inf.path.LandmarkHeuristic;
+import uk.ac.ed.inf.path.OutputCompression;
+import uk.ac.ed.inf.path.RouteCache;
+import uk.ac.ed.inf.path.SearchStatistics;
+import uk.ac.ed.inf.path.SearchStrategy;
+import uk.ac.ed.inf.utils.CommandLineArguments;
 import uk.ac.ed.inf.utils.OrderValidator;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 public class App
 {
+    /**
+     * Plans the delivery flights for the given restaurants
+     * with parallelism > 1 the orders are fanned out over a ForkJoinPool,
+     * the results keep the order of the input either way
+     * @param flightPlanner - planner to use
+     * @param restaurantLocations - restaurant of every order
+     * @param parallelism - number of orders planned at once
+     * @param planned - given the index and the flight path of every order as soon as it is planned
+     * @return flight path of every order
+     */
+    private static List<List<Cell>> planDeliveries(FlightPlanner flightPlanner, List<LngLat> restaurantLocations,
+                                                   int parallelism, BiConsumer<Integer, List<Cell>> planned)
+            throws Exception {
+        IntFunction<List<Cell>> plan = i -> {
+            List<Cell> path = flightPlanner.planDeliveryFlightPath(restaurantLocations.get(i));
+            planned.accept(i, path);
+            return path;
+        };
+        if (parallelism <= 1) {
+            return IntStream.range(0, restaurantLocations.size()).mapToObj(plan).toList();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // parallel streams keep the encounter order, so paths line up with the orders
+            return pool.submit(
+                    () -> IntStream.range(0, restaurantLocations.size()).parallel().mapToObj(plan).toList()
+            ).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     public static void mainLoop(String[] args) throws Exception {
-        if (args.length != 2) {
+        CommandLineArguments arguments = new CommandLineArguments(args);
+        List<String> positional = arguments.getPositional();
+        if (positional.size() != 2) {
             throw new Exception("Invalid number of arguments. Please provide: Date; Api Base Url;");
         }
-        String date = args[0];
-        String apiUrl = args[1];
+        String date = positional.get(0);
+        String apiUrl = positional.get(1);
+        // --stats prints timings, cache hits and search counters of the run, nothing is printed otherwise
+        boolean stats = arguments.hasOption("stats");
+        // --parallel uses all cores, --parallel=N uses N threads
+        int parallelism = 1;
+        if (arguments.hasOption("parallel")) {
+            parallelism = arguments.getIntOption("parallel", Runtime.getRuntime().availableProcessors());
+        }
+        // --heuristic=lattice|euclidean|manhattan|landmark, --heuristic-weight=W inflates it (paths up to W times longer)
+        Heuristic heuristic = Heuristic.fromName(
+                arguments.getOption("heuristic", "lattice"),
+                arguments.getDoubleOption("heuristic-weight", 1)
+        );
+        // --format=json|avro, avro writes the three outputs as Avro container files instead
+        ExportFormat format = ExportFormat.fromName(arguments.getOption("format", "json"));
+        // --compress=gzip|snappy compresses every result file, .gz or .sz is appended to the names
+        OutputCompression compression = OutputCompression.fromName(arguments.getOption("compress", "none"));
         // validate day
         if (!OrderValidator.isValidDate(date)) {
             throw new Exception("Invalid Date");
@@ -33,32 +103,110 @@ public class App
         Order[] orders = apiClient.retrieveOrdersOnDate(date);
         Restaurant[] restaurants = apiClient.retrieveRestaurants();
 
-        FlightPlanner flightPlanner = new FlightPlanner("resultfiles", apiClient);
+        FlightPlanner flightPlanner = new FlightPlanner("resultfiles", apiClient, new RouteCache(), heuristic);
+        // --pathfinder=astar|bidirectional|jump_point|anytime|ida_star|hierarchical
+        SearchStrategy searchStrategy = SearchStrategy.fromName(arguments.getOption("pathfinder", "astar"));
+        flightPlanner.setSearchStrategy(searchStrategy);
+        flightPlanner.setOutputCompression(compression);
+        // --search-budget=N expanded nodes and --search-deadline-ms=MS per leg bound the anytime and ida_star searches
+        // --node-cap=N bounds the memory of the ida_star search
+        if (arguments.hasOption("node-cap")) {
+            flightPlanner.setNodeCap(arguments.getIntOption("node-cap", AStarPathFinder.DEFAULT_NODE_CAP));
+        }
+        if (arguments.hasOption("search-budget") || arguments.hasOption("search-deadline-ms")) {
+            double deadlineMillis = arguments.getDoubleOption("search-deadline-ms", Double.POSITIVE_INFINITY);
+            flightPlanner.setSearchBudget(
+                    arguments.getIntOption("search-budget", Integer.MAX_VALUE),
+                    deadlineMillis == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : (long) (deadlineMillis * 1e6)
+            );
+        }
+        // --zone-raster checks moves against a bitmap of the zones
+        flightPlanner.setZoneRasterization(arguments.hasOption("zone-raster"));
+        // --lazy-collisions only checks the moves the A* search expands
+        flightPlanner.setLazyCollisionChecks(arguments.hasOption("lazy-collisions"));
 
-        for (Order order : orders) {
-            validator.validateOrder(order, restaurants);
-            if (order.getOrderStatus() == OrderStatus.VALID_BUT_NOT_DELIVERED) {
-                // implies that the order restaurant has already been identified
-                Restaurant restaurant = OrderValidator.findOrderRestaurant(order, restaurants);
-                // fly to the restaurant
-                flightPlanner.calculateOrderFlightPath(
-                        flightPlanner.getAppletonTowerCoordinates(),
-                        restaurant.location(),
-                        order.getOrderNo()
-                );
-                // fly back
-                flightPlanner.calculateOrderFlightPath(
-                        restaurant.location(),
-                        flightPlanner.getAppletonTowerCoordinates(),
-                        order.getOrderNo()
-                );
-                order.setOrderStatus(OrderStatus.DELIVERED);
+        // the files are written while the orders are planned, see ExportPipeline,
+        // an exception before finish() aborts the export and no file is left behind
+        String extension = format.getExtension();
+        List<List<Cell>> flightPaths;
+        long planningNanos;
+        long exportNanos;
+        // --binary-flightpath also writes the moves in the compact binary format, a byte per move
+        try (ExportPipeline exports = flightPlanner.openExportPipeline(format,
+                "deliveries-%s.%s".formatted(date, extension),
+                "flightpath-%s.%s".formatted(date, extension),
+                "drone-%s.%s".formatted(date, extension),
+                arguments.hasOption("binary-flightpath") ? "flightpath-%s.bin".formatted(date) : null)) {
+            long start = System.nanoTime();
+            List<Order> validOrders = new ArrayList<>();
+            List<Integer> validSequences = new ArrayList<>();
+            List<LngLat> restaurantLocations = new ArrayList<>();
+            for (int i = 0; i < orders.length; i++) {
+                Order order = orders[i];
+                validator.validateOrder(order, restaurants);
+                if (order.getOrderStatus() == OrderStatus.VALID_BUT_NOT_DELIVERED) {
+                    // implies that the order restaurant has already been identified
+                    Restaurant restaurant = OrderValidator.findOrderRestaurant(order, restaurants);
+                    validOrders.add(order);
+                    validSequences.add(i);
+                    restaurantLocations.add(restaurant.location());
+                } else {
+                    // nothing to fly, the order is complete
+                    exports.add(i, order, List.of());
+                }
+            }
+
+            // --distance-field floods the lattice around the tower once, the legs are then walked along it
+            if (arguments.hasOption("distance-field")) {
+                DistanceField distanceField = flightPlanner.enableDistanceField(restaurantLocations);
+                if (stats) {
+                    System.out.printf("%s: distance field of %d positions, %d KB, built in %d ms%n",
+                            date, distanceField.getReachedCells(), distanceField.getMemoryBytes() / 1024,
+                            distanceField.getBuildNanos() / 1_000_000);
+                }
             }
+            // fly to the restaurant and back, every order goes to the writers as soon as it is planned
+            // and they write the orders in the order of the day, so the files do not depend on the parallelism
+            flightPaths = planDeliveries(flightPlanner, restaurantLocations, parallelism, (i, path) -> {
+                Order order = validOrders.get(i);
+                flightPlanner.recordOrderFlightPath(order.getOrderNo(), path);
+                order.setOrderStatus(OrderStatus.DELIVERED);
+                exports.add(validSequences.get(i), order, path);
+            });
+            long planned = System.nanoTime();
+            planningNanos = planned - start;
+            // barrier, the files are complete once it returns
+            exports.finish();
+            exportNanos = System.nanoTime() - planned;
         }
 
-        flightPlanner.exportOrdersToJson("deliveries-%s.json".formatted(date), orders);
-        flightPlanner.exportOrderPathHistoryToJson("flightpath-%s.json".formatted(date));
-        flightPlanner.exportFlightHistoryToGeoJson("drone-%s.json".formatted(date));
+        if (!stats) {
+            return;
+        }
+        System.out.printf("%s: planned in %.1f ms, %s files complete %.1f ms later%n",
+                date, planningNanos / 1e6, extension, exportNanos / 1e6);
+        RouteCache routeCache = flightPlanner.getRouteCache();
+        System.out.printf("%s: route cache %d hits (%d reversed), %d misses%n",
+                date, routeCache.getHits(), routeCache.getReverseHits(), routeCache.getMisses());
+        SearchStatistics searchStatistics = flightPlanner.getSearchStatistics();
+        int moves = flightPaths.stream().mapToInt(List::size).sum();
+        System.out.printf("%s: heuristic %s (bound %s), %d nodes expanded, %d collision checks, %d moves flown%n",
+                date, heuristic, heuristic.getSuboptimalityBound(), searchStatistics.getExpandedNodes(),
+                searchStatistics.getCollisionChecks(), moves);
+        if (searchStrategy == SearchStrategy.ANYTIME) {
+            System.out.printf("%s: anytime search, paths proven within %s of the shortest, budget %s%n",
+                    date, searchStatistics.getSuboptimalityBound(),
+                    searchStatistics.isBudgetExhausted() ? "exhausted" : "not exhausted");
+        }
+        if (searchStrategy == SearchStrategy.HIERARCHICAL) {
+            ClusterGraph clusterGraph = flightPlanner.getClusterGraph();
+            System.out.printf("%s: %d clusters with %d entrances, built in %.1f ms%n", date,
+                    clusterGraph.getClusterCount(), clusterGraph.getEntranceCount(), clusterGraph.getBuildNanos() / 1e6);
+        }
+        if (flightPlanner.getPreparedHeuristic() instanceof LandmarkHeuristic landmarks) {
+            System.out.printf("%s: %d landmarks %s, precomputed in %.1f ms%n", date, landmarks.getLandmarks().size(),
+                    landmarks.getLandmarks(), landmarks.getPrecomputeNanos() / 1e6);
+        }
     }
     public static void main( String[] args ) {
         try {
@@ -0,0 +1,29 @@
+package uk.ac.ed.inf;
+
+import uk.ac.ed.inf.path.FlightPathBinaryReader;
+import uk.ac.ed.inf.path.OutputCompression;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+/**
+ * Turns a binary flightpath file (--binary-flightpath) back into the flightpath JSON for downstream tools:
+ * java -cp target/PizzaDronz-1.0-SNAPSHOT.jar uk.ac.ed.inf.FlightPathConverter flightpath-2023-12-31.bin flightpath-2023-12-31.json
+ * a compressed file (--compress, eg flightpath-2023-12-31.bin.gz) is decompressed on the way, by its suffix
+ */
+public class FlightPathConverter {
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: FlightPathConverter <binary flightpath file> <JSON file>");
+            System.exit(1);
+        }
+        try {
+            FlightPathBinaryReader.convertToJson(
+                    OutputCompression.fromFilename(args[0]).decompress(new FileInputStream(args[0])),
+                    new FileOutputStream(args[1]));
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
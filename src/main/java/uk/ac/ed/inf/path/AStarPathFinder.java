@@ -1,160 +1,645 @@
 package uk.ac.ed.inf.path;
 
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.LongLongHashMap;
+import uk.ac.ed.inf.utils.PreparedRegion;
+import uk.ac.ed.inf.utils.ZoneIndex;
+import uk.ac.ed.inf.utils.ZoneLookup;
+import uk.ac.ed.inf.utils.ZoneRaster;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 
 import java.util.*;
 
 public class AStarPathFinder {
-    private NamedRegion[] noFlyZones;
-    private NamedRegion centralArea;
+    // heuristic is inflated by this much so that among equal `f` the deeper node is expanded first
+    private static final double TIE_BREAK = 1e-6;
+    public static final int DEFAULT_NODE_CAP = 1 << 20;
+    // budget of a search between two waypoints of a hierarchical search, per move between them
+    private static final double SEGMENT_EXPANSIONS_PER_MOVE = 64;
 
-    // lowest `f` bubbles to the top
-    static PriorityQueue<Cell> nextCellQueue;
-    static HashSet<Cell> visited;
-    static HashMap<Cell, Cell> cameFrom;
-    static List<Cell> path;
-    static LngLatHandler lngLatHandler;
+    // everything derived from the zones, replaced as a whole so that a search never mixes two updates
+    private volatile ZoneSnapshot zones;
+    // whether the zones are rasterised into a bitmap at DRONE_MOVE_DISTANCE resolution
+    private boolean rasterizeZones;
+    private volatile SearchStrategy searchStrategy = SearchStrategy.ASTAR;
+    // budget of every anytime and IDA* search
+    private volatile long maxExpandedNodes = Long.MAX_VALUE;
+    private volatile long maxSearchNanos = Long.MAX_VALUE;
+    // most positions the transposition table of an IDA* search holds
+    private volatile int nodeCap = DEFAULT_NODE_CAP;
+    // whether A* tests a node against the zones when it is expanded rather than when it is reached
+    private volatile boolean lazyCollisionChecks;
+
+    private final LngLatHandler lngLatHandler;
+    private final Heuristic heuristic;
+
+    /**
+     * State of the active noFlyZones, a search reads it once and works on it to the end
+     * @param regions - active noFlyZones
+     * @param preparedRegions - edges of the noFlyZones prepared for the ray-cast, kept across switching the lookup
+     * @param centralArea - active centralArea
+     * @param lookup - collision checks of the searches (the exact index or the bitmap)
+     * @param reachability - connected components of the zone bitmap, rejects unreachable destinations before a search
+     * @param heuristic - heuristic prepared for the noFlyZones (eg the landmarks of a LandmarkHeuristic)
+     * @param clusterGraph - abstract graph of the hierarchical search, null until first used
+     */
+    private record ZoneSnapshot(NamedRegion[] regions, PreparedRegion[] preparedRegions, NamedRegion centralArea,
+                                ZoneLookup lookup, ZoneRaster reachability, Heuristic heuristic,
+                                ClusterGraph clusterGraph) {}
+
+    /**
+     * One of the two searches of a bidirectional search
+     * reached nodes are also bucketed by their coordinates (DRONE_IS_CLOSE_DISTANCE squares),
+     * so that the other search can find the ones close to its own nodes
+     */
+    private static class Frontier extends SearchState {
+        // point the search heads for (the start of the other search)
+        final LngLat target;
+        // bucket -> id of the last node added to it
+        final LongLongHashMap buckets = new LongLongHashMap(SearchState.EXPECTED_NODES);
+        // id of the node added to the same bucket before, -1 at the end of a bucket, indexed by gScore ids
+        int[] nextInBucket = new int[SearchState.EXPECTED_NODES];
+
+        Frontier(ZoneLookup noFlyZones, Lattice lattice, SearchStatistics statistics, LngLat target) {
+            super(noFlyZones, lattice, statistics);
+            this.target = target;
+        }
+
+        static long bucketOf(long column, long row) {
+            return (column << 32) ^ (row & 0xFFFFFFFFL);
+        }
+
+        static long columnOf(double lng) {
+            return (long) Math.floor(lng / SystemConstants.DRONE_IS_CLOSE_DISTANCE);
+        }
+
+        static long rowOf(double lat) {
+            return (long) Math.floor(lat / SystemConstants.DRONE_IS_CLOSE_DISTANCE);
+        }
+
+        void addToBucket(int id) {
+            long key = gScore.keyAt(id);
+            if (id >= nextInBucket.length) {
+                nextInBucket = Arrays.copyOf(nextInBucket, Math.max(id + 1, nextInBucket.length << 1));
+            }
+            long bucket = bucketOf(columnOf(lattice.lng(key)), rowOf(lattice.lat(key)));
+            nextInBucket[id] = (int) buckets.get(bucket, -1);
+            buckets.put(bucket, id);
+        }
+
+        double peekPriority() {
+            return nextCellQueue.isEmpty() ? Double.NEGATIVE_INFINITY : nextCellQueue.peekPriority();
+        }
+    }
 
     public AStarPathFinder() {
+        this(new LatticeHeuristic());
+    }
+
+    /**
+     * @param heuristic - estimate of the remaining distance that orders the open set
+     */
+    public AStarPathFinder(Heuristic heuristic) {
         lngLatHandler = new LngLatHandler();
+        this.heuristic = heuristic;
+        this.zones = prepareZones(new PreparedRegion[] {}, null, null);
+    }
+
+    /**
+     * @return heuristic the searches are ordered by
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * @return heuristic prepared for the current noFlyZones, the one the searches actually use
+     */
+    public Heuristic getPreparedHeuristic() {
+        return zones.heuristic();
     }
 
     /**
      * Updates the state for the object
+     * the noFlyZones are indexed once here rather than scanned on every collision check,
+     * the heuristic is prepared for them too
      * @param noFlyZones - active noFlyZones
      * @param centralArea - active centralArea
      */
-    public void updateZones(NamedRegion[] noFlyZones, NamedRegion centralArea) {
-        this.noFlyZones = noFlyZones;
-        this.centralArea = centralArea;
+    public synchronized void updateZones(NamedRegion[] noFlyZones, NamedRegion centralArea) {
+        updateZones(PreparedRegion.prepare(noFlyZones), centralArea);
     }
 
-    public List<Cell> getPath() {
-        return path;
+    /**
+     * Same as updateZones with NamedRegions, for noFlyZones that are already prepared
+     * @param noFlyZones - active noFlyZones
+     * @param centralArea - active centralArea
+     */
+    public synchronized void updateZones(PreparedRegion[] noFlyZones, NamedRegion centralArea) {
+        zones = prepareZones(noFlyZones.clone(), centralArea, zones.clusterGraph());
+    }
+
+    /**
+     * Switches between the exact zone index and the occupancy bitmap (ZoneRaster),
+     * the bitmap turns most collision checks into a bit lookup, edge cells still use the exact test
+     * @param enabled - whether to rasterise the zones
+     */
+    public synchronized void setZoneRasterization(boolean enabled) {
+        this.rasterizeZones = enabled;
+        ZoneSnapshot current = zones;
+        ZoneLookup lookup = enabled ? current.reachability() : new ZoneIndex(current.preparedRegions());
+        zones = new ZoneSnapshot(current.regions(), current.preparedRegions(), current.centralArea(), lookup,
+                current.reachability(), current.heuristic(), current.clusterGraph());
+    }
+
+    /**
+     * @param searchStrategy - how the following searches explore the lattice
+     */
+    public void setSearchStrategy(SearchStrategy searchStrategy) {
+        this.searchStrategy = searchStrategy;
+    }
+
+    /**
+     * @return how the searches explore the lattice
+     */
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    /**
+     * Lazy mode of the A* searches (SearchStrategy.ASTAR and the refining searches of SearchStrategy.HIERARCHICAL):
+     * neighbors are queued with their optimistic score without any collision check, a node is only tested
+     * against the noFlyZones once it is taken off the open set and dropped if it is blocked.
+     * Most queued nodes are never expanded, so most tests are saved, the paths are as short as without it
+     * @param enabled - whether to check collisions lazily
+     */
+    public void setLazyCollisionChecks(boolean enabled) {
+        this.lazyCollisionChecks = enabled;
+    }
+
+    /**
+     * @return abstract graph of the SearchStrategy.HIERARCHICAL searches for the current noFlyZones (built if needed)
+     */
+    public synchronized ClusterGraph getClusterGraph() {
+        ZoneSnapshot current = zones;
+        if (current.clusterGraph() == null) {
+            zones = new ZoneSnapshot(current.regions(), current.preparedRegions(), current.centralArea(),
+                    current.lookup(), current.reachability(), current.heuristic(),
+                    new ClusterGraph(current.regions()));
+        }
+        return zones.clusterGraph();
+    }
+
+    /**
+     * @param snapshot - zones of a running search
+     * @return cluster graph of those zones, published with them unless they were replaced meanwhile
+     */
+    private synchronized ClusterGraph buildClusterGraph(ZoneSnapshot snapshot) {
+        if (zones == snapshot) {
+            return getClusterGraph();
+        }
+        return new ClusterGraph(snapshot.regions());
+    }
+
+    /**
+     * Bounds every SearchStrategy.ANYTIME search, it returns the best path found within the budget,
+     * and every SearchStrategy.IDA_STAR search, it returns no path once over the budget
+     * @param maxExpandedNodes - most nodes a search expands
+     * @param maxNanos - longest a search runs in nanoseconds
+     */
+    public void setSearchBudget(long maxExpandedNodes, long maxNanos) {
+        if (maxExpandedNodes <= 0 || maxNanos <= 0) {
+            throw new IllegalArgumentException("Search budget must be positive");
+        }
+        this.maxExpandedNodes = maxExpandedNodes;
+        this.maxSearchNanos = maxNanos;
+    }
+
+    /**
+     * @param nodeCap - most positions the transposition table of a SearchStrategy.IDA_STAR search holds
+     */
+    public void setNodeCap(int nodeCap) {
+        if (nodeCap <= 0) {
+            throw new IllegalArgumentException("Node cap must be positive: " + nodeCap);
+        }
+        this.nodeCap = nodeCap;
+    }
+
+    /**
+     * Builds everything the searches need for a set of noFlyZones
+     * @param preparedRegions - active noFlyZones
+     * @param centralArea - active centralArea
+     * @param clusterGraph - graph of the previous zones (only the clusters of the changed zones are rebuilt) or null
+     * @return snapshot to publish
+     */
+    private ZoneSnapshot prepareZones(PreparedRegion[] preparedRegions, NamedRegion centralArea,
+                                      ClusterGraph clusterGraph) {
+        NamedRegion[] regions = new NamedRegion[preparedRegions.length];
+        for (int i = 0; i < preparedRegions.length; i++) {
+            regions[i] = preparedRegions[i].getRegion();
+        }
+        ZoneRaster raster = new ZoneRaster(regions, centralArea, SystemConstants.DRONE_MOVE_DISTANCE);
+        ZoneLookup lookup = rasterizeZones ? raster : new ZoneIndex(preparedRegions);
+        return new ZoneSnapshot(regions, preparedRegions, centralArea, lookup, raster, heuristic.prepare(regions),
+                clusterGraph == null ? null : clusterGraph.update(regions));
+    }
+
+    /**
+     * Fast check on the connected components of the zone bitmap, done before every search
+     * @param origin - start
+     * @param destination - goal
+     * @return false if the noFlyZones seal the destination off from the origin
+     */
+    public boolean isReachable(LngLat origin, LngLat destination) {
+        return isReachable(zones, origin, destination);
     }
 
-    private void resetState() {
-        // instantiate queue (comparing f scores for priority)
-        nextCellQueue = new PriorityQueue<>(Comparator.comparing(c -> c.f));
-        nextCellQueue.clear();
-        visited = new HashSet<>();
-        cameFrom = new HashMap<>();
-        path = new ArrayList<>();
+    private static boolean isReachable(ZoneSnapshot zones, LngLat origin, LngLat destination) {
+        return zones.reachability().isReachable(origin, destination, SystemConstants.DRONE_IS_CLOSE_DISTANCE);
     }
 
     /**
      * If exists, find the shortest path between origin and destination
-     * at every call, resets Queues and Maps and Sets to start over
+     * every call works on its own search state, so the method is thread-safe
      * while maintaining the outer state (eg noFlyZones)
-     * @return bool whether the path exists
+     * @return path to the destination (ending with a hover) or an empty list if there is none
+     */
+    public List<Cell> findShortestPath(LngLat origin, LngLat destination) {
+        return findShortestPath(origin, destination, new SearchStatistics());
+    }
+
+    /**
+     * Same as findShortestPath(origin, destination), also counts the work done by the search
+     * @param origin - start
+     * @param destination - goal
+     * @param statistics - counters to fill in
+     * @return path to the destination (ending with a hover) or an empty list if there is none
      */
-    public boolean findShortestPath(LngLat origin, LngLat destination) {
-        resetState();
+    public List<Cell> findShortestPath(LngLat origin, LngLat destination, SearchStatistics statistics) {
+        ZoneSnapshot zones = this.zones;
+        Heuristic heuristic = zones.heuristic();
+        if (!isReachable(zones, origin, destination)) {
+            statistics.suboptimalityBound = Double.POSITIVE_INFINITY;
+            return new ArrayList<>();
+        }
+        // the anytime search proves its own bound
+        statistics.suboptimalityBound = heuristic.getSuboptimalityBound();
+        if (searchStrategy == SearchStrategy.BIDIRECTIONAL) {
+            return findPathBidirectional(zones, origin, destination, statistics);
+        }
+        if (searchStrategy == SearchStrategy.ANYTIME) {
+            return new AnytimeSearch(zones.lookup(), origin, destination, heuristic, TIE_BREAK, statistics,
+                    maxExpandedNodes, maxSearchNanos).findPath();
+        }
+        if (searchStrategy == SearchStrategy.IDA_STAR) {
+            return new IterativeDeepeningSearch(zones.lookup(), origin, destination, heuristic, statistics,
+                    nodeCap, maxExpandedNodes, maxSearchNanos).findPath();
+        }
+        if (searchStrategy == SearchStrategy.JUMP_POINT) {
+            return new JumpPointSearch(zones.lookup(), origin, destination, heuristic, TIE_BREAK, statistics).findPath();
+        }
+        if (searchStrategy == SearchStrategy.HIERARCHICAL) {
+            return findPathHierarchical(zones, origin, destination, statistics);
+        }
+        return findPath(zones.lookup(), origin, destination, heuristic, statistics, Long.MAX_VALUE);
+    }
+
+    /**
+     * Plans the leg over the ClusterGraph and refines it on the lattice one waypoint after the other,
+     * every search only has to cross a few clusters in nearly a straight line (and gets a budget to match).
+     * Legs the graph does not cover and plans the lattice cannot follow are searched in full.
+     * A path found over the waypoints is not proven shortest
+     * @param snapshot - zones of the search
+     * @param origin - start
+     * @param destination - goal
+     * @param statistics - counters of both levels
+     * @return path to the destination (ending with a hover) or an empty list if there is none
+     */
+    private List<Cell> findPathHierarchical(ZoneSnapshot snapshot, LngLat origin, LngLat destination,
+                                            SearchStatistics statistics) {
+        ZoneLookup zones = snapshot.lookup();
+        Heuristic heuristic = snapshot.heuristic();
+        ClusterGraph graph = snapshot.clusterGraph();
+        if (graph == null) {
+            // built once for the zones of the search, a later update is not mixed in
+            graph = buildClusterGraph(snapshot);
+        }
+        List<LngLat> waypoints = graph.findWaypoints(origin, destination, statistics);
+        if (waypoints != null) {
+            waypoints.add(destination);
+            List<Cell> path = new ArrayList<>();
+            LngLat position = origin;
+            for (LngLat waypoint : waypoints) {
+                long budget = (long) (SEGMENT_EXPANSIONS_PER_MOVE * (LatticeHeuristic.moves(
+                        waypoint.lng() - position.lng(), waypoint.lat() - position.lat()) + 1));
+                List<Cell> segment = findPath(zones, position, waypoint, heuristic, statistics, budget);
+                if (segment.isEmpty()) {
+                    path = null;
+                    break;
+                }
+                if (waypoint != destination) {
+                    // only the destination is hovered at
+                    segment.remove(segment.size() - 1);
+                }
+                path.addAll(segment);
+                if (segment.size() > 0) {
+                    position = segment.get(segment.size() - 1).getCoordinates();
+                }
+            }
+            if (path != null) {
+                statistics.pathLength = path.size();
+                statistics.suboptimalityBound = Double.POSITIVE_INFINITY;
+                return path;
+            }
+        }
+        return findPath(zones, origin, destination, heuristic, statistics, Long.MAX_VALUE);
+    }
+
+    /**
+     * A* over the lattice of the origin
+     * @param noFlyZones - zones of the search
+     * @param origin - start
+     * @param destination - goal
+     * @param heuristic - estimate of the remaining distance
+     * @param statistics - counters to fill in
+     * @param maxExpandedNodes - the search gives up after expanding this many nodes
+     * @return path to the destination (ending with a hover) or an empty list if there is none
+     */
+    private List<Cell> findPath(ZoneLookup noFlyZones, LngLat origin, LngLat destination, Heuristic heuristic,
+                                SearchStatistics statistics, long maxExpandedNodes) {
+        long expandedBefore = statistics.expandedNodes;
+        boolean lazy = lazyCollisionChecks;
+        SearchState state = new SearchState(noFlyZones, new Lattice(origin), statistics);
         // initialise scores (starting point)
-        Cell start = new Cell(origin, 999);
-        // hover at the goal (999)
-        Cell goal = new Cell(destination, 999);
-        nextCellQueue.add(start);
-        visited.add(start);
-        // tracks distance up to the cell
-        HashMap<Cell, Double> gScore = new HashMap<>();
-        gScore.put(start, (double) 0);
+        int startId = state.gScore.put(Lattice.ORIGIN_KEY, 0);
+        state.nextCellQueue.insert(startId, 0);
+        statistics.insertedNodes++;
         // do a BFS search
-        while (!nextCellQueue.isEmpty()) {
-            Cell current = nextCellQueue.poll();
+        while (!state.nextCellQueue.isEmpty() && statistics.expandedNodes - expandedBefore < maxExpandedNodes) {
+            int currentId = state.nextCellQueue.poll();
+            long current = state.gScore.keyAt(currentId);
+            state.closed.set(currentId);
+            // a lazily queued node is only tested now, a blocked one is dropped without an expansion
+            if (lazy && current != Lattice.ORIGIN_KEY && isBlocked(state, current)) {
+                continue;
+            }
+            statistics.expandedNodes++;
             // If at destination, found the path
             // destination place located in the circle, this circle is centered at the endpoint with a radius of 1.5E-4
-            if (lngLatHandler.isCloseTo(current.getCoordinates(), goal.getCoordinates())) {
-                // link goal and its closest point (helps with hovering)
-                cameFrom.put(goal, current);
-                // save the path to the destination
-                reconstructPathFromGoal(goal);
-                return true;
+            state.lattice.position(current, state.position);
+            if (lngLatHandler.isCloseTo(state.position[0], state.position[1], destination)) {
+                return reconstructPathFromGoal(state, current, destination);
             }
-            for (Cell neighbor : findNeighbors(current)) {
-                double tentativeScore = gScore.get(current) +
-                        lngLatHandler.distanceTo(
-                                current.getCoordinates(),
-                                neighbor.getCoordinates()
-                        );
+            // every move has the same length
+            double tentativeScore = state.gScore.valueAt(currentId) + SystemConstants.DRONE_MOVE_DISTANCE;
+            int neighborCount = findNeighbors(state, current, !lazy);
+            for (int i = 0; i < neighborCount; i++) {
+                long neighbor = state.neighbors[i];
                 // if closer than currently known (infinity at start)
-                if (tentativeScore < gScore.getOrDefault(neighbor, Double.POSITIVE_INFINITY)) {
+                if (tentativeScore < state.gScore.get(neighbor, Double.POSITIVE_INFINITY)) {
                     // update previous node
-                    cameFrom.put(neighbor, current);
-                    gScore.put(neighbor, tentativeScore);
+                    state.cameFrom.put(neighbor, current);
+                    int neighborId = state.gScore.put(neighbor, tentativeScore);
                     // update the best path through current
-                    double fScore = heuristic(neighbor, goal);
-                    neighbor.setF(tentativeScore + fScore);
-                    // if not visited, add to queue
-                    if (!visited.contains(neighbor)) {
-                        visited.add(neighbor);
-                        nextCellQueue.add(neighbor);
+                    double fScore = heuristic.estimate(state.lattice, neighbor, destination) * (1 + TIE_BREAK);
+                    // queued nodes are moved up instead of being queued again
+                    if (state.nextCellQueue.insertOrDecrease(neighborId, tentativeScore + fScore)) {
+                        statistics.decreasedKeys++;
+                    } else {
+                        statistics.insertedNodes++;
                     }
                 }
             }
         }
-        return false;
+        return new ArrayList<>();
     }
 
     /**
      * reconstructs a path up to a given point
-     * saves into a class variable `path`
-     * @param goal - node to go back from
+     * @param state - search that reached the goal
+     * @param reached - node close to the destination
+     * @param destination - goal point, the path ends with a hover there
+     * @return path leading to the goal
+     */
+    private List<Cell> reconstructPathFromGoal(SearchState state, long reached, LngLat destination) {
+        LinkedList<Cell> path = tracePath(state, reached);
+        // link goal and its closest point (helps with hovering)
+        path.add(new Cell(destination, Cell.HOVER_ANGLE));
+        state.statistics.pathLength = path.size();
+        return new ArrayList<>(path);
+    }
+
+    /**
+     * @param state - search that reached the node
+     * @param reached - node
+     * @return moves from the origin of the search to the node
+     */
+    private LinkedList<Cell> tracePath(SearchState state, long reached) {
+        LinkedList<Cell> path = new LinkedList<>();
+        long current = reached;
+        while (current != Lattice.ORIGIN_KEY) {
+            long previous = state.cameFrom.get(current, Lattice.ORIGIN_KEY);
+            double angle = Lattice.toAngle(state.lattice.direction(previous, current));
+            path.addFirst(new Cell(state.lattice, current, angle));
+            current = previous;
+        }
+        return path;
+    }
+
+    /**
+     * Grows A* searches from the origin (towards the destination) and from the destination (towards the origin),
+     * always expanding the one with the smaller open set.
+     * The searches live on different lattices, so they meet when an expanded node is within
+     * DRONE_IS_CLOSE_DISTANCE of a node reached by the other search: from the forward node the drone flies the
+     * moves of the backward path in reverse, which keeps it on the lattice of the origin and ends it
+     * about as far from the destination as the two nodes are apart. A meeting is dropped if those moves enter
+     * a noFlyZone or if the end they reach is not within DRONE_IS_CLOSE_DISTANCE of the destination
+     * (the same rule as the unidirectional search, rounding can put it just outside).
+     * The search stops when no queued node can improve on the best meeting,
+     * the path ends with a hover at the destination as in the unidirectional search.
+     * The path is not proven shortest: the backward search runs on the lattice of the destination, where the end
+     * of the shortest path can lie in a noFlyZone although it is free on the lattice of the origin, so the best
+     * meeting can be a move longer (the suboptimality bound is infinite)
+     * @param snapshot - zones of the search
+     * @param origin - start
+     * @param destination - goal
+     * @param statistics - counters of both searches
+     * @return path to the destination (ending with a hover) or an empty list if there is none
      */
-    private void reconstructPathFromGoal(Cell goal) {
-        Cell current = goal;
-        while (cameFrom.containsKey(current)) {
-            path.add(0, current);
-            current = cameFrom.get(current);
+    private List<Cell> findPathBidirectional(ZoneSnapshot snapshot, LngLat origin, LngLat destination,
+                                             SearchStatistics statistics) {
+        ZoneLookup zones = snapshot.lookup();
+        Heuristic heuristic = snapshot.heuristic();
+        statistics.suboptimalityBound = Double.POSITIVE_INFINITY;
+        Frontier forward = new Frontier(zones, new Lattice(origin), statistics, destination);
+        Frontier backward = new Frontier(zones, new Lattice(destination), statistics, origin);
+        for (Frontier frontier : new Frontier[] {forward, backward}) {
+            int startId = frontier.gScore.put(Lattice.ORIGIN_KEY, 0);
+            frontier.addToBucket(startId);
+            frontier.nextCellQueue.insert(startId, 0);
+            statistics.insertedNodes++;
+        }
+        double bestCost = Double.POSITIVE_INFINITY;
+        long bestForward = 0, bestBackward = 0;
+        while (!forward.nextCellQueue.isEmpty()) {
+            // no queued node can lead to a shorter path
+            if (bestCost <= Math.max(forward.peekPriority(), backward.peekPriority())) {
+                break;
+            }
+            // an exhausted backward search leaves the forward one to finish alone
+            Frontier side = backward.nextCellQueue.isEmpty()
+                    || forward.nextCellQueue.size() <= backward.nextCellQueue.size() ? forward : backward;
+            Frontier other = side == forward ? backward : forward;
+            int currentId = side.nextCellQueue.poll();
+            long current = side.gScore.keyAt(currentId);
+            side.closed.set(currentId);
+            statistics.expandedNodes++;
+            double score = side.gScore.valueAt(currentId);
+            double lng = side.lattice.lng(current), lat = side.lattice.lat(current);
+
+            // meet the nodes of the other search around this one
+            long column = Frontier.columnOf(lng), row = Frontier.rowOf(lat);
+            for (long dColumn = -1; dColumn <= 1; dColumn++) {
+                for (long dRow = -1; dRow <= 1; dRow++) {
+                    long bucket = Frontier.bucketOf(column + dColumn, row + dRow);
+                    int otherId = (int) other.buckets.get(bucket, -1);
+                    for (; otherId != -1; otherId = other.nextInBucket[otherId]) {
+                        double cost = score + other.gScore.valueAt(otherId);
+                        long otherKey = other.gScore.keyAt(otherId);
+                        double dLng = other.lattice.lng(otherKey) - lng, dLat = other.lattice.lat(otherKey) - lat;
+                        if (cost >= bestCost
+                                || Math.sqrt(dLng * dLng + dLat * dLat) > SystemConstants.DRONE_IS_CLOSE_DISTANCE) {
+                            continue;
+                        }
+                        long forwardKey = side == forward ? current : otherKey;
+                        long backwardKey = side == forward ? otherKey : current;
+                        if (joinPaths(forward, forwardKey, backward, backwardKey) != null) {
+                            bestCost = cost;
+                            bestForward = forwardKey;
+                            bestBackward = backwardKey;
+                        }
+                    }
+                }
+            }
+
+            double tentativeScore = score + SystemConstants.DRONE_MOVE_DISTANCE;
+            int neighborCount = findNeighbors(side, current, true);
+            for (int i = 0; i < neighborCount; i++) {
+                long neighbor = side.neighbors[i];
+                if (tentativeScore < side.gScore.get(neighbor, Double.POSITIVE_INFINITY)) {
+                    side.cameFrom.put(neighbor, current);
+                    int reachedBefore = side.gScore.size();
+                    int neighborId = side.gScore.put(neighbor, tentativeScore);
+                    if (neighborId == reachedBefore) {
+                        side.addToBucket(neighborId);
+                    }
+                    double fScore = heuristic.estimate(side.lattice, neighbor, side.target) * (1 + TIE_BREAK);
+                    if (side.nextCellQueue.insertOrDecrease(neighborId, tentativeScore + fScore)) {
+                        statistics.decreasedKeys++;
+                    } else {
+                        statistics.insertedNodes++;
+                    }
+                }
+            }
+        }
+        if (bestCost == Double.POSITIVE_INFINITY) {
+            return new ArrayList<>();
+        }
+        LinkedList<Cell> path = tracePath(forward, bestForward);
+        long key = bestForward;
+        for (int direction : joinPaths(forward, bestForward, backward, bestBackward)) {
+            key = forward.lattice.step(key, direction);
+            path.add(new Cell(forward.lattice, key, Lattice.toAngle(direction)));
         }
+        path.add(new Cell(destination, Cell.HOVER_ANGLE));
+        statistics.pathLength = path.size();
+        return new ArrayList<>(path);
     }
 
     /**
-     * Check if the current point is in any know noFlyZone
-     * @param current - point
-     * @return boolean(point in noFlyZone)
+     * Replays the backward path from a node reached by the forward search
+     * @param forward - search from the origin
+     * @param forwardKey - node of the forward search
+     * @param backward - search from the destination
+     * @param backwardKey - node of the backward search close to the forward one
+     * @return directions of the moves from the forward node towards the destination
+     * or null if one of them leaves the lattice or ends in a noFlyZone, or if they do not end close to the destination
      */
-    private boolean isPointInNoFlyZone(LngLat current) {
-        for (NamedRegion noFlyZone : noFlyZones) {
-            if (lngLatHandler.isInRegion(current, noFlyZone)) {
-                return true;
+    private int[] joinPaths(Frontier forward, long forwardKey, Frontier backward, long backwardKey) {
+        ArrayList<Integer> directions = new ArrayList<>();
+        long key = forwardKey;
+        long current = backwardKey;
+        while (current != Lattice.ORIGIN_KEY) {
+            long previous = backward.cameFrom.get(current, Lattice.ORIGIN_KEY);
+            // the backward search moved previous -> current, the drone flies the opposite way
+            int direction = (backward.lattice.direction(previous, current) + Lattice.DIRECTIONS / 2) % Lattice.DIRECTIONS;
+            key = forward.lattice.step(key, direction);
+            if (key == Lattice.OUT_OF_RANGE
+                    || isPointInNoFlyZone(forward.noFlyZones, forward.lattice.lng(key), forward.lattice.lat(key))) {
+                return null;
             }
+            directions.add(direction);
+            current = previous;
         }
-        return false;
+        if (!lngLatHandler.isCloseTo(forward.lattice.lng(key), forward.lattice.lat(key), forward.target)) {
+            return null;
+        }
+        return directions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Check if the current point is in any know noFlyZone
+     * only the zones whose bounding box contains the point are ray-cast
+     * @param noFlyZones - zones of the running search
+     * @param lng - longitude of the point
+     * @param lat - latitude of the point
+     * @return boolean(point in noFlyZone)
+     */
+    private boolean isPointInNoFlyZone(ZoneLookup noFlyZones, double lng, double lat) {
+        return noFlyZones.contains(lng, lat);
     }
 
     /**
-     * Finds all valid neighbors of a current point
+     * Tests a node against the zones of the search (counted in the statistics)
+     * @param state - running search
+     * @param key - node
+     * @return whether the node is in a noFlyZone
+     */
+    private boolean isBlocked(SearchState state, long key) {
+        state.statistics.collisionChecks++;
+        state.lattice.position(key, state.position);
+        return isPointInNoFlyZone(state.noFlyZones, state.position[0], state.position[1]);
+    }
+
+    /**
+     * Finds all valid neighbors of a current point that are not closed yet
+     * neighbors inside a noFlyZone are closed, so they are only tested once
+     * @param state - running search, the neighbors are written into `state.neighbors`
      * @param current current point
-     * @return list of neighbors that are valid moves
+     * @param checkZones - whether to leave out the neighbors in a noFlyZone (false for lazy collision checks)
+     * @return number of neighbors that are valid moves
      */
-    private ArrayList<Cell> findNeighbors(Cell current) {
-        ArrayList<Cell> neighbors = new ArrayList<>();
+    private int findNeighbors(SearchState state, long current, boolean checkZones) {
+        int count = 0;
         // Check moves in all 16 directions
-        for (int i=0; i<16; i++) {
-            double angle = i * 22.5;
-            LngLat nextPoint = lngLatHandler.nextPosition(current.coordinates, angle);
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            long nextKey = state.lattice.step(current, direction);
+            if (nextKey == Lattice.OUT_OF_RANGE) {
+                continue;
+            }
+            int nextId = state.gScore.indexOf(nextKey);
+            if (nextId != -1 && state.closed.get(nextId)) {
+                continue;
+            }
             // Check the move is valid and does not lay in a noFlyZone
-            if (isPointInNoFlyZone(nextPoint)) {
-//                System.out.println(nextPoint);
+            if (checkZones && isBlocked(state, nextKey)) {
+                state.closed.set(state.gScore.put(nextKey, Double.POSITIVE_INFINITY));
                 continue;
             }
-            neighbors.add(new Cell(nextPoint, angle));
+            state.neighbors[count++] = nextKey;
         }
-        return neighbors;
-    }
-
-    /**
-     *
-     * @param origin - starting point
-     * @param destination - goal point
-     * @return a way of estimating the probable distance
-     */
-    private double heuristic(Cell origin, Cell destination) {
-        // Manhattan distance
-        return Math.abs(origin.coordinates.lat() - destination.coordinates.lat()) +
-                Math.abs(origin.coordinates.lng() - destination.coordinates.lng());
+        return count;
     }
 }
@@ -0,0 +1,221 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.ZoneLookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Anytime repairing A* (ARA*) within a budget of expanded nodes and time.
+ * The first pass orders the open set by g + weight * h and finds a path quickly, every following pass lowers
+ * the weight by WEIGHT_STEP and reuses the search: nodes that got a better g after they were expanded are
+ * kept aside (inconsistent) and queued again with the open ones, so each pass only redoes what the lower
+ * weight changes. Once the budget runs out the best path so far is returned. Its proven bound is
+ * min(weight, g(goal) / min(g + h)) over the open and inconsistent nodes, which holds any optimal path
+ * has a node among them. A leg that cannot be reached in the budget ends with an empty path, so no leg can
+ * take longer than the deadline (plus one expansion).
+ */
+class AnytimeSearch {
+    // weight of the first pass and how much every following pass lowers it
+    static final double INITIAL_WEIGHT = 3;
+    static final double WEIGHT_STEP = 0.5;
+    // the clock is read every this many expansions
+    private static final int CLOCK_INTERVAL = 64;
+
+    private final LngLatHandler lngLatHandler = new LngLatHandler();
+    private final SearchState state;
+    private final LngLat destination;
+    private final Heuristic heuristic;
+    private final double tieBreak;
+    private final long maxExpandedNodes;
+    private final long deadline;
+    // heuristic of every reached node, indexed by gScore ids
+    private double[] estimates = new double[SearchState.EXPECTED_NODES];
+    // nodes improved after they were expanded in the current pass
+    private final BitSet inconsistent = new BitSet(SearchState.EXPECTED_NODES);
+    private double weight = INITIAL_WEIGHT;
+    // weight of the last finished pass, which bounds the best path so far
+    private double finishedWeight = Double.POSITIVE_INFINITY;
+    private long expandedNodes;
+    private boolean budgetExhausted;
+    // cheapest node reached within DRONE_IS_CLOSE_DISTANCE of the destination
+    private long goal = Lattice.OUT_OF_RANGE;
+    private double goalScore = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param noFlyZones - zones of the search
+     * @param origin - start
+     * @param destination - goal
+     * @param heuristic - estimate of the remaining distance (admissible for the bound to be the proven one)
+     * @param tieBreak - inflation of the heuristic that breaks ties among equal `f`
+     * @param statistics - counters to fill in
+     * @param maxExpandedNodes - the search stops after expanding this many nodes
+     * @param maxNanos - the search stops after running this long
+     */
+    AnytimeSearch(ZoneLookup noFlyZones, LngLat origin, LngLat destination, Heuristic heuristic, double tieBreak,
+                  SearchStatistics statistics, long maxExpandedNodes, long maxNanos) {
+        this.state = new SearchState(noFlyZones, new Lattice(origin), statistics);
+        this.destination = destination;
+        this.heuristic = heuristic;
+        this.tieBreak = tieBreak;
+        this.maxExpandedNodes = maxExpandedNodes;
+        // saturates for an unlimited time
+        long now = System.nanoTime();
+        this.deadline = maxNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxNanos;
+    }
+
+    /**
+     * Improves the path pass after pass until it is proven shortest or the budget runs out,
+     * the proven bound and whether the budget ran out are written to the statistics
+     * @return best path found (ending with a hover) or an empty list if there is none
+     */
+    List<Cell> findPath() {
+        int startId = state.gScore.put(Lattice.ORIGIN_KEY, 0);
+        setEstimate(startId, Lattice.ORIGIN_KEY);
+        if (isCloseToGoal(Lattice.ORIGIN_KEY)) {
+            goal = Lattice.ORIGIN_KEY;
+            goalScore = 0;
+        }
+        state.nextCellQueue.insert(startId, priority(startId));
+        state.statistics.insertedNodes++;
+        double bound = Double.POSITIVE_INFINITY;
+        while (improvePath()) {
+            finishedWeight = weight;
+            bound = provenBound();
+            if (bound <= 1 || state.nextCellQueue.isEmpty() && inconsistent.isEmpty()) {
+                break;
+            }
+            weight = Math.max(1, weight - WEIGHT_STEP);
+            reopen();
+        }
+        if (budgetExhausted) {
+            bound = provenBound();
+        }
+        state.statistics.budgetExhausted = budgetExhausted;
+        // an inflated heuristic loosens the bound by its own
+        state.statistics.suboptimalityBound = bound * heuristic.getSuboptimalityBound();
+        if (goal == Lattice.OUT_OF_RANGE) {
+            return new ArrayList<>();
+        }
+        return reconstructPath();
+    }
+
+    /**
+     * One pass: expands nodes until none in the open set can lead to a cheaper goal at the current weight
+     * @return false if the budget ran out during the pass
+     */
+    private boolean improvePath() {
+        while (!state.nextCellQueue.isEmpty() && goalScore > state.nextCellQueue.peekPriority()) {
+            if (expandedNodes >= maxExpandedNodes
+                    || expandedNodes % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                budgetExhausted = true;
+                return false;
+            }
+            int currentId = state.nextCellQueue.poll();
+            long current = state.gScore.keyAt(currentId);
+            state.closed.set(currentId);
+            expandedNodes++;
+            state.statistics.expandedNodes++;
+            // the goal circle is not flown past
+            if (isCloseToGoal(current)) {
+                continue;
+            }
+            double tentativeScore = state.gScore.valueAt(currentId) + SystemConstants.DRONE_MOVE_DISTANCE;
+            for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+                long neighbor = state.lattice.step(current, direction);
+                if (neighbor == Lattice.OUT_OF_RANGE
+                        || !(tentativeScore < state.gScore.get(neighbor, Double.POSITIVE_INFINITY))) {
+                    continue;
+                }
+                if (state.noFlyZones.contains(state.lattice.lng(neighbor), state.lattice.lat(neighbor))) {
+                    // blocked nodes keep an infinite score and are never queued
+                    continue;
+                }
+                state.cameFrom.put(neighbor, current);
+                int reachedBefore = state.gScore.size();
+                int neighborId = state.gScore.put(neighbor, tentativeScore);
+                if (neighborId == reachedBefore) {
+                    setEstimate(neighborId, neighbor);
+                }
+                if (tentativeScore < goalScore && isCloseToGoal(neighbor)) {
+                    goal = neighbor;
+                    goalScore = tentativeScore;
+                }
+                if (state.closed.get(neighborId)) {
+                    inconsistent.set(neighborId);
+                } else if (state.nextCellQueue.insertOrDecrease(neighborId, priority(neighborId))) {
+                    state.statistics.decreasedKeys++;
+                } else {
+                    state.statistics.insertedNodes++;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * queues the inconsistent nodes with the open ones and orders all of them by the lowered weight
+     */
+    private void reopen() {
+        for (int id = 0; id < state.gScore.size(); id++) {
+            if (inconsistent.get(id) || state.nextCellQueue.contains(id)) {
+                state.nextCellQueue.update(id, priority(id));
+            }
+        }
+        inconsistent.clear();
+        state.closed.clear();
+    }
+
+    /**
+     * @return how many times longer than the shortest one the best path so far can be
+     */
+    private double provenBound() {
+        if (goal == Lattice.OUT_OF_RANGE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double lowerBound = goalScore;
+        for (int id = 0; id < state.gScore.size(); id++) {
+            if (inconsistent.get(id) || state.nextCellQueue.contains(id)) {
+                lowerBound = Math.min(lowerBound, state.gScore.valueAt(id) + estimates[id]);
+            }
+        }
+        if (lowerBound <= 0) {
+            return 1;
+        }
+        return Math.min(finishedWeight, Math.max(1, goalScore / lowerBound));
+    }
+
+    private double priority(int id) {
+        return state.gScore.valueAt(id) + weight * estimates[id] * (1 + tieBreak);
+    }
+
+    private void setEstimate(int id, long key) {
+        if (id >= estimates.length) {
+            estimates = Arrays.copyOf(estimates, Math.max(id + 1, estimates.length << 1));
+        }
+        estimates[id] = heuristic.estimate(state.lattice, key, destination);
+    }
+
+    private boolean isCloseToGoal(long key) {
+        return lngLatHandler.isCloseTo(state.lattice.lng(key), state.lattice.lat(key), destination);
+    }
+
+    private List<Cell> reconstructPath() {
+        LinkedList<Cell> path = new LinkedList<>();
+        long current = goal;
+        while (current != Lattice.ORIGIN_KEY) {
+            long previous = state.cameFrom.get(current, Lattice.ORIGIN_KEY);
+            path.addFirst(new Cell(state.lattice, current, Lattice.toAngle(state.lattice.direction(previous, current))));
+            current = previous;
+        }
+        path.add(new Cell(destination, Cell.HOVER_ANGLE));
+        state.statistics.pathLength = path.size();
+        return new ArrayList<>(path);
+    }
+}
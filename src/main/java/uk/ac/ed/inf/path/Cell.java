@@ -2,34 +2,85 @@ package uk.ac.ed.inf.path;
 
 import uk.ac.ed.inf.ilp.data.LngLat;
 
-import java.util.Objects;
-
 public class Cell {
+    // angle used for a hover move (at the goal)
+    public static final double HOVER_ANGLE = 999;
+
+    // lattice the cell lies on, null for free points (eg the goal)
+    final Lattice lattice;
+    final long key;
+    // materialised lazily from the key for lattice cells
     LngLat coordinates;
     double f;
     double enterAngle;
 
+    /**
+     * Free point that is not on a search lattice (eg the destination)
+     * @param coordinates - position
+     * @param enterAngle - angle of the move into the point
+     */
     public Cell(LngLat coordinates, double enterAngle) {
+        this.lattice = null;
+        this.key = 0;
         this.coordinates = coordinates;
         this.f = 0;
         this.enterAngle = enterAngle;
     }
 
+    /**
+     * Point of a search lattice
+     * @param lattice - lattice of the search
+     * @param key - lattice key of the position
+     * @param enterAngle - angle of the move into the point
+     */
+    public Cell(Lattice lattice, long key, double enterAngle) {
+        this.lattice = lattice;
+        this.key = key;
+        this.f = 0;
+        this.enterAngle = enterAngle;
+    }
+
     public double getEnterAngle() {
         return enterAngle;
     }
 
+    /**
+     * @return lattice key of the cell (0 for free points)
+     */
+    public long getKey() {
+        return key;
+    }
+
     public LngLat getCoordinates() {
+        if (coordinates == null) {
+            coordinates = lattice.toLngLat(key);
+        }
         return coordinates;
     }
 
+    /**
+     * Coordinates without materialising (or caching) a LngLat, the same values as getCoordinates
+     * @param position - buffer the longitude and latitude are written into
+     */
+    void position(double[] position) {
+        if (coordinates != null) {
+            position[0] = coordinates.lng();
+            position[1] = coordinates.lat();
+        } else {
+            lattice.position(key, position);
+        }
+    }
+
     public void setF(double value) {
         this.f = value;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(coordinates.lat(), coordinates.lng());
+        if (lattice == null) {
+            return coordinates.hashCode();
+        }
+        return Long.hashCode(key);
     }
 
     @Override
@@ -43,6 +94,10 @@ public class Cell {
         }
 
         Cell other = (Cell) obj;
-        return this.hashCode() == other.hashCode();
+        if (lattice == null || other.lattice == null) {
+            // free points are only equal to free points at the same coordinates
+            return lattice == other.lattice && coordinates.equals(other.coordinates);
+        }
+        return lattice == other.lattice && key == other.key;
     }
 }
@@ -0,0 +1,547 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.utils.IndexedMinHeap;
+import uk.ac.ed.inf.utils.LongDoubleHashMap;
+import uk.ac.ed.inf.utils.LongLongHashMap;
+import uk.ac.ed.inf.utils.ZoneIndex;
+import uk.ac.ed.inf.utils.ZoneLookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Abstract graph of the airspace for hierarchical pathfinding (HPA*, SearchStrategy.HIERARCHICAL).
+ * The area around the noFlyZones is cut into a grid of DRONE_MOVE_DISTANCE cells, a cell is blocked when a zone
+ * reaches into it, and the cells are grouped into square clusters of CLUSTER_CELLS.
+ * A passage narrower than about two cells has no free cell in it, so the plans go around it and the leg can be
+ * much longer than the shortest path (not only the few percent of the cluster abstraction).
+ * Every run of free cell pairs along the border of two clusters is an entrance, crossed in its middle
+ * (or at both ends for runs of LONG_ENTRANCE cells or more), and the costs between the entrances of a cluster are
+ * precomputed by a Dijkstra within the cluster (8 neighbours, no corner cutting).
+ * A leg is planned over the entrances first, the lattice is then only searched between waypoints along that plan.
+ * The graph is immutable: an update builds a new one that only rebuilds the clusters the changed zones overlap
+ * (and the neighbours whose shared entrances moved), the other clusters are shared with the previous graph.
+ */
+public class ClusterGraph {
+    public static final int CLUSTER_CELLS = 16;
+    private static final double CELL = SystemConstants.DRONE_MOVE_DISTANCE;
+    // the grid extends this many clusters past the bounding box of the zones
+    private static final int MARGIN_CLUSTERS = 6;
+    // runs of free cell pairs at least this long get an entrance at both ends
+    private static final int LONG_ENTRANCE = 6;
+    private static final double DIAGONAL = Math.sqrt(2);
+    // longest stretch of a plan between two waypoints in cells
+    private static final int MAX_WAYPOINT_CELLS = 32;
+    // neighbours (column, row) of a cell, the diagonal ones last
+    private static final int[][] NEIGHBOURS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}, {1, 1}, {-1, 1}, {-1, -1}, {1, -1}};
+
+    /**
+     * Entrances of a cluster and the costs between them, shared between graphs as long as they do not change
+     */
+    private static class Cluster {
+        // cells on the border of the cluster, a corner cell can be an entrance on both of its sides
+        final int[] entrances;
+        // cell of the neighbouring cluster every entrance leads to
+        final int[] partners;
+        // moves from entrance i to entrance j at i * entrances.length + j, infinity if the cluster does not connect them
+        final float[] costs;
+
+        Cluster(int[] entrances, int[] partners, float[] costs) {
+            this.entrances = entrances;
+            this.partners = partners;
+            this.costs = costs;
+        }
+    }
+
+    private final NamedRegion[] noFlyZoneRegions;
+    // grid, empty without zones
+    private final double minX;
+    private final double minY;
+    private final int columns;
+    private final int rows;
+    private final int clusterColumns;
+    private final int clusterRows;
+    private final boolean[] blocked;
+    private final Cluster[] clusters;
+    private final int rebuiltClusters;
+    private final long buildNanos;
+
+    /**
+     * Builds the graph of every cluster
+     * @param noFlyZones - zones the clusters are built around
+     */
+    public ClusterGraph(NamedRegion[] noFlyZones) {
+        long start = System.nanoTime();
+        this.noFlyZoneRegions = noFlyZones;
+        double[] boxes = new ZoneIndex(noFlyZones).getBoundingBoxes();
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < boxes.length; i += 4) {
+            minX = Math.min(minX, boxes[i]);
+            minY = Math.min(minY, boxes[i + 1]);
+            maxX = Math.max(maxX, boxes[i + 2]);
+            maxY = Math.max(maxY, boxes[i + 3]);
+        }
+        if (minX > maxX) {
+            // nothing to plan around, every leg is searched on the lattice alone
+            this.minX = this.minY = 0;
+            this.clusterColumns = this.clusterRows = 0;
+        } else {
+            double margin = MARGIN_CLUSTERS * CLUSTER_CELLS * CELL;
+            this.minX = minX - margin;
+            this.minY = minY - margin;
+            this.clusterColumns = (int) Math.ceil((maxX - minX) / (CLUSTER_CELLS * CELL)) + 2 * MARGIN_CLUSTERS;
+            this.clusterRows = (int) Math.ceil((maxY - minY) / (CLUSTER_CELLS * CELL)) + 2 * MARGIN_CLUSTERS;
+        }
+        this.columns = clusterColumns * CLUSTER_CELLS;
+        this.rows = clusterRows * CLUSTER_CELLS;
+        this.blocked = new boolean[columns * rows];
+        this.clusters = new Cluster[clusterColumns * clusterRows];
+        ZoneIndex zones = new ZoneIndex(noFlyZones);
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            blockCells(cluster, zones);
+        }
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            clusters[cluster] = buildCluster(cluster);
+        }
+        this.rebuiltClusters = clusters.length;
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Copies the previous graph and rebuilds the given clusters
+     */
+    private ClusterGraph(ClusterGraph previous, NamedRegion[] noFlyZones, boolean[] changed) {
+        long start = System.nanoTime();
+        this.noFlyZoneRegions = noFlyZones;
+        this.minX = previous.minX;
+        this.minY = previous.minY;
+        this.columns = previous.columns;
+        this.rows = previous.rows;
+        this.clusterColumns = previous.clusterColumns;
+        this.clusterRows = previous.clusterRows;
+        this.blocked = previous.blocked.clone();
+        this.clusters = previous.clusters.clone();
+        ZoneIndex zones = new ZoneIndex(noFlyZones);
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            if (changed[cluster]) {
+                blockCells(cluster, zones);
+            }
+        }
+        int rebuilt = 0;
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            if (changed[cluster]) {
+                clusters[cluster] = buildCluster(cluster);
+                rebuilt++;
+                continue;
+            }
+            if (!isNextToChanged(cluster, changed)) {
+                continue;
+            }
+            // the entrances shared with a changed cluster may have moved
+            List<int[]> entrances = findEntrances(cluster);
+            Cluster kept = clusters[cluster];
+            if (!Arrays.equals(kept.entrances, entrances.get(0)) || !Arrays.equals(kept.partners, entrances.get(1))) {
+                clusters[cluster] = buildCluster(cluster);
+                rebuilt++;
+            }
+        }
+        this.rebuiltClusters = rebuilt;
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Switches to a new set of noFlyZones, only the clusters the added or removed zones overlap are rebuilt.
+     * Zones reaching past the grid rebuild the whole graph
+     * @param noFlyZones - active noFlyZones
+     * @return graph of the new zones
+     */
+    public ClusterGraph update(NamedRegion[] noFlyZones) {
+        NamedRegion[] changedZones = IncrementalSearch.changedRegions(noFlyZoneRegions, noFlyZones);
+        boolean[] changed = new boolean[clusters.length];
+        double[] boxes = new ZoneIndex(changedZones).getBoundingBoxes();
+        for (int i = 0; i < boxes.length; i += 4) {
+            int fromColumn = (int) Math.floor((boxes[i] - minX) / CELL);
+            int fromRow = (int) Math.floor((boxes[i + 1] - minY) / CELL);
+            int toColumn = (int) Math.floor((boxes[i + 2] - minX) / CELL);
+            int toRow = (int) Math.floor((boxes[i + 3] - minY) / CELL);
+            if (fromColumn < 0 || fromRow < 0 || toColumn >= columns || toRow >= rows) {
+                return new ClusterGraph(noFlyZones);
+            }
+            for (int row = fromRow / CLUSTER_CELLS; row <= toRow / CLUSTER_CELLS; row++) {
+                for (int column = fromColumn / CLUSTER_CELLS; column <= toColumn / CLUSTER_CELLS; column++) {
+                    changed[row * clusterColumns + column] = true;
+                }
+            }
+        }
+        return new ClusterGraph(this, noFlyZones, changed);
+    }
+
+    private boolean isNextToChanged(int cluster, boolean[] changed) {
+        int column = cluster % clusterColumns, row = cluster / clusterColumns;
+        return column > 0 && changed[cluster - 1] || column < clusterColumns - 1 && changed[cluster + 1]
+                || row > 0 && changed[cluster - clusterColumns] || row < clusterRows - 1 && changed[cluster + clusterColumns];
+    }
+
+    /**
+     * @return cell of the point or -1 outside the grid
+     */
+    private int cellOf(double x, double y) {
+        double column = (x - minX) / CELL;
+        double row = (y - minY) / CELL;
+        if (!(column >= 0 && column < columns && row >= 0 && row < rows)) {
+            return -1;
+        }
+        return (int) row * columns + (int) column;
+    }
+
+    private int clusterOf(int cell) {
+        return (cell / columns / CLUSTER_CELLS) * clusterColumns + (cell % columns) / CLUSTER_CELLS;
+    }
+
+    /**
+     * @return index of the cell within its cluster
+     */
+    private static int localOf(int cell, int columns) {
+        return (cell / columns % CLUSTER_CELLS) * CLUSTER_CELLS + cell % columns % CLUSTER_CELLS;
+    }
+
+    private boolean isBlocked(int column, int row) {
+        return blocked[row * columns + column];
+    }
+
+    /**
+     * marks the cells of the cluster that a zone reaches into (at the centre or a corner),
+     * so the plans keep to cells the lattice can surely cross
+     */
+    private void blockCells(int cluster, ZoneLookup zones) {
+        int firstColumn = (cluster % clusterColumns) * CLUSTER_CELLS, firstRow = (cluster / clusterColumns) * CLUSTER_CELLS;
+        double half = CELL / 2;
+        for (int row = firstRow; row < firstRow + CLUSTER_CELLS; row++) {
+            for (int column = firstColumn; column < firstColumn + CLUSTER_CELLS; column++) {
+                double x = minX + (column + 0.5) * CELL, y = minY + (row + 0.5) * CELL;
+                blocked[row * columns + column] = zones.contains(x, y)
+                        || zones.contains(x - half, y - half) || zones.contains(x + half, y - half)
+                        || zones.contains(x - half, y + half) || zones.contains(x + half, y + half);
+            }
+        }
+    }
+
+    private Cluster buildCluster(int cluster) {
+        List<int[]> entrances = findEntrances(cluster);
+        int[] cells = entrances.get(0);
+        float[] costs = new float[cells.length * cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            float[] distance = flood(cells[i]);
+            for (int j = 0; j < cells.length; j++) {
+                costs[i * cells.length + j] = distance[localOf(cells[j], columns)];
+            }
+        }
+        return new Cluster(cells, entrances.get(1), costs);
+    }
+
+    /**
+     * @return entrance cells and the cells they lead to, on the four sides of the cluster
+     */
+    private List<int[]> findEntrances(int cluster) {
+        int clusterColumn = cluster % clusterColumns, clusterRow = cluster / clusterColumns;
+        int firstColumn = clusterColumn * CLUSTER_CELLS, firstRow = clusterRow * CLUSTER_CELLS;
+        int lastColumn = firstColumn + CLUSTER_CELLS - 1, lastRow = firstRow + CLUSTER_CELLS - 1;
+        List<Integer> entrances = new ArrayList<>();
+        List<Integer> partners = new ArrayList<>();
+        if (clusterColumn < clusterColumns - 1) {
+            addEntrances(entrances, partners, lastColumn, firstRow, 0, 1, 1, 0);
+        }
+        if (clusterRow < clusterRows - 1) {
+            addEntrances(entrances, partners, firstColumn, lastRow, 1, 0, 0, 1);
+        }
+        if (clusterColumn > 0) {
+            addEntrances(entrances, partners, firstColumn, firstRow, 0, 1, -1, 0);
+        }
+        if (clusterRow > 0) {
+            addEntrances(entrances, partners, firstColumn, firstRow, 1, 0, 0, -1);
+        }
+        return List.of(entrances.stream().mapToInt(Integer::intValue).toArray(),
+                partners.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Scans one side of a cluster for runs of free cell pairs,
+     * the neighbouring cluster scans the same pairs in the same order, so both agree on the entrances
+     * @param column - first cell of the side
+     * @param row - first cell of the side
+     * @param alongColumn - step along the side
+     * @param alongRow - step along the side
+     * @param acrossColumn - step to the cell across the border
+     * @param acrossRow - step to the cell across the border
+     */
+    private void addEntrances(List<Integer> entrances, List<Integer> partners, int column, int row,
+                              int alongColumn, int alongRow, int acrossColumn, int acrossRow) {
+        int runStart = -1;
+        for (int k = 0; k <= CLUSTER_CELLS; k++) {
+            int c = column + k * alongColumn, r = row + k * alongRow;
+            boolean free = k < CLUSTER_CELLS
+                    && !isBlocked(c, r) && !isBlocked(c + acrossColumn, r + acrossRow);
+            if (free && runStart == -1) {
+                runStart = k;
+            } else if (!free && runStart != -1) {
+                int runEnd = k - 1;
+                int[] crossings = runEnd - runStart + 1 >= LONG_ENTRANCE
+                        ? new int[] {runStart, runEnd} : new int[] {(runStart + runEnd) / 2};
+                for (int crossing : crossings) {
+                    int entranceColumn = column + crossing * alongColumn, entranceRow = row + crossing * alongRow;
+                    entrances.add(entranceRow * columns + entranceColumn);
+                    partners.add((entranceRow + acrossRow) * columns + entranceColumn + acrossColumn);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private float[] flood(int start) {
+        return flood(start, null);
+    }
+
+    /**
+     * Dijkstra from a free cell over the free cells of its cluster
+     * @param start - cell to flood from
+     * @param parents - filled with the local index every reached cell was reached from, unless null
+     * @return moves to every cell of the cluster (by localOf), infinity for the ones it does not reach
+     */
+    private float[] flood(int start, int[] parents) {
+        int cluster = clusterOf(start);
+        int firstColumn = (cluster % clusterColumns) * CLUSTER_CELLS, firstRow = (cluster / clusterColumns) * CLUSTER_CELLS;
+        float[] distance = new float[CLUSTER_CELLS * CLUSTER_CELLS];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        IndexedMinHeap queue = new IndexedMinHeap(distance.length);
+        int startLocal = localOf(start, columns);
+        distance[startLocal] = 0;
+        queue.insert(startLocal, 0);
+        while (!queue.isEmpty()) {
+            double score = queue.peekPriority();
+            int local = queue.poll();
+            int column = local % CLUSTER_CELLS, row = local / CLUSTER_CELLS;
+            for (int i = 0; i < NEIGHBOURS.length; i++) {
+                int nextColumn = column + NEIGHBOURS[i][0], nextRow = row + NEIGHBOURS[i][1];
+                if (nextColumn < 0 || nextColumn >= CLUSTER_CELLS || nextRow < 0 || nextRow >= CLUSTER_CELLS
+                        || isBlocked(firstColumn + nextColumn, firstRow + nextRow)) {
+                    continue;
+                }
+                boolean diagonal = i >= 4;
+                if (diagonal && (isBlocked(firstColumn + nextColumn, firstRow + row)
+                        || isBlocked(firstColumn + column, firstRow + nextRow))) {
+                    continue;
+                }
+                int next = nextRow * CLUSTER_CELLS + nextColumn;
+                double nextScore = score + (diagonal ? DIAGONAL : 1);
+                if (nextScore < distance[next]) {
+                    distance[next] = (float) nextScore;
+                    queue.insertOrDecrease(next, nextScore);
+                    if (parents != null) {
+                        parents[next] = local;
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Plans the leg over the entrances (A* with the lattice moves between the cells as the estimate),
+     * then walks the plan cell by cell and keeps the cells that are in sight of each other
+     * (at most MAX_WAYPOINT_CELLS apart), so that the lattice search between two of them goes nearly straight
+     * @param origin - start
+     * @param destination - goal
+     * @param statistics - the expanded abstract nodes are counted too
+     * @return centres of the cells the leg passes through on its way to the destination,
+     * or null if an end lies outside the grid or in a blocked cell or the entrances do not connect the ends
+     */
+    List<LngLat> findWaypoints(LngLat origin, LngLat destination, SearchStatistics statistics) {
+        int start = cellOf(origin.lng(), origin.lat());
+        int goal = cellOf(destination.lng(), destination.lat());
+        if (start < 0 || goal < 0 || blocked[start] || blocked[goal]) {
+            return null;
+        }
+        int goalCluster = clusterOf(goal);
+        float[] fromStart = flood(start);
+        // the costs within a cluster are symmetric, so the flood from the goal gives the costs to it
+        float[] toGoal = flood(goal);
+        LongDoubleHashMap gScore = new LongDoubleHashMap(SearchState.EXPECTED_NODES);
+        LongLongHashMap cameFrom = new LongLongHashMap(SearchState.EXPECTED_NODES);
+        IndexedMinHeap queue = new IndexedMinHeap(SearchState.EXPECTED_NODES);
+        BitSet closed = new BitSet();
+        queue.insert(gScore.put(start, 0), estimate(start, goal));
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+            int cell = (int) gScore.keyAt(id);
+            closed.set(id);
+            statistics.expandedNodes++;
+            if (cell == goal) {
+                List<Integer> plan = new ArrayList<>();
+                for (long current = goal; current != start; current = cameFrom.get(current, start)) {
+                    plan.add(0, (int) current);
+                }
+                plan.add(0, start);
+                return smooth(origin, walkCells(plan));
+            }
+            double score = gScore.valueAt(id);
+            int cluster = clusterOf(cell);
+            if (cluster == goalCluster) {
+                relax(cell, goal, score + toGoal[localOf(cell, columns)], gScore, cameFrom, queue, closed, goal);
+            }
+            Cluster entrances = clusters[cluster];
+            int count = entrances.entrances.length;
+            if (cell == start) {
+                for (int j = 0; j < count; j++) {
+                    int entrance = entrances.entrances[j];
+                    relax(cell, entrance, fromStart[localOf(entrance, columns)], gScore, cameFrom, queue, closed, goal);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if (entrances.entrances[i] != cell) {
+                    continue;
+                }
+                // partners are orthogonal neighbours
+                relax(cell, entrances.partners[i], score + 1, gScore, cameFrom, queue, closed, goal);
+                for (int j = 0; j < count; j++) {
+                    relax(cell, entrances.entrances[j], score + entrances.costs[i * count + j],
+                            gScore, cameFrom, queue, closed, goal);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void relax(int from, int to, double score, LongDoubleHashMap gScore, LongLongHashMap cameFrom,
+                       IndexedMinHeap queue, BitSet closed, int goal) {
+        int id = gScore.indexOf(to);
+        // the estimate is consistent, expanded nodes are final
+        if (id != -1 && (closed.get(id) || !(score < gScore.valueAt(id)))) {
+            return;
+        }
+        id = gScore.put(to, score);
+        cameFrom.put(to, from);
+        queue.insertOrDecrease(id, score + estimate(to, goal));
+    }
+
+    /**
+     * @param plan - nodes of the abstract path
+     * @return every cell the plan passes through, in order
+     */
+    private List<Integer> walkCells(List<Integer> plan) {
+        List<Integer> cells = new ArrayList<>();
+        cells.add(plan.get(0));
+        int[] parents = new int[CLUSTER_CELLS * CLUSTER_CELLS];
+        for (int k = 1; k < plan.size(); k++) {
+            int from = plan.get(k - 1), to = plan.get(k);
+            if (clusterOf(from) != clusterOf(to)) {
+                // crossing into the next cluster
+                cells.add(to);
+                continue;
+            }
+            flood(to, parents);
+            // parents lead back to `to`, so the walk from `from` is in the right order
+            int cluster = clusterOf(from);
+            int firstColumn = (cluster % clusterColumns) * CLUSTER_CELLS;
+            int firstRow = (cluster / clusterColumns) * CLUSTER_CELLS;
+            int target = localOf(to, columns);
+            for (int local = localOf(from, columns); local != target; ) {
+                local = parents[local];
+                cells.add((firstRow + local / CLUSTER_CELLS) * columns + firstColumn + local % CLUSTER_CELLS);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * string pulling: from every waypoint the walk jumps to the farthest cell still in sight
+     * @return centres of the kept cells, without the last one (the destination takes its place)
+     */
+    private List<LngLat> smooth(LngLat origin, List<Integer> cells) {
+        List<LngLat> waypoints = new ArrayList<>();
+        double x = origin.lng(), y = origin.lat();
+        int last = cells.size() - 1;
+        int k = 0;
+        while (k < last) {
+            int next = k + 1;
+            while (next < last && next - k < MAX_WAYPOINT_CELLS && isInSight(x, y, cells.get(next + 1))) {
+                next++;
+            }
+            if (next == last) {
+                break;
+            }
+            x = centreLng(cells.get(next));
+            y = centreLat(cells.get(next));
+            waypoints.add(new LngLat(x, y));
+            k = next;
+        }
+        return waypoints;
+    }
+
+    /**
+     * @return whether the segment from the point to the centre of the cell only passes through free cells
+     */
+    private boolean isInSight(double x, double y, int cell) {
+        double dx = centreLng(cell) - x, dy = centreLat(cell) - y;
+        int samples = (int) Math.ceil(4 * Math.hypot(dx, dy) / CELL);
+        for (int i = 1; i <= samples; i++) {
+            int crossed = cellOf(x + dx * i / samples, y + dy * i / samples);
+            if (crossed < 0 || blocked[crossed]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double centreLng(int cell) {
+        return minX + (cell % columns + 0.5) * CELL;
+    }
+
+    private double centreLat(int cell) {
+        return minY + (cell / columns + 0.5) * CELL;
+    }
+
+    /**
+     * @return least number of lattice moves between the centres of the cells
+     */
+    private double estimate(int cell, int goal) {
+        return LatticeHeuristic.moves((goal % columns - cell % columns) * CELL, (goal / columns - cell / columns) * CELL);
+    }
+
+    /**
+     * @return number of clusters of the grid
+     */
+    public int getClusterCount() {
+        return clusters.length;
+    }
+
+    /**
+     * @return number of entrances over all the clusters (each crossing counts once on either side)
+     */
+    public int getEntranceCount() {
+        int count = 0;
+        for (Cluster cluster : clusters) {
+            count += cluster.entrances.length;
+        }
+        return count;
+    }
+
+    /**
+     * @return number of clusters built by the last build or update (all of them for a full build)
+     */
+    public int getRebuiltClusters() {
+        return rebuiltClusters;
+    }
+
+    /**
+     * @return time the last build or update took in nanoseconds
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+}
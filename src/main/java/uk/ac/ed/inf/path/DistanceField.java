@@ -0,0 +1,205 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.utils.ZoneIndex;
+import uk.ac.ed.inf.utils.ZoneLookup;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Flood of the lattice around a fixed origin (Appleton Tower), computed once per zone update.
+ * Every move has the same cost, so the flood is a breadth-first search along the 16 lattice moves.
+ * The lattice itself never repeats a position, so positions are bucketed into square cells of `resolution`
+ * and only the first (fewest moves) position reaching a cell is kept, which keeps the flood finite.
+ * A path from the origin to any point within `radius` is then a walk along the parent pointers.
+ * Paths are exact lattice moves, they can be slightly longer than a full A* search
+ * (a discarded position of a cell could have led to a shorter path).
+ * The radius is capped at MAX_RADIUS, destinations further away are not covered and are searched instead.
+ */
+public class DistanceField {
+    /**
+     * Largest flooded radius in degrees, about 3 km (with cells a third of a move wide the arrays take about 23 MB)
+     */
+    public static final double MAX_RADIUS = 0.03;
+    // keeps the arrays indexable by int
+    private static final long MAX_CELLS = 1L << 28;
+    private static final int UNREACHED = -1;
+
+    private final LngLat origin;
+    private final Lattice lattice;
+    private final double radius;
+    private final double resolution;
+    // grid of cells over the disk of `radius` around the origin
+    private final double minX;
+    private final double minY;
+    private final int size;
+    // lattice key of the position kept in a cell
+    private final long[] keys;
+    // cell of the position the kept one was reached from (UNREACHED if the cell was not reached)
+    private final int[] parents;
+    // number of moves from the origin
+    private final int[] depths;
+    private int reachedCells;
+    private final long buildNanos;
+
+    /**
+     * Floods the lattice around the origin
+     * @param origin - start of every path
+     * @param noFlyZones - zones no position can be in
+     * @param radius - positions further from the origin are not flooded (capped at MAX_RADIUS)
+     * @param resolution - size of a cell in degrees
+     * @throws IllegalArgumentException if the resolution is too fine for the radius
+     */
+    public DistanceField(LngLat origin, NamedRegion[] noFlyZones, double radius, double resolution) {
+        long start = System.nanoTime();
+        this.origin = origin;
+        this.lattice = new Lattice(origin);
+        this.radius = Math.min(radius, MAX_RADIUS);
+        this.resolution = resolution;
+        long columns = 2 * (long) Math.ceil(this.radius / resolution) + 1;
+        if (columns * columns > MAX_CELLS) {
+            throw new IllegalArgumentException("Distance field resolution too fine: " + resolution);
+        }
+        this.size = (int) columns;
+        this.minX = origin.lng() - (size / 2 + 0.5) * resolution;
+        this.minY = origin.lat() - (size / 2 + 0.5) * resolution;
+        this.keys = new long[size * size];
+        this.parents = new int[size * size];
+        this.depths = new int[size * size];
+        Arrays.fill(parents, UNREACHED);
+        flood(new ZoneIndex(noFlyZones));
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    private void flood(ZoneLookup noFlyZones) {
+        int[] queue = new int[size * size];
+        int head = 0, tail = 0;
+        int startCell = cellOf(origin.lng(), origin.lat());
+        keys[startCell] = Lattice.ORIGIN_KEY;
+        // the origin is its own parent, so it counts as reached
+        parents[startCell] = startCell;
+        queue[tail++] = startCell;
+        double radiusSquared = radius * radius;
+        while (head < tail) {
+            int cell = queue[head++];
+            long key = keys[cell];
+            for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+                long next = lattice.step(key, direction);
+                if (next == Lattice.OUT_OF_RANGE) {
+                    continue;
+                }
+                double x = lattice.lng(next), y = lattice.lat(next);
+                double dx = x - origin.lng(), dy = y - origin.lat();
+                if (dx * dx + dy * dy > radiusSquared) {
+                    continue;
+                }
+                int nextCell = cellOf(x, y);
+                if (parents[nextCell] != UNREACHED || noFlyZones.contains(x, y)) {
+                    continue;
+                }
+                keys[nextCell] = next;
+                parents[nextCell] = cell;
+                depths[nextCell] = depths[cell] + 1;
+                queue[tail++] = nextCell;
+            }
+        }
+        reachedCells = tail;
+    }
+
+    private int cellOf(double x, double y) {
+        int column = (int) ((x - minX) / resolution);
+        int row = (int) ((y - minY) / resolution);
+        return row * size + column;
+    }
+
+    /**
+     * @param destination - goal point
+     * @return whether paths to the destination can be served from the field
+     */
+    public boolean covers(LngLat destination) {
+        double dx = destination.lng() - origin.lng(), dy = destination.lat() - origin.lat();
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    /**
+     * Walks the parent pointers from the position closest (in moves) to the destination
+     * @param destination - goal point within the radius of the field
+     * @return path from the origin (ending with a hover at the destination) or null if no flooded position
+     * is close to the destination
+     */
+    public List<Cell> findPath(LngLat destination) {
+        if (!covers(destination)) {
+            return null;
+        }
+        // cells a position close to the destination can be in
+        int reach = (int) Math.ceil(SystemConstants.DRONE_IS_CLOSE_DISTANCE / resolution) + 1;
+        int centre = cellOf(destination.lng(), destination.lat());
+        int centreRow = centre / size, centreColumn = centre % size;
+        int best = UNREACHED;
+        for (int row = Math.max(0, centreRow - reach); row <= Math.min(size - 1, centreRow + reach); row++) {
+            for (int column = Math.max(0, centreColumn - reach); column <= Math.min(size - 1, centreColumn + reach); column++) {
+                int cell = row * size + column;
+                if (parents[cell] == UNREACHED || (best != UNREACHED && depths[cell] >= depths[best])) {
+                    continue;
+                }
+                double dx = destination.lng() - lattice.lng(keys[cell]);
+                double dy = destination.lat() - lattice.lat(keys[cell]);
+                if (Math.sqrt(dx * dx + dy * dy) <= SystemConstants.DRONE_IS_CLOSE_DISTANCE) {
+                    best = cell;
+                }
+            }
+        }
+        if (best == UNREACHED) {
+            return null;
+        }
+        LinkedList<Cell> path = new LinkedList<>();
+        path.add(new Cell(destination, Cell.HOVER_ANGLE));
+        int cell = best;
+        while (parents[cell] != cell) {
+            int parent = parents[cell];
+            double angle = Lattice.toAngle(lattice.direction(keys[parent], keys[cell]));
+            path.addFirst(new Cell(lattice, keys[cell], angle));
+            cell = parent;
+        }
+        return List.copyOf(path);
+    }
+
+    /**
+     * @return origin of the field
+     */
+    public LngLat getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return radius of the flooded disk in degrees
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return number of flooded positions
+     */
+    public int getReachedCells() {
+        return reachedCells;
+    }
+
+    /**
+     * @return size of the field arrays in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) keys.length * (Long.BYTES + 2 * Integer.BYTES);
+    }
+
+    /**
+     * @return time it took to flood the field in nanoseconds
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+}
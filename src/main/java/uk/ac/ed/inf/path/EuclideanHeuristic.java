@@ -0,0 +1,27 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Straight line distance to the circle around the destination the drone has to reach.
+ * Admissible (no move is longer than DRONE_MOVE_DISTANCE) but loose in the directions between two moves.
+ */
+public class EuclideanHeuristic implements Heuristic {
+    @Override
+    public double estimate(Lattice lattice, long key, LngLat destination) {
+        double dLng = destination.lng() - lattice.lng(key);
+        double dLat = destination.lat() - lattice.lat(key);
+        return Math.max(0, Math.sqrt(dLng * dLng + dLat * dLat) - SystemConstants.DRONE_IS_CLOSE_DISTANCE);
+    }
+
+    @Override
+    public double getSuboptimalityBound() {
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "euclidean";
+    }
+}
@@ -0,0 +1,38 @@
+package uk.ac.ed.inf.path;
+
+/**
+ * Format of the deliveries, flightpath and drone files
+ */
+public enum ExportFormat {
+    // deliveries and flightpath as JSON arrays, drone as a GeoJSON LineString (FlightPathJsonWriter)
+    JSON("json"),
+    // Avro container files of Delivery, Move and DronePoint records (FlightAvroWriter)
+    AVRO("avro");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return extension of the files, without the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param name - format name, case-insensitive (json, avro)
+     * @return format of that name
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static ExportFormat fromName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output format: " + name);
+    }
+}
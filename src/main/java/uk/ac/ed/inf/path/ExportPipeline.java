@@ -0,0 +1,250 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.Order;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes the deliveries, flightpath and drone files of a day while its orders are still being planned.
+ * Orders are handed in as soon as they are complete, from any thread and in any order, and are written in
+ * the order of the day: a complete order waits for the ones before it, so the files do not depend on which
+ * planning thread finished first. Every file has a writer thread of its own, the three files are written
+ * at the same time and planning only pays for handing the orders over.
+ * finish() is the barrier, it returns once every file is complete and closed.
+ * The files are written under a partial name and only get their own name once finish() completed them,
+ * close() without finish() aborts: the orders not written yet are dropped, the partial files are deleted
+ * and any earlier file of the same name is left as it was. An exception during planning (close() of a
+ * try-with-resources) therefore never leaves a file behind that looks complete.
+ */
+public class ExportPipeline implements Closeable {
+    private final PartialFile[] files;
+    private final OrderSink[] sinks;
+    private final ExecutorService[] writers;
+    // complete orders waiting for the ones before them, by position in the day
+    private final Map<Integer, CompleteOrder> waitingOrders = new HashMap<>();
+    private int nextOrder;
+    private boolean closed;
+    // set by an abort, the writes after it are skipped
+    private volatile boolean aborted;
+    // first failure of a writer, the writes after it are skipped
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private record CompleteOrder(Order order, List<Cell> path) {}
+
+    /**
+     * File of the pipeline, written next to its target under a partial name
+     * @param partial - path the file is written to
+     * @param target - path of the complete file
+     * @param stream - stream into the partial file, the sink of the file writes through it
+     */
+    record PartialFile(Path partial, Path target, OutputStream stream) {
+        static final String SUFFIX = ".part";
+
+        /**
+         * @param target - path of the complete file
+         * @return path the file is written to until it is complete
+         */
+        static Path partialPath(Path target) {
+            return target.resolveSibling(target.getFileName() + SUFFIX);
+        }
+    }
+
+    /**
+     * @param files - files to write
+     * @param sinks - sink of every file, each one on a writer thread of its own
+     */
+    ExportPipeline(PartialFile[] files, OrderSink[] sinks) {
+        this.files = files;
+        this.sinks = sinks;
+        this.writers = new ExecutorService[sinks.length];
+        for (int i = 0; i < sinks.length; i++) {
+            writers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "export-writer");
+                // the writers never keep the process alive on their own, finish() waits for them
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Hands a complete order over to the writers, it is written once all the orders before it are in
+     * @param sequence - position of the order in the day, from 0
+     * @param order - order with its final status
+     * @param path - flight path of the order, empty if it is not delivered
+     */
+    public synchronized void add(int sequence, Order order, List<Cell> path) {
+        if (closed) {
+            throw new IllegalStateException("Export already closed");
+        }
+        if (sequence < nextOrder || waitingOrders.containsKey(sequence)) {
+            throw new IllegalArgumentException("Order " + sequence + " added twice");
+        }
+        waitingOrders.put(sequence, new CompleteOrder(order, path));
+        CompleteOrder next;
+        while ((next = waitingOrders.remove(nextOrder)) != null) {
+            write(next);
+            nextOrder++;
+        }
+    }
+
+    /**
+     * @return number of orders handed over to the writers so far
+     */
+    public synchronized int getWrittenOrders() {
+        return nextOrder;
+    }
+
+    private void write(CompleteOrder completeOrder) {
+        for (int i = 0; i < sinks.length; i++) {
+            OrderSink sink = sinks[i];
+            writers[i].execute(() -> {
+                if (aborted || failure.get() != null) {
+                    return;
+                }
+                try {
+                    sink.write(completeOrder.order(), completeOrder.path());
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until every order is written and the files are complete and closed,
+     * then gives them their own names (replacing earlier files)
+     * @throws IllegalStateException if orders are still waiting for ones before them that never came
+     * @throws IOException - first failure of the writers, the partial files are deleted
+     */
+    public void finish() throws IOException {
+        synchronized (this) {
+            if (!waitingOrders.isEmpty()) {
+                throw new IllegalStateException("Orders missing from position " + nextOrder);
+            }
+            if (closed) {
+                throw new IllegalStateException("Export already closed");
+            }
+            closed = true;
+        }
+        // closing a sink completes its file (closing brackets, trailers)
+        for (int i = 0; i < sinks.length; i++) {
+            OrderSink sink = sinks[i];
+            writers[i].execute(() -> {
+                try {
+                    sink.close();
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        awaitWriters();
+        Exception exception = failure.get();
+        if (exception != null) {
+            IOException ioException = exception instanceof IOException e
+                    ? e : new IOException("Export failed", exception);
+            discard(List.of(files), ioException);
+            throw ioException;
+        }
+        for (PartialFile file : files) {
+            Files.move(file.partial(), file.target(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Aborts the export unless finish() completed it: drops the orders not written yet,
+     * closes the files without completing them and deletes them
+     * @throws IOException if a partial file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        aborted = true;
+        for (int i = 0; i < writers.length; i++) {
+            OutputStream stream = files[i].stream();
+            // the stream under the sink, closing the sink would complete the file
+            writers[i].execute(() -> {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                    // the file is deleted anyway
+                }
+            });
+        }
+        awaitWriters();
+        IOException exception = new IOException("Partial export files left behind");
+        for (PartialFile file : files) {
+            try {
+                Files.deleteIfExists(file.partial());
+            } catch (IOException e) {
+                exception.addSuppressed(e);
+            }
+        }
+        if (exception.getSuppressed().length > 0) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Closes the streams of files that will not be completed and deletes them
+     * @param files - files to drop
+     * @param cause - failure the files are dropped for, failures to close or delete are added to it
+     */
+    static void discard(List<PartialFile> files, Throwable cause) {
+        for (PartialFile file : files) {
+            try {
+                file.stream().close();
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+            try {
+                Files.deleteIfExists(file.partial());
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * shuts the writers down and waits for the tasks queued so far
+     */
+    private void awaitWriters() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+        // an interrupt does not cut the wait short, the files have to be complete
+        boolean interrupted = false;
+        for (ExecutorService writer : writers) {
+            while (true) {
+                try {
+                    if (writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
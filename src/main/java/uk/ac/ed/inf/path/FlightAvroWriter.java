@@ -0,0 +1,210 @@
+package uk.ac.ed.inf.path;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import uk.ac.ed.inf.ilp.data.Order;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the deliveries, flightpath and drone outputs as Avro object container files
+ * (schemas in src/main/resources/avro, blocks deflate-compressed) for the analytics warehouse.
+ * The records carry the fields of the JSON outputs, one record per order, move and point.
+ * Like FlightPathJsonWriter nothing is kept per move: a single record is filled and appended over and over,
+ * and the sinks write the same files an order at a time, for the ExportPipeline.
+ */
+final class FlightAvroWriter {
+    static final Schema DELIVERY_SCHEMA = loadSchema("Delivery");
+    static final Schema MOVE_SCHEMA = loadSchema("Move");
+    static final Schema DRONE_POINT_SCHEMA = loadSchema("DronePoint");
+    // deflate level of the blocks, the default zlib trade-off
+    private static final int DEFLATE_LEVEL = 6;
+
+    private FlightAvroWriter() {
+    }
+
+    private static Schema loadSchema(String name) {
+        try (InputStream stream = FlightAvroWriter.class.getResourceAsStream("/avro/" + name + ".avsc")) {
+            return new Schema.Parser().parse(stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DataFileWriter<GenericRecord> create(Schema schema, OutputStream out) throws IOException {
+        DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>(schema));
+        writer.setCodec(CodecFactory.deflateCodec(DEFLATE_LEVEL));
+        try {
+            return writer.create(schema, out);
+        } catch (IOException | RuntimeException e) {
+            // the writer never took the stream over
+            try {
+                out.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param orders - orders of the day
+     * @param out - stream to write into, closed at the end
+     */
+    static void writeDeliveries(Order[] orders, OutputStream out) throws IOException {
+        GenericRecord record = new GenericData.Record(DELIVERY_SCHEMA);
+        try (DataFileWriter<GenericRecord> writer = create(DELIVERY_SCHEMA, out)) {
+            for (Order order : orders) {
+                appendDelivery(writer, record, order);
+            }
+        }
+    }
+
+    /**
+     * Same as writeDeliveries, an order at a time
+     * @param out - stream to write into, closed with the sink
+     * @return sink appending a Delivery for every order it is given
+     */
+    static OrderSink deliveriesSink(OutputStream out) throws IOException {
+        GenericRecord record = new GenericData.Record(DELIVERY_SCHEMA);
+        DataFileWriter<GenericRecord> writer = create(DELIVERY_SCHEMA, out);
+        return new OrderSink() {
+            @Override
+            public void write(Order order, List<Cell> path) throws IOException {
+                appendDelivery(writer, record, order);
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    private static void appendDelivery(DataFileWriter<GenericRecord> writer, GenericRecord record, Order order)
+            throws IOException {
+        record.put("orderNo", order.getOrderNo());
+        record.put("orderStatus", order.getOrderStatus().name());
+        record.put("orderValidationCode", order.getOrderValidationCode().name());
+        record.put("costInPence", order.getPriceTotalInPence());
+        writer.append(record);
+    }
+
+    /**
+     * Writes a Move for every move, the ones FlightPathJsonWriter.writeOrderPaths writes
+     * @param orderPaths - recorded paths by orderNo
+     * @param out - stream to write into, closed at the end
+     */
+    static void writeOrderPaths(Map<String, List<Cell>> orderPaths, OutputStream out) throws IOException {
+        GenericRecord record = new GenericData.Record(MOVE_SCHEMA);
+        double[] from = new double[2];
+        double[] to = new double[2];
+        try (DataFileWriter<GenericRecord> writer = create(MOVE_SCHEMA, out)) {
+            for (Map.Entry<String, List<Cell>> orderPath : orderPaths.entrySet()) {
+                appendMoves(writer, record, orderPath.getKey(), orderPath.getValue(), from, to);
+            }
+        }
+    }
+
+    /**
+     * Same as writeOrderPaths, an order at a time
+     * @param out - stream to write into, closed with the sink
+     * @return sink appending the Moves of every order it is given
+     */
+    static OrderSink orderPathsSink(OutputStream out) throws IOException {
+        GenericRecord record = new GenericData.Record(MOVE_SCHEMA);
+        double[] from = new double[2];
+        double[] to = new double[2];
+        DataFileWriter<GenericRecord> writer = create(MOVE_SCHEMA, out);
+        return new OrderSink() {
+            @Override
+            public void write(Order order, List<Cell> path) throws IOException {
+                appendMoves(writer, record, order.getOrderNo(), path, from, to);
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    /**
+     * appends the moves of a path, from and to are buffers
+     */
+    private static void appendMoves(DataFileWriter<GenericRecord> writer, GenericRecord record, String orderNo,
+                                    List<Cell> path, double[] from, double[] to) throws IOException {
+        record.put("orderNo", orderNo);
+        boolean first = true;
+        for (Cell pathPoint : path) {
+            pathPoint.position(to);
+            if (!first) {
+                record.put("fromLongitude", from[0]);
+                record.put("fromLatitude", from[1]);
+                record.put("angle", pathPoint.getEnterAngle());
+                record.put("toLatitude", to[1]);
+                record.put("toLongitude", to[0]);
+                writer.append(record);
+            }
+            first = false;
+            from[0] = to[0];
+            from[1] = to[1];
+        }
+    }
+
+    /**
+     * Writes a DronePoint for every point of the drone LineString
+     * @param orderPaths - recorded paths by orderNo
+     * @param out - stream to write into, closed at the end
+     */
+    static void writeFlightPoints(Map<String, List<Cell>> orderPaths, OutputStream out) throws IOException {
+        GenericRecord record = new GenericData.Record(DRONE_POINT_SCHEMA);
+        double[] position = new double[2];
+        try (DataFileWriter<GenericRecord> writer = create(DRONE_POINT_SCHEMA, out)) {
+            for (List<Cell> orderPath : orderPaths.values()) {
+                appendPoints(writer, record, orderPath, position);
+            }
+        }
+    }
+
+    /**
+     * Same as writeFlightPoints, an order at a time
+     * @param out - stream to write into, closed with the sink
+     * @return sink appending the DronePoints of every order it is given
+     */
+    static OrderSink flightPointsSink(OutputStream out) throws IOException {
+        GenericRecord record = new GenericData.Record(DRONE_POINT_SCHEMA);
+        double[] position = new double[2];
+        DataFileWriter<GenericRecord> writer = create(DRONE_POINT_SCHEMA, out);
+        return new OrderSink() {
+            @Override
+            public void write(Order order, List<Cell> path) throws IOException {
+                appendPoints(writer, record, path, position);
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    private static void appendPoints(DataFileWriter<GenericRecord> writer, GenericRecord record, List<Cell> path,
+                                     double[] position) throws IOException {
+        for (Cell point : path) {
+            point.position(position);
+            record.put("longitude", position[0]);
+            record.put("latitude", position[1]);
+            writer.append(record);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.utils.LngLatHandler;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the compact binary flightpath format written by FlightPlanner.exportOrderPathHistoryToBinary.
+ * The file is MAGIC and VERSION followed by one record per order:
+ * orderNo (modified UTF-8), origin longitude and latitude (doubles), number of moves (int), then the moves.
+ * Every move is one byte, the low 4 bits are the direction minus the one of the previous move (mod 16),
+ * so straight runs are a stream of zeros, the high bits say where the move ends:
+ * CONTINUE - on the lattice of the current leg (the positions are the ones the search computed, bit for bit),
+ * RESTART - on a new lattice starting at the current position,
+ * STEP - one move from the current position (LngLatHandler.nextPosition),
+ * EXPLICIT - at the longitude and latitude (doubles) that follow,
+ * and for the moves that are not along a direction: HOVER (coordinates follow), HOVER_IN_PLACE
+ * and OTHER_ANGLE (angle, longitude and latitude follow).
+ * The reader walks the moves of an order one at a time, nothing is kept per move.
+ */
+public class FlightPathBinaryReader implements Closeable {
+    static final int MAGIC = 0x50444650;
+    static final int VERSION = 1;
+    static final int CONTINUE = 0x00;
+    static final int RESTART = 0x10;
+    static final int STEP = 0x20;
+    static final int EXPLICIT = 0x30;
+    static final int HOVER = 0x40;
+    static final int HOVER_IN_PLACE = 0x41;
+    static final int OTHER_ANGLE = 0x7F;
+
+    /**
+     * Position of the drone along a path and the lattice its moves are predicted on,
+     * shared by the writer, which picks the move kind the reader will decode back to the same position
+     */
+    static class Cursor {
+        private Lattice lattice;
+        private long key;
+        final double[] position = new double[2];
+        int direction;
+
+        void reset(double lng, double lat) {
+            moveTo(lng, lat);
+            direction = 0;
+        }
+
+        /**
+         * @param kind - CONTINUE, RESTART or STEP
+         * @param direction - 0..15
+         * @param out - buffer the predicted position is written into
+         * @return whether the move can be predicted (false if it leaves the range of the lattice)
+         */
+        boolean predict(int kind, int direction, double[] out) {
+            if (kind == STEP) {
+                out[0] = position[0];
+                out[1] = position[1];
+                LngLatHandler.step(out, direction);
+                return true;
+            }
+            Lattice on = kind == CONTINUE ? lattice : new Lattice(new LngLat(position[0], position[1]));
+            long next = on.step(kind == CONTINUE ? key : Lattice.ORIGIN_KEY, direction);
+            if (next == Lattice.OUT_OF_RANGE) {
+                return false;
+            }
+            on.position(next, out);
+            return true;
+        }
+
+        /**
+         * moves the cursor the way `predict` did
+         */
+        void apply(int kind, int direction) {
+            if (kind == RESTART) {
+                lattice = new Lattice(new LngLat(position[0], position[1]));
+                key = Lattice.ORIGIN_KEY;
+            }
+            if (kind == STEP) {
+                predict(STEP, direction, position);
+                moveTo(position[0], position[1]);
+            } else {
+                key = lattice.step(key, direction);
+                lattice.position(key, position);
+            }
+            this.direction = direction;
+        }
+
+        /**
+         * jumps to a position, which starts a new lattice
+         */
+        void moveTo(double lng, double lat) {
+            position[0] = lng;
+            position[1] = lat;
+            lattice = new Lattice(new LngLat(lng, lat));
+            key = Lattice.ORIGIN_KEY;
+        }
+    }
+
+    private final DataInputStream in;
+    private final Cursor cursor = new Cursor();
+    private String orderNo;
+    private int remainingMoves;
+    private double angle;
+
+    /**
+     * @param in - stream positioned at the start of a binary flightpath file
+     */
+    public FlightPathBinaryReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        if (this.in.readInt() != MAGIC) {
+            throw new IOException("Not a binary flightpath file");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary flightpath version: " + version);
+        }
+    }
+
+    /**
+     * Skips what is left of the current order and reads the header of the next one
+     * @return false at the end of the file
+     */
+    public boolean nextOrder() throws IOException {
+        while (remainingMoves > 0) {
+            nextMove();
+        }
+        try {
+            orderNo = in.readUTF();
+        } catch (EOFException e) {
+            return false;
+        }
+        cursor.reset(in.readDouble(), in.readDouble());
+        remainingMoves = in.readInt();
+        angle = Cell.HOVER_ANGLE;
+        return true;
+    }
+
+    /**
+     * Decodes the next move of the current order
+     * @return false once all the moves of the order are read
+     */
+    public boolean nextMove() throws IOException {
+        if (remainingMoves == 0) {
+            return false;
+        }
+        remainingMoves--;
+        int code = in.readUnsignedByte();
+        switch (code) {
+            case HOVER -> {
+                angle = Cell.HOVER_ANGLE;
+                cursor.moveTo(in.readDouble(), in.readDouble());
+            }
+            case HOVER_IN_PLACE -> angle = Cell.HOVER_ANGLE;
+            case OTHER_ANGLE -> {
+                angle = in.readDouble();
+                cursor.moveTo(in.readDouble(), in.readDouble());
+            }
+            default -> {
+                int kind = code & 0xF0;
+                int direction = (cursor.direction + code) & 0x0F;
+                angle = Lattice.toAngle(direction);
+                if (kind == EXPLICIT) {
+                    cursor.moveTo(in.readDouble(), in.readDouble());
+                    cursor.direction = direction;
+                } else if (kind == CONTINUE || kind == RESTART || kind == STEP) {
+                    cursor.apply(kind, direction);
+                } else {
+                    throw new IOException("Unknown move code: " + code);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return orderNo of the current order
+     */
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    /**
+     * @return moves of the current order not read yet
+     */
+    public int getRemainingMoves() {
+        return remainingMoves;
+    }
+
+    /**
+     * @return angle of the last move read (Cell.HOVER_ANGLE for a hover)
+     */
+    public double getAngle() {
+        return angle;
+    }
+
+    /**
+     * @return longitude the last move read ends at (the origin before the first move)
+     */
+    public double getLng() {
+        return cursor.position[0];
+    }
+
+    /**
+     * @return latitude the last move read ends at (the origin before the first move)
+     */
+    public double getLat() {
+        return cursor.position[1];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Converts a binary flightpath file to the flightpath JSON, the same bytes exportOrderPathHistoryToJson writes
+     * @param in - stream of a binary flightpath file, closed at the end
+     * @param out - stream to write the JSON into, closed at the end
+     */
+    public static void convertToJson(InputStream in, OutputStream out) throws IOException {
+        try (FlightPathBinaryReader reader = new FlightPathBinaryReader(in)) {
+            FlightPathJsonWriter.writeOrderPaths(reader, out);
+        }
+    }
+
+    /**
+     * Reads a whole file into memory (eg for tools that want the paths as cells)
+     * @param in - stream of a binary flightpath file, closed at the end
+     * @return paths by orderNo in the order of the file, the origins are not part of them
+     */
+    public static Map<String, List<Cell>> readOrderPaths(InputStream in) throws IOException {
+        Map<String, List<Cell>> orderPaths = new LinkedHashMap<>();
+        try (FlightPathBinaryReader reader = new FlightPathBinaryReader(in)) {
+            while (reader.nextOrder()) {
+                List<Cell> path = new ArrayList<>();
+                while (reader.nextMove()) {
+                    path.add(new Cell(new LngLat(reader.getLng(), reader.getLat()), reader.getAngle()));
+                }
+                orderPaths.put(reader.getOrderNo(), path);
+            }
+        }
+        return orderPaths;
+    }
+}
@@ -0,0 +1,138 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.Order;
+import uk.ac.ed.inf.utils.LngLatHandler;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static uk.ac.ed.inf.path.FlightPathBinaryReader.*;
+
+/**
+ * Writes the recorded flights in the compact binary flightpath format (see FlightPathBinaryReader).
+ * Every move is encoded the cheapest way the reader decodes back to exactly the same coordinates:
+ * the moves of a search stay on its lattice and take a single byte, only positions that are not
+ * one move away from the previous one (eg the destination of a hover) are written out in full.
+ */
+final class FlightPathBinaryWriter {
+    // the ways a move along a direction can be predicted, cheapest first (all take a single byte)
+    private static final int[] PREDICTED_KINDS = {CONTINUE, RESTART, STEP};
+
+    private FlightPathBinaryWriter() {
+    }
+
+    /**
+     * @param orderPaths - recorded paths by orderNo
+     * @param out - stream to write into, closed at the end
+     */
+    static void writeOrderPaths(Map<String, List<Cell>> orderPaths, OutputStream out) throws IOException {
+        Cursor cursor = new Cursor();
+        double[] position = new double[2];
+        double[] predicted = new double[2];
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(MAGIC);
+            data.writeByte(VERSION);
+            for (Map.Entry<String, List<Cell>> orderPath : orderPaths.entrySet()) {
+                writeOrderPath(data, cursor, orderPath.getKey(), orderPath.getValue(), position, predicted);
+            }
+        }
+    }
+
+    /**
+     * Same as writeOrderPaths, an order at a time, so the orders are in the order of the day
+     * like the JSON flightpath (orders without a flight are left out, as they are not recorded)
+     * @param out - stream to write into, closed with the sink
+     * @return sink writing the moves of every order it is given
+     */
+    static OrderSink orderPathsSink(OutputStream out) throws IOException {
+        Cursor cursor = new Cursor();
+        double[] position = new double[2];
+        double[] predicted = new double[2];
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        return new OrderSink() {
+            @Override
+            public void write(Order order, List<Cell> path) throws IOException {
+                if (!path.isEmpty()) {
+                    writeOrderPath(data, cursor, order.getOrderNo(), path, position, predicted);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                data.close();
+            }
+        };
+    }
+
+    /**
+     * writes the moves of a path, position and predicted are buffers
+     */
+    private static void writeOrderPath(DataOutputStream data, Cursor cursor, String orderNo, List<Cell> path,
+                                       double[] position, double[] predicted) throws IOException {
+        data.writeUTF(orderNo);
+        // a search path starts at the origin of its lattice, the first move of other paths is written in full
+        if (!path.isEmpty() && path.get(0).lattice != null) {
+            path.get(0).lattice.position(Lattice.ORIGIN_KEY, position);
+        } else if (!path.isEmpty()) {
+            path.get(0).position(position);
+        }
+        cursor.reset(position[0], position[1]);
+        data.writeDouble(position[0]);
+        data.writeDouble(position[1]);
+        data.writeInt(path.size());
+        for (Cell cell : path) {
+            cell.position(position);
+            writeMove(data, cursor, cell.getEnterAngle(), position, predicted);
+        }
+    }
+
+    private static void writeMove(DataOutputStream data, Cursor cursor, double angle, double[] position,
+                                  double[] predicted) throws IOException {
+        if (angle == Cell.HOVER_ANGLE) {
+            if (isSame(position, cursor.position)) {
+                data.writeByte(HOVER_IN_PLACE);
+                return;
+            }
+            data.writeByte(HOVER);
+            writePosition(data, cursor, position);
+            return;
+        }
+        int direction = LngLatHandler.directionOf(angle);
+        if (direction == -1) {
+            data.writeByte(OTHER_ANGLE);
+            data.writeDouble(angle);
+            writePosition(data, cursor, position);
+            return;
+        }
+        int delta = (direction - cursor.direction) & 0x0F;
+        for (int kind : PREDICTED_KINDS) {
+            if (cursor.predict(kind, direction, predicted) && isSame(predicted, position)) {
+                data.writeByte(kind | delta);
+                cursor.apply(kind, direction);
+                return;
+            }
+        }
+        data.writeByte(EXPLICIT | delta);
+        writePosition(data, cursor, position);
+        cursor.direction = direction;
+    }
+
+    private static void writePosition(DataOutputStream data, Cursor cursor, double[] position) throws IOException {
+        data.writeDouble(position[0]);
+        data.writeDouble(position[1]);
+        cursor.moveTo(position[0], position[1]);
+    }
+
+    /**
+     * @return whether the positions are the same doubles (the JSON export would print them the same)
+     */
+    private static boolean isSame(double[] a, double[] b) {
+        return Double.doubleToLongBits(a[0]) == Double.doubleToLongBits(b[0])
+                && Double.doubleToLongBits(a[1]) == Double.doubleToLongBits(b[1]);
+    }
+}
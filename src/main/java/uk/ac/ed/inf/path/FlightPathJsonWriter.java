@@ -0,0 +1,232 @@
+package uk.ac.ed.inf.path;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import uk.ac.ed.inf.ilp.data.Order;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the recorded flights to JSON through a JsonGenerator, one move at a time.
+ * The bytes are the ones ObjectMapper wrote for the HashMaps the exports used to build per move:
+ * the fields come in the iteration order of those HashMaps and the numbers are written the same way.
+ * Nothing is kept per move, the coordinates of lattice cells are decoded into a buffer instead of
+ * being materialised (and cached) in the cells, so the heap used by an export does not grow with the flights.
+ * The sinks write the same files an order at a time, for the ExportPipeline.
+ */
+final class FlightPathJsonWriter {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private FlightPathJsonWriter() {
+    }
+
+    /**
+     * Writes [{orderNo, fromLongitude, fromLatitude, angle, toLatitude, toLongitude}] for every move
+     * @param orderPaths - recorded paths by orderNo
+     * @param out - stream to write into, closed at the end
+     */
+    static void writeOrderPaths(Map<String, List<Cell>> orderPaths, OutputStream out) throws IOException {
+        double[] from = new double[2];
+        double[] to = new double[2];
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (Map.Entry<String, List<Cell>> orderPath : orderPaths.entrySet()) {
+                writeOrderPath(generator, orderPath.getKey(), orderPath.getValue(), from, to);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Same as writeOrderPaths, an order at a time
+     * @param out - stream to write into, closed with the sink
+     * @return sink writing the moves of every order it is given
+     */
+    static OrderSink orderPathsSink(OutputStream out) throws IOException {
+        double[] from = new double[2];
+        double[] to = new double[2];
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        generator.writeStartArray();
+        return new OrderSink() {
+            @Override
+            public void write(Order order, List<Cell> path) throws IOException {
+                writeOrderPath(generator, order.getOrderNo(), path, from, to);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try (generator) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+    }
+
+    /**
+     * writes the moves of a path, from and to are buffers
+     */
+    private static void writeOrderPath(JsonGenerator generator, String orderNo, List<Cell> path,
+                                       double[] from, double[] to) throws IOException {
+        boolean first = true;
+        for (Cell pathPoint : path) {
+            pathPoint.position(to);
+            if (!first) {
+                writeMove(generator, orderNo, from, pathPoint.getEnterAngle(), to);
+            }
+            first = false;
+            from[0] = to[0];
+            from[1] = to[1];
+        }
+    }
+
+    /**
+     * Converts a binary flightpath file to the JSON of writeOrderPaths, move by move
+     * @param reader - binary flightpath file, not closed
+     * @param out - stream to write into, closed at the end
+     */
+    static void writeOrderPaths(FlightPathBinaryReader reader, OutputStream out) throws IOException {
+        double[] from = new double[2];
+        double[] to = new double[2];
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            while (reader.nextOrder()) {
+                // the first point of a path is where its first move starts, as in writeOrderPaths
+                boolean first = true;
+                while (reader.nextMove()) {
+                    to[0] = reader.getLng();
+                    to[1] = reader.getLat();
+                    if (!first) {
+                        writeMove(generator, reader.getOrderNo(), from, reader.getAngle(), to);
+                    }
+                    first = false;
+                    from[0] = to[0];
+                    from[1] = to[1];
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static void writeMove(JsonGenerator generator, String orderNo, double[] from, double angle, double[] to)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("orderNo", orderNo);
+        generator.writeNumberField("fromLongitude", from[0]);
+        generator.writeNumberField("fromLatitude", from[1]);
+        generator.writeNumberField("angle", angle);
+        generator.writeNumberField("toLatitude", to[1]);
+        generator.writeNumberField("toLongitude", to[0]);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes a GeoJSON FeatureCollection with a single LineString through every recorded point
+     * @param orderPaths - recorded paths by orderNo
+     * @param out - stream to write into, closed at the end
+     */
+    static void writeFlightGeoJson(Map<String, List<Cell>> orderPaths, OutputStream out) throws IOException {
+        double[] position = new double[2];
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            startFlightGeoJson(generator);
+            for (List<Cell> orderPath : orderPaths.values()) {
+                writePoints(generator, orderPath, position);
+            }
+            endFlightGeoJson(generator);
+        }
+    }
+
+    /**
+     * Same as writeFlightGeoJson, an order at a time
+     * @param out - stream to write into, closed with the sink
+     * @return sink appending the points of every order it is given to the LineString
+     */
+    static OrderSink flightGeoJsonSink(OutputStream out) throws IOException {
+        double[] position = new double[2];
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        startFlightGeoJson(generator);
+        return new OrderSink() {
+            @Override
+            public void write(Order order, List<Cell> path) throws IOException {
+                writePoints(generator, path, position);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try (generator) {
+                    endFlightGeoJson(generator);
+                }
+            }
+        };
+    }
+
+    /**
+     * writes everything up to the coordinates of the LineString
+     */
+    private static void startFlightGeoJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("features");
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("geometry");
+        generator.writeArrayFieldStart("coordinates");
+    }
+
+    private static void writePoints(JsonGenerator generator, List<Cell> path, double[] position) throws IOException {
+        for (Cell point : path) {
+            point.position(position);
+            generator.writeStartArray();
+            generator.writeNumber(position[0]);
+            generator.writeNumber(position[1]);
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * writes everything after the coordinates of the LineString
+     */
+    private static void endFlightGeoJson(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeStringField("type", "LineString");
+        generator.writeEndObject();
+        generator.writeStringField("type", "Feature");
+        generator.writeObjectFieldStart("properties");
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeStringField("type", "FeatureCollection");
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes [{orderValidationCode, orderNo, orderStatus, costInPence}] for every order it is given,
+     * the bytes FlightPlanner.exportOrdersToJson writes through ObjectMapper
+     * @param out - stream to write into, closed with the sink
+     * @return sink writing the delivery of every order it is given
+     */
+    static OrderSink deliveriesSink(OutputStream out) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        generator.writeStartArray();
+        return new OrderSink() {
+            @Override
+            public void write(Order order, List<Cell> path) throws IOException {
+                // in the iteration order of the HashMap exportOrdersToJson builds
+                generator.writeStartObject();
+                generator.writeStringField("orderValidationCode", order.getOrderValidationCode().name());
+                generator.writeStringField("orderNo", order.getOrderNo());
+                generator.writeStringField("orderStatus", order.getOrderStatus().name());
+                generator.writeNumberField("costInPence", order.getPriceTotalInPence());
+                generator.writeEndObject();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try (generator) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+    }
+}
@@ -1,12 +1,20 @@
 package uk.ac.ed.inf.path;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import uk.ac.ed.inf.client.ApiClient;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.ilp.data.Order;
@@ -14,27 +22,151 @@ import uk.ac.ed.inf.ilp.data.Order;
 import javax.naming.Name;
 
 public class FlightPlanner {
+    // cells of the distance field are a third of a move wide, see DistanceField
+    private static final double DISTANCE_FIELD_RESOLUTION = SystemConstants.DRONE_MOVE_DISTANCE / 3;
+    // the field reaches 20% further than the farthest restaurant
+    private static final double DISTANCE_FIELD_MARGIN = 1.2;
+    // exports stream into the file channel through a buffer of this size
+    private static final int EXPORT_BUFFER_BYTES = 1 << 16;
+
     private final ApiClient apiClient;
-    private NamedRegion[] noFlyZones;
+    private volatile NamedRegion[] noFlyZones;
     private NamedRegion centralArea;
     private final AStarPathFinder pathFinder;
+    private final RouteCache routeCache;
+    // read by the planning threads without the lock, written after the path finder got the zones it stands for
+    private volatile long zoneFingerprint;
+    // flood around Appleton Tower serving the restaurant legs, null unless enabled
+    private volatile DistanceField distanceField;
+    private List<LngLat> distanceFieldTargets;
+    // totals of all the searches run by the planner
+    private final SearchStatistics searchStatistics = new SearchStatistics();
+    // searches of the computed routes kept for repairs on zone updates, empty unless enabled
+    private volatile boolean incrementalReplanning;
+    private final Map<List<LngLat>, IncrementalSearch> incrementalSearches = new ConcurrentHashMap<>();
 
     private HashMap<String, List<Cell>> orderPathHistory;
     private final String rootDirectory;
+    private OutputCompression outputCompression = OutputCompression.NONE;
 
     public FlightPlanner(String rootDirectory, ApiClient apiClient) throws Exception {
+        this(rootDirectory, apiClient, new RouteCache());
+    }
+
+    public FlightPlanner(String rootDirectory, ApiClient apiClient, RouteCache routeCache) throws Exception {
+        this(rootDirectory, apiClient, routeCache, new LatticeHeuristic());
+    }
+
+    public FlightPlanner(String rootDirectory, ApiClient apiClient, RouteCache routeCache, Heuristic heuristic)
+            throws Exception {
         this.rootDirectory = rootDirectory;
         this.apiClient = apiClient;
-        this.pathFinder = new AStarPathFinder();
+        this.pathFinder = new AStarPathFinder(heuristic);
+        this.routeCache = routeCache;
 
         updateZoneData();
         resetHistory();
     }
 
-    public List<Cell> getOrderPath(String orderId) {
+    public synchronized List<Cell> getOrderPath(String orderId) {
         return this.orderPathHistory.get(orderId);
     }
 
+    /**
+     * @return cache of the computed routes (with hit/miss counters)
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * @return heuristic the paths are searched with
+     */
+    public Heuristic getHeuristic() {
+        return pathFinder.getHeuristic();
+    }
+
+    /**
+     * @return heuristic prepared for the current noFlyZones (eg with the landmarks placed)
+     */
+    public Heuristic getPreparedHeuristic() {
+        return pathFinder.getPreparedHeuristic();
+    }
+
+    /**
+     * @param searchStrategy - how the paths are searched (A*, bidirectional A*, jump point search, anytime ARA*,
+     * memory-bounded IDA* or hierarchical HPA*)
+     */
+    public void setSearchStrategy(SearchStrategy searchStrategy) {
+        pathFinder.setSearchStrategy(searchStrategy);
+    }
+
+    /**
+     * Tests the nodes of the A* searches against the zones only when they are expanded (same paths, fewer tests)
+     * @param enabled - whether to check collisions lazily
+     */
+    public void setLazyCollisionChecks(boolean enabled) {
+        pathFinder.setLazyCollisionChecks(enabled);
+    }
+
+    /**
+     * @return abstract graph of the SearchStrategy.HIERARCHICAL searches for the current noFlyZones
+     */
+    public ClusterGraph getClusterGraph() {
+        return pathFinder.getClusterGraph();
+    }
+
+    /**
+     * Bounds the search of every leg with SearchStrategy.ANYTIME, so a single leg cannot stall the day
+     * @param maxExpandedNodes - most nodes a search expands
+     * @param maxNanos - longest a search runs in nanoseconds
+     */
+    public void setSearchBudget(long maxExpandedNodes, long maxNanos) {
+        pathFinder.setSearchBudget(maxExpandedNodes, maxNanos);
+    }
+
+    /**
+     * @param nodeCap - most positions the transposition table of a SearchStrategy.IDA_STAR search holds
+     */
+    public void setNodeCap(int nodeCap) {
+        pathFinder.setNodeCap(nodeCap);
+    }
+
+    /**
+     * Rasterises the noFlyZones into an occupancy bitmap for the collision checks of the searches
+     * (exact test on the cells the zone edges pass through, so the paths are the same)
+     * @param enabled - whether to use the bitmap
+     */
+    public void setZoneRasterization(boolean enabled) {
+        pathFinder.setZoneRasterization(enabled);
+    }
+
+    /**
+     * Compresses every file written from now on, their names get the suffix of the compression (eg .json.gz)
+     * @param outputCompression - compression of the files, NONE for plain files
+     */
+    public void setOutputCompression(OutputCompression outputCompression) {
+        this.outputCompression = outputCompression;
+    }
+
+    /**
+     * @return compression of the files written
+     */
+    public OutputCompression getOutputCompression() {
+        return outputCompression;
+    }
+
+    /**
+     * @return totals of the searches run so far (routes served from the cache are not searched)
+     */
+    public SearchStatistics getSearchStatistics() {
+        synchronized (searchStatistics) {
+            SearchStatistics copy = new SearchStatistics();
+            copy.add(searchStatistics);
+            return copy;
+        }
+    }
+
     /**
      * Resets the collection of all computed and recorder paths
      */
@@ -44,13 +176,118 @@ public class FlightPlanner {
 
     /**
      * Fetches the data from ApiClient and updates the PathFinder
+     * (and the kept routes, see updateNoFlyZones)
+     * @return number of kept routes that had to be repaired
      */
-    private void updateZoneData() throws Exception {
-        this.noFlyZones = apiClient.retrieveNoFlyZones();
+    public int updateZoneData() throws Exception {
+        NamedRegion[] noFlyZones = apiClient.retrieveNoFlyZones();
         // Not really needed - remove?
         this.centralArea = apiClient.retrieveCentralArea();
+        return updateNoFlyZones(noFlyZones);
+    }
+
+    /**
+     * Switches to a new set of noFlyZones (eg a temporary restriction during the day).
+     * With incremental replanning enabled, every route searched so far is repaired against the new zones
+     * (see IncrementalSearch) and put back into the routeCache: routes the changed zones do not affect are kept
+     * without any search, the others only redo the part of the search that depends on the changed zones.
+     * Otherwise the cached routes are simply no longer served and get searched again when needed.
+     * Not meant to run while flights are being planned
+     * @param noFlyZones - active noFlyZones
+     * @return number of kept routes that had to be repaired
+     */
+    public synchronized int updateNoFlyZones(NamedRegion[] noFlyZones) {
+        this.noFlyZones = noFlyZones;
         // new data is propagated
         this.pathFinder.updateZones(noFlyZones, centralArea);
+        // routes computed against other zones are never served, published after the path finder has the zones
+        // so a search that sees the new fingerprint also searches the new zones
+        this.zoneFingerprint = RouteCache.fingerprint(noFlyZones);
+        if (distanceFieldTargets != null) {
+            buildDistanceField();
+        }
+        int repaired = 0;
+        SearchStatistics statistics = new SearchStatistics();
+        for (IncrementalSearch search : incrementalSearches.values()) {
+            if (search.updateZones(noFlyZones)) {
+                repaired++;
+            }
+            // a route that is not affected is traced again without any search
+            List<Cell> path = search.findPath(statistics);
+            if (path.isEmpty()) {
+                incrementalSearches.remove(List.of(search.getOrigin(), search.getDestination()));
+            } else {
+                routeCache.put(search.getOrigin(), search.getDestination(), zoneFingerprint, path);
+            }
+        }
+        synchronized (searchStatistics) {
+            searchStatistics.add(statistics);
+        }
+        return repaired;
+    }
+
+    /**
+     * Keeps the search of every route computed from now on (LPA*, see IncrementalSearch),
+     * so that updateNoFlyZones repairs the routes instead of dropping them.
+     * The searches replace the configured search strategy and stay in memory until disabled
+     * @param enabled - whether to keep the searches
+     */
+    public void setIncrementalReplanning(boolean enabled) {
+        this.incrementalReplanning = enabled;
+        if (!enabled) {
+            incrementalSearches.clear();
+        }
+    }
+
+    /**
+     * Floods the lattice around Appleton Tower once, legs between the tower and any of the given locations
+     * are then walked along the flood instead of searched (see DistanceField).
+     * The flood reaches DISTANCE_FIELD_MARGIN further than the farthest location, so detours around zones fit,
+     * it is rebuilt whenever the zones change.
+     * Locations the capped flood cannot reach with that margin (see DistanceField.MAX_RADIUS) are left out,
+     * their legs are searched as usual
+     * @param restaurantLocations - locations the drone flies to
+     * @return the built field (for its size and build time)
+     */
+    public DistanceField enableDistanceField(Collection<LngLat> restaurantLocations) {
+        this.distanceFieldTargets = List.copyOf(restaurantLocations);
+        return buildDistanceField();
+    }
+
+    private DistanceField buildDistanceField() {
+        LngLat tower = getAppletonTowerCoordinates();
+        double radius = 0;
+        for (LngLat location : distanceFieldTargets) {
+            double distance = Math.hypot(location.lng() - tower.lng(), location.lat() - tower.lat());
+            double needed = distance * DISTANCE_FIELD_MARGIN + 2 * SystemConstants.DRONE_MOVE_DISTANCE;
+            // outlying locations would only blow up the field
+            if (needed <= DistanceField.MAX_RADIUS) {
+                radius = Math.max(radius, needed);
+            }
+        }
+        distanceField = new DistanceField(tower, noFlyZones, radius, DISTANCE_FIELD_RESOLUTION);
+        return distanceField;
+    }
+
+    /**
+     * @param origin - start
+     * @param destination - destination
+     * @return path walked along the distance field or null if it cannot serve the leg
+     */
+    private List<Cell> planFromDistanceField(LngLat origin, LngLat destination) {
+        DistanceField field = distanceField;
+        if (field == null) {
+            return null;
+        }
+        if (origin.equals(field.getOrigin())) {
+            return field.findPath(destination);
+        }
+        if (destination.equals(field.getOrigin())) {
+            // legs back to the tower fly the outbound path in reverse
+            List<Cell> outbound = field.findPath(origin);
+            return outbound == null ? null : RouteCache.reversePath(destination, outbound);
+        }
+        return null;
     }
 
     /**
@@ -61,6 +298,81 @@ public class FlightPlanner {
         return new LngLat(-3.186874, 55.944494);
     }
 
+    /**
+     * Computes a flight path between two points without recording it
+     * Legs covered by the distance field are walked along it,
+     * routes (or their reverse) that were already computed are served from the routeCache
+     * Safe to call from multiple threads
+     * @param origin - start
+     * @param destination - destination
+     * @return path (ending with a hover at the destination) or an empty list if there is none
+     */
+    public List<Cell> planFlightPath(LngLat origin, LngLat destination) {
+        List<Cell> path = planFromDistanceField(origin, destination);
+        if (path != null) {
+            return path;
+        }
+        // read once, the route is cached under the fingerprint of the zones it was looked up with
+        long fingerprint = zoneFingerprint;
+        path = routeCache.get(origin, destination, fingerprint);
+        if (path == null) {
+            SearchStatistics statistics = new SearchStatistics();
+            if (!pathFinder.isReachable(origin, destination)) {
+                // sealed off by the zones, not worth a search
+                path = new ArrayList<>();
+            } else if (incrementalReplanning) {
+                // the kept searches outlive the zones, so they get the unprepared heuristic
+                IncrementalSearch search = new IncrementalSearch(origin, destination, noFlyZones, getHeuristic());
+                path = search.findPath(statistics);
+                if (!path.isEmpty()) {
+                    incrementalSearches.put(List.of(origin, destination), search);
+                }
+            } else {
+                path = pathFinder.findShortestPath(origin, destination, statistics);
+            }
+            synchronized (searchStatistics) {
+                searchStatistics.add(statistics);
+            }
+            if (!path.isEmpty()) {
+                routeCache.put(origin, destination, fingerprint, path);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Computes the full delivery flight: Appleton Tower -> restaurant -> Appleton Tower
+     * Safe to call from multiple threads, the result is not recorded
+     * @param restaurantLocation - where the order is picked up
+     * @return both legs of the flight, a leg without a path is left out
+     */
+    public List<Cell> planDeliveryFlightPath(LngLat restaurantLocation) {
+        List<Cell> path = new ArrayList<>();
+        // fly to the restaurant
+        path.addAll(planFlightPath(getAppletonTowerCoordinates(), restaurantLocation));
+        // fly back
+        path.addAll(planFlightPath(restaurantLocation, getAppletonTowerCoordinates()));
+        return path;
+    }
+
+    /**
+     * Appends a computed path to the ones recorded for a given orderNo
+     * @param orderNumber - order the path belongs to
+     * @param path - computed path
+     */
+    public synchronized void recordOrderFlightPath(String orderNumber, List<Cell> path) {
+        if (path.isEmpty()) {
+            return;
+        }
+        // Add all nodes of the path
+        List<Cell> orderPaths = orderPathHistory.getOrDefault(
+                orderNumber,
+                new ArrayList<>()
+        );
+        orderPaths.addAll(path);
+        orderPathHistory.put(orderNumber, orderPaths);
+    }
+
     /**
      * Computes a flight path between two points and saves it for a given orderNo
      * into the orderPaths HashMap
@@ -68,16 +380,7 @@ public class FlightPlanner {
      * @param destination - destination
      */
     public void calculateOrderFlightPath(LngLat origin, LngLat destination, String orderNumber) {
-        if (pathFinder.findShortestPath(origin, destination)) {
-            List<Cell> path = pathFinder.getPath();
-            // Add all nodes of the path
-            List<Cell> orderPaths = orderPathHistory.getOrDefault(
-                    orderNumber,
-                    new ArrayList<>()
-            );
-            orderPaths.addAll(path);
-            orderPathHistory.put(orderNumber, orderPaths);
-        }
+        recordOrderFlightPath(orderNumber, planFlightPath(origin, destination));
     }
 
     /**
@@ -88,19 +391,107 @@ public class FlightPlanner {
      * @param data - data to write into the file
      */
     private void createOrOverwriteDataFile(String filename, Object data) throws IOException {
-        // check root dir
+        ObjectMapper objectMapper = new ObjectMapper();
+        // enable default LocalDate support by Jackson
+        objectMapper.registerModule(new JavaTimeModule());
+        // through openDataFile, so it is compressed like the streamed exports
+        objectMapper.writeValue(openDataFile(filename), data);
+    }
+
+    /**
+     * given a filename, creates the rootDirectory if needed and gives the path of the file in it,
+     * with an output compression the suffix is appended to the name
+     * @param filename - name of the file
+     * @return path of the file
+     */
+    private Path dataFilePath(String filename) {
         File directory = new File(rootDirectory);
         if (!directory.exists()) {
             directory.mkdir();
         }
-        // create file
-        ObjectMapper objectMapper = new ObjectMapper();
-        // enable default LocalDate support by Jackson
-        objectMapper.registerModule(new JavaTimeModule());
-        File file = new File(rootDirectory + "/" + filename);
-        if (!file.exists())
-            file.createNewFile();
-        objectMapper.writeValue(file, data);
+        return Path.of(rootDirectory, filename + outputCompression.getSuffix());
+    }
+
+    /**
+     * given a filename, creates or truncates the file in the rootDirectory and opens a stream into it
+     * @param filename - name of the file to write into
+     * @return stream to write the file through (to be closed by the caller)
+     */
+    private OutputStream openDataFile(String filename) throws IOException {
+        return openDataFile(dataFilePath(filename));
+    }
+
+    /**
+     * creates or truncates the file and opens a buffered stream over its channel for an exporter to stream into,
+     * with an output compression the stream compresses
+     * @param path - file to write into
+     * @return stream to write the file through (to be closed by the caller)
+     */
+    private OutputStream openDataFile(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return outputCompression.compress(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), EXPORT_BUFFER_BYTES));
+        } catch (IOException | RuntimeException | Error e) {
+            // eg the native snappy library failed to load, nobody else holds the channel
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the deliveries, flightpath and drone files for an ExportPipeline, which writes them while
+     * the orders are planned instead of after: the content of the exports below, orders in the order of the day.
+     * The files only replace earlier ones once the pipeline is finished (see ExportPipeline)
+     * @param format - format of the files
+     * @param deliveriesFilename - name of the deliveries file
+     * @param flightPathFilename - name of the flightpath file
+     * @param droneFilename - name of the drone file
+     * @return pipeline to hand the complete orders to
+     */
+    public ExportPipeline openExportPipeline(ExportFormat format, String deliveriesFilename,
+                                             String flightPathFilename, String droneFilename) throws IOException {
+        return openExportPipeline(format, deliveriesFilename, flightPathFilename, droneFilename, null);
+    }
+
+    /**
+     * Same as openExportPipeline, also writing the flightpath in the compact binary format
+     * (exportOrderPathHistoryToBinary) in the same order as the flightpath file
+     * @param binaryFlightPathFilename - name of the binary flightpath file, null for none
+     */
+    public ExportPipeline openExportPipeline(ExportFormat format, String deliveriesFilename,
+                                             String flightPathFilename, String droneFilename,
+                                             String binaryFlightPathFilename) throws IOException {
+        List<OrderSink.Factory> factories = new ArrayList<>(format == ExportFormat.AVRO
+                ? List.of(FlightAvroWriter::deliveriesSink, FlightAvroWriter::orderPathsSink,
+                        FlightAvroWriter::flightPointsSink)
+                : List.of(FlightPathJsonWriter::deliveriesSink, FlightPathJsonWriter::orderPathsSink,
+                        FlightPathJsonWriter::flightGeoJsonSink));
+        List<String> filenames = new ArrayList<>(List.of(deliveriesFilename, flightPathFilename, droneFilename));
+        if (binaryFlightPathFilename != null) {
+            factories.add(FlightPathBinaryWriter::orderPathsSink);
+            filenames.add(binaryFlightPathFilename);
+        }
+        List<ExportPipeline.PartialFile> files = new ArrayList<>();
+        List<OrderSink> sinks = new ArrayList<>();
+        try {
+            for (int i = 0; i < filenames.size(); i++) {
+                Path target = dataFilePath(filenames.get(i));
+                Path partial = ExportPipeline.PartialFile.partialPath(target);
+                files.add(new ExportPipeline.PartialFile(partial, target, openDataFile(partial)));
+                sinks.add(factories.get(i).open(files.get(i).stream()));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            // the files opened so far, including the one whose sink failed
+            ExportPipeline.discard(files, e);
+            throw e;
+        }
+        return new ExportPipeline(files.toArray(new ExportPipeline.PartialFile[0]), sinks.toArray(new OrderSink[0]));
     }
 
     /**
@@ -126,45 +517,47 @@ public class FlightPlanner {
     /**
      * Exports the data about computed order paths as an array of the form:
      * [{orderNo, fromLatitude, fromLongitude, angle, toLatitude, toLongitude}]
-     * saved in the `rootDirectory`
+     * saved in the `rootDirectory`, streamed move by move (see FlightPathJsonWriter)
      * @param filename - name of the file to export data into
      */
     public void exportOrderPathHistoryToJson(String filename) throws IOException {
-        List<HashMap<String, Object>> ordersPathData = new ArrayList<>();
-
-        for (String orderNo : orderPathHistory.keySet()) {
-            List<Cell> orderPath = orderPathHistory.get(orderNo);
-            Cell prevPoint = null;
-            for (Cell pathPoint : orderPath) {
-                if (prevPoint == null) {
-                    prevPoint = pathPoint;
-                    continue;
-                }
-                HashMap<String, Object> pointData = getCurrentPathPointHashMap(orderNo, pathPoint, prevPoint);
-                prevPoint = pathPoint;
-                ordersPathData.add(pointData);
-            }
-        }
-        createOrOverwriteDataFile(filename, ordersPathData);
+        FlightPathJsonWriter.writeOrderPaths(orderPathHistory, openDataFile(filename));
+    }
+
+    /**
+     * Exports the computed order paths in the compact binary flightpath format (see FlightPathBinaryReader),
+     * a byte per move instead of a JSON object, FlightPathBinaryReader.convertToJson turns it back into
+     * the file exportOrderPathHistoryToJson writes
+     * @param filename - name of the file to export data into
+     */
+    public void exportOrderPathHistoryToBinary(String filename) throws IOException {
+        FlightPathBinaryWriter.writeOrderPaths(orderPathHistory, openDataFile(filename));
+    }
+
+    /**
+     * Exports the orders as an Avro container file of Delivery records (see FlightAvroWriter),
+     * the fields of exportOrdersToJson
+     * @param filename - name of the file
+     * @param orders - list of Order instances to be exported
+     */
+    public void exportOrdersToAvro(String filename, Order[] orders) throws IOException {
+        FlightAvroWriter.writeDeliveries(orders, openDataFile(filename));
     }
 
     /**
-     * Converts the move between 2 points into a HashMap of
-     * appropriate export format
-     * @param orderNumber - order number
-     * @param pathPoint - current point
-     * @param prevPoint - previous point
-     * @return HashMap of features
+     * Exports the moves of exportOrderPathHistoryToJson as an Avro container file of Move records
+     * @param filename - name of the file to export data into
+     */
+    public void exportOrderPathHistoryToAvro(String filename) throws IOException {
+        FlightAvroWriter.writeOrderPaths(orderPathHistory, openDataFile(filename));
+    }
+
+    /**
+     * Exports the points of exportFlightHistoryToGeoJson as an Avro container file of DronePoint records
+     * @param filename - name of the file
      */
-    private static HashMap<String, Object> getCurrentPathPointHashMap(String orderNumber, Cell pathPoint, Cell prevPoint) {
-        HashMap<String, Object> pointData = new HashMap<>();
-        pointData.put("orderNo",       orderNumber);
-        pointData.put("fromLatitude",  prevPoint.getCoordinates().lat());
-        pointData.put("fromLongitude", prevPoint.getCoordinates().lng());
-        pointData.put("angle",         pathPoint.getEnterAngle());
-        pointData.put("toLatitude",    pathPoint.getCoordinates().lat());
-        pointData.put("toLongitude",   pathPoint.getCoordinates().lng());
-        return pointData;
+    public void exportFlightHistoryToAvro(String filename) throws IOException {
+        FlightAvroWriter.writeFlightPoints(orderPathHistory, openDataFile(filename));
     }
 
     /**
@@ -210,29 +603,10 @@ public class FlightPlanner {
 
     /**
      * exports current flight path history to a file with the given filename
-     * the path for the file is `rootDirectory`
+     * the path for the file is `rootDirectory`, the points are streamed one by one
      * @param filename name of the file
      */
     public void exportFlightHistoryToGeoJson(String filename) throws IOException {
-        List<Double[]> coordinates = new ArrayList<>();
-
-        for (String orderNumber : orderPathHistory.keySet()) {
-            List<Cell> orderPath = orderPathHistory.get(orderNumber);
-            for (Cell point : orderPath) {
-                LngLat pointCoordinates = point.getCoordinates();
-                coordinates.add(new Double[]{pointCoordinates.lng(), pointCoordinates.lat()});
-            }
-        }
-
-        HashMap<String, Object> feature =
-                getGeoJsonTypedGeometryFeatureWithCoordinates("LineString", coordinates);
-        ArrayList<HashMap<String, Object>> features = new ArrayList<>();
-        features.add(feature);
-
-        HashMap<String, Object> geoJsonData = new HashMap<>();
-        geoJsonData.put("type", "FeatureCollection");
-        geoJsonData.put("features", features);
-
-        createOrOverwriteDataFile(filename, geoJsonData);
+        FlightPathJsonWriter.writeFlightGeoJson(orderPathHistory, openDataFile(filename));
     }
 }
@@ -0,0 +1,51 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+/**
+ * Estimate of the remaining flight length used to order the A* open set.
+ * An admissible heuristic never overestimates, so A* returns a path with the least number of moves,
+ * an inflated one explores less but the path may be up to `getSuboptimalityBound` times longer.
+ */
+public interface Heuristic {
+    /**
+     * @param lattice - lattice of the search
+     * @param key - position to estimate from
+     * @param destination - goal point (reached once within DRONE_IS_CLOSE_DISTANCE)
+     * @return estimated remaining distance in degrees
+     */
+    double estimate(Lattice lattice, long key, LngLat destination);
+
+    /**
+     * @return how many times longer than the shortest one a found path can be
+     * (1 for admissible heuristics, infinity if there is no guarantee)
+     */
+    double getSuboptimalityBound();
+
+    /**
+     * Called on every zone update, heuristics that precompute something over the zones do it here
+     * @param noFlyZones - zones of the following searches
+     * @return heuristic to search with while these zones are active (this one if it does not depend on them)
+     */
+    default Heuristic prepare(NamedRegion[] noFlyZones) {
+        return this;
+    }
+
+    /**
+     * @param name - manhattan, euclidean, lattice or landmark
+     * @param weight - inflation factor (>= 1), 1 keeps the heuristic as is
+     * @return heuristic of that name
+     * @throws IllegalArgumentException for unknown names or weights below 1
+     */
+    static Heuristic fromName(String name, double weight) {
+        Heuristic heuristic = switch (name) {
+            case "manhattan" -> new ManhattanHeuristic();
+            case "euclidean" -> new EuclideanHeuristic();
+            case "lattice" -> new LatticeHeuristic();
+            case "landmark" -> new LandmarkHeuristic();
+            default -> throw new IllegalArgumentException("Unknown heuristic: " + name);
+        };
+        return weight == 1 ? heuristic : new WeightedHeuristic(heuristic, weight);
+    }
+}
@@ -0,0 +1,373 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.utils.IndexedMinHeap;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.LongDoubleHashMap;
+import uk.ac.ed.inf.utils.ZoneIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lifelong Planning A* (LPA*) search of a single route, kept alive so that it can be repaired when the
+ * noFlyZones change instead of being searched again.
+ * Every node has its distance `g` and a one-step lookahead `rhs` (best neighbor + one move), only nodes where
+ * the two differ are queued. A zone update only touches the reached nodes whose blocked state flipped,
+ * the following search re-settles the nodes whose distance depends on them and leaves the rest as they are:
+ * a zone the search never ran into changes nothing, a zone across the path costs a fraction of a full search.
+ * The goal circle is a virtual node fed by the reached nodes within DRONE_IS_CLOSE_DISTANCE.
+ * The origin never moves (routes are repaired before they are flown), so this is LPA* rather than D* Lite,
+ * whose extra key modifier only accounts for a moving start.
+ * The first search expands about the same nodes as AStarPathFinder and finds paths of the same length.
+ */
+public class IncrementalSearch {
+    // heuristic is inflated by this much so that among equal `f` the deeper node is expanded first
+    private static final double TIE_BREAK = 1e-6;
+    // key of the virtual goal node, not a lattice key (its count along axis 0 is out of range)
+    private static final long GOAL_KEY = 0x80L;
+    private static final int NO_PARENT = -1;
+
+    private final LngLat origin;
+    private final LngLat destination;
+    private final Heuristic heuristic;
+    private final Lattice lattice;
+    private final LngLatHandler lngLatHandler = new LngLatHandler();
+    private NamedRegion[] noFlyZoneRegions;
+    private ZoneIndex noFlyZones;
+
+    // reached nodes, `g` is kept as the value, the ids index the arrays below
+    private final LongDoubleHashMap gScore = new LongDoubleHashMap(SearchState.EXPECTED_NODES);
+    private double[] rhs = new double[SearchState.EXPECTED_NODES];
+    // id of the neighbor `rhs` was taken from
+    private int[] parents = new int[SearchState.EXPECTED_NODES];
+    // inconsistent nodes (g != rhs)
+    private final IndexedMinHeap queue = new IndexedMinHeap(SearchState.EXPECTED_NODES);
+    private final BitSet blocked = new BitSet(SearchState.EXPECTED_NODES);
+    // ids of the reached nodes within the close distance of the destination, as a list and as a set
+    private int[] closeIds = new int[16];
+    private int closeCount;
+    private final BitSet close = new BitSet(SearchState.EXPECTED_NODES);
+    private final int startId;
+    private final int goalId;
+
+    /**
+     * @param origin - start
+     * @param destination - goal
+     * @param noFlyZones - zones the route avoids
+     * @param heuristic - estimate of the remaining distance
+     */
+    public IncrementalSearch(LngLat origin, LngLat destination, NamedRegion[] noFlyZones, Heuristic heuristic) {
+        this.origin = origin;
+        this.destination = destination;
+        this.heuristic = heuristic;
+        this.lattice = new Lattice(origin);
+        this.noFlyZoneRegions = noFlyZones;
+        this.noFlyZones = new ZoneIndex(noFlyZones);
+        this.goalId = reach(GOAL_KEY);
+        this.startId = reach(Lattice.ORIGIN_KEY);
+        // the origin is never treated as blocked, as in AStarPathFinder
+        blocked.clear(startId);
+        rhs[startId] = 0;
+        queue.insert(startId, key(startId));
+    }
+
+    /**
+     * Settles the inconsistent nodes until the goal cannot improve,
+     * cheap if nothing changed since the last call
+     * @param statistics - counters to add the work of this call to
+     * @return path to the destination (ending with a hover) or an empty list if there is none
+     */
+    public List<Cell> findPath(SearchStatistics statistics) {
+        SearchStatistics work = new SearchStatistics();
+        while (!queue.isEmpty()
+                && (queue.peekPriority() < key(goalId) || rhs[goalId] != gScore.valueAt(goalId))) {
+            int id = queue.poll();
+            work.expandedNodes++;
+            double g = gScore.valueAt(id);
+            if (id == goalId) {
+                // the goal has no neighbors
+                gScore.setValueAt(id, g > rhs[id] ? rhs[id] : Double.POSITIVE_INFINITY);
+                updateNode(id, work);
+            } else if (g > rhs[id]) {
+                // overconsistent: the node got closer, its neighbors may now be reached through it
+                gScore.setValueAt(id, rhs[id]);
+                relaxNeighbors(id, work);
+            } else {
+                // underconsistent: the node got further, everything that relied on it is looked at again
+                gScore.setValueAt(id, Double.POSITIVE_INFINITY);
+                updateNode(id, work);
+                recheckNeighbors(id, work);
+            }
+        }
+        List<Cell> path = tracePath();
+        work.pathLength = path.size();
+        statistics.add(work);
+        return path;
+    }
+
+    /**
+     * Switches the route to a new set of noFlyZones, only the reached nodes within the bounding boxes of the
+     * added or removed zones are looked at, the repair itself runs on the next findPath
+     * @param noFlyZones - active noFlyZones
+     * @return whether the update affects the route (false if none of the changed zones were reached)
+     */
+    public boolean updateZones(NamedRegion[] noFlyZones) {
+        NamedRegion[] changed = changedRegions(noFlyZoneRegions, noFlyZones);
+        this.noFlyZoneRegions = noFlyZones;
+        this.noFlyZones = new ZoneIndex(noFlyZones);
+        if (changed.length == 0) {
+            return false;
+        }
+        double[] boxes = new ZoneIndex(changed).getBoundingBoxes();
+        boolean affected = false;
+        SearchStatistics work = new SearchStatistics();
+        for (int id = 0; id < gScore.size(); id++) {
+            if (id == goalId || id == startId) {
+                continue;
+            }
+            long key = gScore.keyAt(id);
+            double x = lattice.lng(key), y = lattice.lat(key);
+            if (!isInAnyBox(boxes, x, y)) {
+                continue;
+            }
+            boolean nowBlocked = this.noFlyZones.contains(x, y);
+            if (nowBlocked != blocked.get(id)) {
+                // the moves into the node changed cost
+                blocked.set(id, nowBlocked);
+                updateNode(id, work);
+                affected = true;
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * @return regions in one of the sets but not in the other (compared by name and vertices)
+     */
+    static NamedRegion[] changedRegions(NamedRegion[] before, NamedRegion[] after) {
+        Set<Long> beforeFingerprints = new HashSet<>();
+        Set<Long> afterFingerprints = new HashSet<>();
+        for (NamedRegion region : before) {
+            beforeFingerprints.add(RouteCache.fingerprint(new NamedRegion[] {region}));
+        }
+        List<NamedRegion> changed = new ArrayList<>();
+        for (NamedRegion region : after) {
+            long fingerprint = RouteCache.fingerprint(new NamedRegion[] {region});
+            afterFingerprints.add(fingerprint);
+            if (!beforeFingerprints.contains(fingerprint)) {
+                changed.add(region);
+            }
+        }
+        for (NamedRegion region : before) {
+            if (!afterFingerprints.contains(RouteCache.fingerprint(new NamedRegion[] {region}))) {
+                changed.add(region);
+            }
+        }
+        return changed.toArray(new NamedRegion[0]);
+    }
+
+    private static boolean isInAnyBox(double[] boxes, double x, double y) {
+        for (int i = 0; i < boxes.length; i += 4) {
+            if (x >= boxes[i] && x <= boxes[i + 2] && y >= boxes[i + 1] && y <= boxes[i + 3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return id of the node, reaching it (g = rhs = infinity) if it was not reached before
+     */
+    private int reach(long key) {
+        int id = gScore.indexOf(key);
+        if (id != -1) {
+            return id;
+        }
+        id = gScore.put(key, Double.POSITIVE_INFINITY);
+        if (id >= rhs.length) {
+            int capacity = Math.max(id + 1, rhs.length << 1);
+            rhs = Arrays.copyOf(rhs, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+        rhs[id] = Double.POSITIVE_INFINITY;
+        parents[id] = NO_PARENT;
+        if (key == GOAL_KEY) {
+            return id;
+        }
+        double x = lattice.lng(key), y = lattice.lat(key);
+        blocked.set(id, noFlyZones.contains(x, y));
+        if (lngLatHandler.isCloseTo(x, y, destination)) {
+            if (closeCount == closeIds.length) {
+                closeIds = Arrays.copyOf(closeIds, closeCount << 1);
+            }
+            closeIds[closeCount++] = id;
+            close.set(id);
+        }
+        return id;
+    }
+
+    /**
+     * priority of an inconsistent node: `f` with ties broken towards deeper nodes as in AStarPathFinder,
+     * except for nodes that got further (g < rhs), which go before the goal on a tie, as a stale node on the
+     * current path would otherwise keep the old path cost alive
+     */
+    private double key(int id) {
+        double g = gScore.valueAt(id);
+        double distance = Math.min(g, rhs[id]);
+        if (id == goalId) {
+            return distance;
+        }
+        double estimate = heuristic.estimate(lattice, gScore.keyAt(id), destination);
+        if (g < rhs[id]) {
+            return (distance + estimate) * (1 - TIE_BREAK);
+        }
+        return distance + estimate * (1 + TIE_BREAK);
+    }
+
+    /**
+     * queues the node if it is inconsistent, takes it off the queue otherwise
+     */
+    private void requeue(int id, SearchStatistics work) {
+        boolean queued = queue.contains(id);
+        if (gScore.valueAt(id) != rhs[id]) {
+            queue.update(id, key(id));
+            if (queued) {
+                work.decreasedKeys++;
+            } else {
+                work.insertedNodes++;
+            }
+        } else if (queued) {
+            queue.remove(id);
+        }
+    }
+
+    /**
+     * recomputes `rhs` of the node from all its neighbors (from the close nodes for the goal)
+     */
+    private void updateNode(int id, SearchStatistics work) {
+        if (id == startId) {
+            return;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        int parent = NO_PARENT;
+        if (id == goalId) {
+            for (int i = 0; i < closeCount; i++) {
+                double g = gScore.valueAt(closeIds[i]);
+                if (g < best) {
+                    best = g;
+                    parent = closeIds[i];
+                }
+            }
+        } else if (!blocked.get(id)) {
+            long key = gScore.keyAt(id);
+            for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+                long neighbor = lattice.step(key, direction);
+                int neighborId = neighbor == Lattice.OUT_OF_RANGE ? -1 : gScore.indexOf(neighbor);
+                if (neighborId == -1) {
+                    continue;
+                }
+                double g = gScore.valueAt(neighborId) + SystemConstants.DRONE_MOVE_DISTANCE;
+                if (g < best) {
+                    best = g;
+                    parent = neighborId;
+                }
+            }
+        }
+        rhs[id] = best;
+        parents[id] = parent;
+        requeue(id, work);
+    }
+
+    /**
+     * a node just got its (lower) distance, neighbors reached more cheaply through it take it as parent
+     */
+    private void relaxNeighbors(int id, SearchStatistics work) {
+        double g = gScore.valueAt(id);
+        if (close.get(id) && g < rhs[goalId]) {
+            rhs[goalId] = g;
+            parents[goalId] = id;
+            requeue(goalId, work);
+        }
+        long key = gScore.keyAt(id);
+        double tentativeScore = g + SystemConstants.DRONE_MOVE_DISTANCE;
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            long neighbor = lattice.step(key, direction);
+            if (neighbor == Lattice.OUT_OF_RANGE) {
+                continue;
+            }
+            int neighborId = reach(neighbor);
+            if (neighborId == startId || blocked.get(neighborId) || tentativeScore >= rhs[neighborId]) {
+                continue;
+            }
+            rhs[neighborId] = tentativeScore;
+            parents[neighborId] = id;
+            requeue(neighborId, work);
+        }
+    }
+
+    /**
+     * a node lost its distance, neighbors (and the goal) that took it as parent look for another one
+     */
+    private void recheckNeighbors(int id, SearchStatistics work) {
+        if (parents[goalId] == id) {
+            updateNode(goalId, work);
+        }
+        long key = gScore.keyAt(id);
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            long neighbor = lattice.step(key, direction);
+            int neighborId = neighbor == Lattice.OUT_OF_RANGE ? -1 : gScore.indexOf(neighbor);
+            if (neighborId != -1 && parents[neighborId] == id) {
+                updateNode(neighborId, work);
+            }
+        }
+    }
+
+    /**
+     * follows the parents from the goal back to the origin
+     */
+    private List<Cell> tracePath() {
+        if (rhs[goalId] == Double.POSITIVE_INFINITY) {
+            return new ArrayList<>();
+        }
+        LinkedList<Cell> path = new LinkedList<>();
+        path.add(new Cell(destination, Cell.HOVER_ANGLE));
+        int id = parents[goalId];
+        while (id != startId) {
+            int parent = parents[id];
+            long key = gScore.keyAt(id);
+            double angle = Lattice.toAngle(lattice.direction(gScore.keyAt(parent), key));
+            path.addFirst(new Cell(lattice, key, angle));
+            id = parent;
+        }
+        return new ArrayList<>(path);
+    }
+
+    /**
+     * @return start of the route
+     */
+    public LngLat getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return end of the route
+     */
+    public LngLat getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return number of nodes the search keeps (reached so far)
+     */
+    public int getReachedNodes() {
+        return gScore.size();
+    }
+}
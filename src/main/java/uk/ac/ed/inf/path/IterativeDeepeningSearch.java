@@ -0,0 +1,205 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.LongDoubleHashMap;
+import uk.ac.ed.inf.utils.ZoneLookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory-bounded search: IDA* with a transposition table of at most `nodeCap` nodes.
+ * Every iteration is a depth-first search that cuts off nodes whose g + h exceeds the threshold, the next
+ * threshold is the smallest cut-off value, so the first goal found is a shortest path. Children are visited
+ * closest to the goal first and every move costs the same, so g is the depth and the search only keeps the
+ * current path and its unvisited children.
+ * The lattice has many ways to reach the same position, the transposition table remembers the least g each
+ * position was reached with during the iteration and cuts off positions reached again no cheaper. Once it holds
+ * `nodeCap` positions new ones are not remembered any more: memory stays bounded and the search stays correct,
+ * it only re-expands more. Like the anytime search it stops at the search budget.
+ */
+class IterativeDeepeningSearch {
+    // the clock is read every this many expansions
+    private static final int CLOCK_INTERVAL = 64;
+    // rounding error allowed when comparing g + h with the threshold
+    private static final double EPSILON = 1e-9 * SystemConstants.DRONE_MOVE_DISTANCE;
+
+    private final LngLatHandler lngLatHandler = new LngLatHandler();
+    private final ZoneLookup noFlyZones;
+    private final Lattice lattice;
+    private final LngLat destination;
+    private final Heuristic heuristic;
+    private final SearchStatistics statistics;
+    private final int nodeCap;
+    private final long maxExpandedNodes;
+    private final long deadline;
+    private long expandedNodes;
+    // depth of the node being expanded and the smallest g + h its expansion cut off
+    private int depth;
+    private double cutOff;
+    // current path, path[depth] is the node at that depth
+    private long[] path = new long[64];
+    // children of the nodes of the path left to visit, closest to the goal first
+    private long[][] children = new long[64][Lattice.DIRECTIONS];
+    private int[] childCounts = new int[64];
+    private int[] nextChild = new int[64];
+    private final double[] childEstimates = new double[Lattice.DIRECTIONS];
+
+    /**
+     * @param noFlyZones - zones of the search
+     * @param origin - start
+     * @param destination - goal
+     * @param heuristic - admissible estimate of the remaining distance
+     * @param statistics - counters to fill in
+     * @param nodeCap - most positions the transposition table holds
+     * @param maxExpandedNodes - the search stops after expanding this many nodes
+     * @param maxNanos - the search stops after running this long
+     */
+    IterativeDeepeningSearch(ZoneLookup noFlyZones, LngLat origin, LngLat destination, Heuristic heuristic,
+                             SearchStatistics statistics, int nodeCap, long maxExpandedNodes, long maxNanos) {
+        this.noFlyZones = noFlyZones;
+        this.lattice = new Lattice(origin);
+        this.destination = destination;
+        this.heuristic = heuristic;
+        this.statistics = statistics;
+        this.nodeCap = nodeCap;
+        this.maxExpandedNodes = maxExpandedNodes;
+        long now = System.nanoTime();
+        this.deadline = maxNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxNanos;
+    }
+
+    /**
+     * @return path to the destination (ending with a hover) or an empty list if there is none
+     * or the budget ran out
+     */
+    List<Cell> findPath() {
+        double threshold = heuristic.estimate(lattice, Lattice.ORIGIN_KEY, destination);
+        while (threshold != Double.POSITIVE_INFINITY) {
+            double next = search(threshold);
+            if (next < 0) {
+                statistics.suboptimalityBound = heuristic.getSuboptimalityBound();
+                return reconstructPath();
+            }
+            if (statistics.budgetExhausted) {
+                break;
+            }
+            threshold = next;
+        }
+        statistics.suboptimalityBound = Double.POSITIVE_INFINITY;
+        return new ArrayList<>();
+    }
+
+    /**
+     * One iteration, the found path is left in `path` up to `depth`
+     * @return -1 once a goal is found, the next threshold otherwise (infinity if nothing was cut off)
+     */
+    private double search(double threshold) {
+        LongDoubleHashMap transpositions = new LongDoubleHashMap(Math.min(nodeCap, SearchState.EXPECTED_NODES));
+        transpositions.put(Lattice.ORIGIN_KEY, 0);
+        double next = Double.POSITIVE_INFINITY;
+        path[0] = Lattice.ORIGIN_KEY;
+        depth = 0;
+        if (isCloseToGoal(Lattice.ORIGIN_KEY)) {
+            return -1;
+        }
+        expand(threshold, transpositions);
+        next = Math.min(next, cutOff);
+        while (depth >= 0) {
+            if (nextChild[depth] == childCounts[depth]) {
+                depth--;
+                continue;
+            }
+            long child = children[depth][nextChild[depth]++];
+            depth++;
+            ensureDepth();
+            path[depth] = child;
+            if (isCloseToGoal(child)) {
+                return -1;
+            }
+            if (expandedNodes >= maxExpandedNodes
+                    || expandedNodes % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                statistics.budgetExhausted = true;
+                return Double.POSITIVE_INFINITY;
+            }
+            expand(threshold, transpositions);
+            next = Math.min(next, cutOff);
+        }
+        return next;
+    }
+
+    /**
+     * lists the children of path[depth] within the threshold that are not reached cheaper elsewhere
+     */
+    private void expand(double threshold, LongDoubleHashMap transpositions) {
+        expandedNodes++;
+        statistics.expandedNodes++;
+        cutOff = Double.POSITIVE_INFINITY;
+        long current = path[depth];
+        double score = (depth + 1) * SystemConstants.DRONE_MOVE_DISTANCE;
+        int count = 0;
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            long child = lattice.step(current, direction);
+            if (child == Lattice.OUT_OF_RANGE || depth > 0 && child == path[depth - 1]
+                    || noFlyZones.contains(lattice.lng(child), lattice.lat(child))) {
+                continue;
+            }
+            double estimate = heuristic.estimate(lattice, child, destination);
+            if (score + estimate > threshold + EPSILON) {
+                cutOff = Math.min(cutOff, score + estimate);
+                continue;
+            }
+            int id = transpositions.indexOf(child);
+            if (id != -1) {
+                if (transpositions.valueAt(id) <= score) {
+                    continue;
+                }
+                transpositions.setValueAt(id, score);
+            } else if (transpositions.size() < nodeCap) {
+                transpositions.put(child, score);
+            }
+            // insertion by estimate
+            int position = count++;
+            while (position > 0 && childEstimates[position - 1] > estimate) {
+                children[depth][position] = children[depth][position - 1];
+                childEstimates[position] = childEstimates[position - 1];
+                position--;
+            }
+            children[depth][position] = child;
+            childEstimates[position] = estimate;
+            statistics.insertedNodes++;
+        }
+        childCounts[depth] = count;
+        nextChild[depth] = 0;
+    }
+
+    private void ensureDepth() {
+        if (depth < path.length) {
+            return;
+        }
+        int length = path.length << 1;
+        path = Arrays.copyOf(path, length);
+        children = Arrays.copyOf(children, length);
+        for (int i = depth; i < length; i++) {
+            children[i] = new long[Lattice.DIRECTIONS];
+        }
+        childCounts = Arrays.copyOf(childCounts, length);
+        nextChild = Arrays.copyOf(nextChild, length);
+    }
+
+    private boolean isCloseToGoal(long key) {
+        return lngLatHandler.isCloseTo(lattice.lng(key), lattice.lat(key), destination);
+    }
+
+    private List<Cell> reconstructPath() {
+        List<Cell> cells = new ArrayList<>();
+        for (int i = 1; i <= depth; i++) {
+            cells.add(new Cell(lattice, path[i], Lattice.toAngle(lattice.direction(path[i - 1], path[i]))));
+        }
+        cells.add(new Cell(destination, Cell.HOVER_ANGLE));
+        statistics.pathLength = cells.size();
+        return cells;
+    }
+}
@@ -0,0 +1,295 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.ZoneLookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Jump point search on the 16-direction lattice.
+ * Moves commute, so among the shortest paths through open space there is always one made of a run along a
+ * direction d followed by a run along d - 1 or d + 1 (the canonical order). The search only queues the ends of
+ * such runs (jump points) instead of every position:
+ * a run along d (primary) probes d - 1 and d + 1 (secondary) at every step and stops where a probe sees the goal
+ * or a forced node, a secondary run only continues along its own direction.
+ * A node is forced when one of its 16 neighbors is blocked (noFlyZone or out of the lattice), it restarts
+ * all 16 directions, as does the start. Nodes can only be forced near a noFlyZone, so the blocked neighbors are
+ * only looked up within a margin of the zone bounding boxes.
+ * Runs end at the closest approach to the goal (plus a little, the goal is a circle) or where they leave the
+ * margin of every bounding box, whichever is further; beyond both nothing can make them useful.
+ * A jump of k moves costs k moves, so the path has the same length as the one of a plain A* search.
+ */
+class JumpPointSearch {
+    // directions whose runs are primary (low 16 bits) or secondary (high 16 bits) at the start and at forced nodes
+    private static final int ALL_PRIMARY = (1 << Lattice.DIRECTIONS) - 1;
+    // nodes are looked at for blocked neighbors within this distance of a zone bounding box
+    private static final double ZONE_MARGIN = 2 * SystemConstants.DRONE_MOVE_DISTANCE;
+    // runs go this many moves past the closest approach to the goal
+    private static final int GOAL_OVERSHOOT = 2;
+    // offsets of a single move along the 16 directions
+    private static final double[] STEP_LNG = new double[Lattice.DIRECTIONS];
+    private static final double[] STEP_LAT = new double[Lattice.DIRECTIONS];
+
+    static {
+        // same moves as the lattice, a direction from 8 on is the opposite of the one 8 before
+        int axes = Lattice.DIRECTIONS / 2;
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            double sign = direction < axes ? 1 : -1;
+            STEP_LNG[direction] = sign * LngLatHandler.stepLng(direction % axes);
+            STEP_LAT[direction] = sign * LngLatHandler.stepLat(direction % axes);
+        }
+    }
+
+    private final LngLatHandler lngLatHandler = new LngLatHandler();
+    private final SearchState state;
+    private final LngLat destination;
+    private final Heuristic heuristic;
+    private final double tieBreak;
+    // zone bounding boxes widened by ZONE_MARGIN, minX, minY, maxX, maxY per zone
+    private final double[] boxes;
+    // directions to continue from a queued node, indexed by gScore ids
+    private int[] masks = new int[SearchState.EXPECTED_NODES];
+    // result of the last jump
+    private int jumpSteps;
+    private int jumpMask;
+
+    /**
+     * @param noFlyZones - zones of the search
+     * @param origin - start
+     * @param destination - goal
+     * @param heuristic - estimate of the remaining distance
+     * @param tieBreak - inflation of the heuristic that breaks ties among equal `f`
+     * @param statistics - counters to fill in
+     */
+    JumpPointSearch(ZoneLookup noFlyZones, LngLat origin, LngLat destination, Heuristic heuristic, double tieBreak,
+                    SearchStatistics statistics) {
+        this.state = new SearchState(noFlyZones, new Lattice(origin), statistics);
+        this.destination = destination;
+        this.heuristic = heuristic;
+        this.tieBreak = tieBreak;
+        this.boxes = noFlyZones.getBoundingBoxes();
+        for (int i = 0; i < boxes.length; i += 4) {
+            boxes[i] -= ZONE_MARGIN;
+            boxes[i + 1] -= ZONE_MARGIN;
+            boxes[i + 2] += ZONE_MARGIN;
+            boxes[i + 3] += ZONE_MARGIN;
+        }
+    }
+
+    /**
+     * @return path to the destination (ending with a hover) or an empty list if there is none
+     */
+    List<Cell> findPath() {
+        SearchStatistics statistics = state.statistics;
+        int startId = state.gScore.put(Lattice.ORIGIN_KEY, 0);
+        setMask(startId, ALL_PRIMARY);
+        state.nextCellQueue.insert(startId, 0);
+        statistics.insertedNodes++;
+        while (!state.nextCellQueue.isEmpty()) {
+            int currentId = state.nextCellQueue.poll();
+            long current = state.gScore.keyAt(currentId);
+            state.closed.set(currentId);
+            statistics.expandedNodes++;
+            if (isCloseToGoal(current)) {
+                return reconstructPath(current);
+            }
+            double score = state.gScore.valueAt(currentId);
+            int mask = masks[currentId];
+            for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+                boolean primary = (mask & (1 << direction)) != 0;
+                if (!primary && (mask & (1 << (direction + Lattice.DIRECTIONS))) == 0) {
+                    continue;
+                }
+                long jumpPoint = jump(current, direction, primary);
+                if (jumpPoint == Lattice.OUT_OF_RANGE) {
+                    continue;
+                }
+                int jumpId = state.gScore.indexOf(jumpPoint);
+                if (jumpId != -1 && state.closed.get(jumpId)) {
+                    continue;
+                }
+                double tentativeScore = score + jumpSteps * SystemConstants.DRONE_MOVE_DISTANCE;
+                if (tentativeScore < state.gScore.get(jumpPoint, Double.POSITIVE_INFINITY)) {
+                    state.cameFrom.put(jumpPoint, current);
+                    jumpId = state.gScore.put(jumpPoint, tentativeScore);
+                    setMask(jumpId, jumpMask);
+                    double fScore = heuristic.estimate(state.lattice, jumpPoint, destination) * (1 + tieBreak);
+                    if (state.nextCellQueue.insertOrDecrease(jumpId, tentativeScore + fScore)) {
+                        statistics.decreasedKeys++;
+                    } else {
+                        statistics.insertedNodes++;
+                    }
+                }
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private void setMask(int id, int mask) {
+        if (id >= masks.length) {
+            masks = Arrays.copyOf(masks, Math.max(id + 1, masks.length << 1));
+        }
+        masks[id] = mask;
+    }
+
+    /**
+     * Runs from a node along a direction until the next jump point,
+     * its distance and directions are left in `jumpSteps` and `jumpMask`
+     * @param from - node the run starts at
+     * @param direction - direction of the run
+     * @param primary - whether the run probes the neighboring directions
+     * @return key of the jump point or OUT_OF_RANGE if the run ends without one
+     */
+    private long jump(long from, int direction, boolean primary) {
+        int limit = runLimit(from, direction);
+        long key = from;
+        for (int steps = 1; steps <= limit; steps++) {
+            key = state.lattice.step(key, direction);
+            if (key == Lattice.OUT_OF_RANGE || isBlocked(key)) {
+                return Lattice.OUT_OF_RANGE;
+            }
+            jumpSteps = steps;
+            if (isCloseToGoal(key) || isForced(key)) {
+                jumpMask = ALL_PRIMARY;
+                return key;
+            }
+            if (primary) {
+                int left = (direction + 1) % Lattice.DIRECTIONS;
+                int right = (direction + Lattice.DIRECTIONS - 1) % Lattice.DIRECTIONS;
+                if (probe(key, left) || probe(key, right)) {
+                    jumpMask = (1 << direction) | (1 << (left + Lattice.DIRECTIONS))
+                            | (1 << (right + Lattice.DIRECTIONS));
+                    return key;
+                }
+            }
+        }
+        return Lattice.OUT_OF_RANGE;
+    }
+
+    /**
+     * @param from - node on a primary run
+     * @param direction - direction of the secondary run
+     * @return whether a secondary run from the node reaches the goal or a forced node
+     */
+    private boolean probe(long from, int direction) {
+        int limit = runLimit(from, direction);
+        long key = from;
+        for (int steps = 1; steps <= limit; steps++) {
+            key = state.lattice.step(key, direction);
+            if (key == Lattice.OUT_OF_RANGE || isBlocked(key)) {
+                return false;
+            }
+            if (isCloseToGoal(key) || isForced(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of moves after which a run from the node can no longer reach the goal or pass a zone
+     */
+    private int runLimit(long from, int direction) {
+        double x = state.lattice.lng(from), y = state.lattice.lat(from);
+        double stepX = STEP_LNG[direction], stepY = STEP_LAT[direction];
+        double moveSquared = SystemConstants.DRONE_MOVE_DISTANCE * SystemConstants.DRONE_MOVE_DISTANCE;
+        // closest approach to the goal, in moves
+        double along = ((destination.lng() - x) * stepX + (destination.lat() - y) * stepY) / moveSquared;
+        double limit = Math.floor(along) + GOAL_OVERSHOOT;
+        // last move within a widened zone bounding box (slab test of the ray against every box)
+        for (int i = 0; i < boxes.length; i += 4) {
+            double enter = 0, exit = Lattice.MAX_STEPS;
+            if (stepX != 0) {
+                double t1 = (boxes[i] - x) / stepX, t2 = (boxes[i + 2] - x) / stepX;
+                enter = Math.max(enter, Math.min(t1, t2));
+                exit = Math.min(exit, Math.max(t1, t2));
+            } else if (x < boxes[i] || x > boxes[i + 2]) {
+                continue;
+            }
+            if (stepY != 0) {
+                double t1 = (boxes[i + 1] - y) / stepY, t2 = (boxes[i + 3] - y) / stepY;
+                enter = Math.max(enter, Math.min(t1, t2));
+                exit = Math.min(exit, Math.max(t1, t2));
+            } else if (y < boxes[i + 1] || y > boxes[i + 3]) {
+                continue;
+            }
+            if (enter <= exit) {
+                limit = Math.max(limit, Math.ceil(exit));
+            }
+        }
+        // no run is longer than the lattice is wide
+        return (int) Math.min(2 * Lattice.MAX_STEPS, Math.max(0, limit));
+    }
+
+    private boolean isBlocked(long key) {
+        return state.noFlyZones.contains(state.lattice.lng(key), state.lattice.lat(key));
+    }
+
+    private boolean isCloseToGoal(long key) {
+        return lngLatHandler.isCloseTo(state.lattice.lng(key), state.lattice.lat(key), destination);
+    }
+
+    /**
+     * @return whether one of the 16 neighbors of the node is blocked
+     */
+    private boolean isForced(long key) {
+        if (!isNearZone(state.lattice.lng(key), state.lattice.lat(key))) {
+            return false;
+        }
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            long neighbor = state.lattice.step(key, direction);
+            if (neighbor == Lattice.OUT_OF_RANGE || isBlocked(neighbor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isNearZone(double x, double y) {
+        for (int i = 0; i < boxes.length; i += 4) {
+            if (x >= boxes[i] && x <= boxes[i + 2] && y >= boxes[i + 1] && y <= boxes[i + 3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * expands every jump (a run along a single direction) into its moves
+     */
+    private List<Cell> reconstructPath(long reached) {
+        LinkedList<Cell> path = new LinkedList<>();
+        long current = reached;
+        while (current != Lattice.ORIGIN_KEY) {
+            long previous = state.cameFrom.get(current, Lattice.ORIGIN_KEY);
+            int direction = runDirection(previous, current);
+            double angle = Lattice.toAngle(direction);
+            // moves of the run, from its end back to its start
+            for (long key = current; key != previous; key = state.lattice.step(key, (direction + Lattice.DIRECTIONS / 2) % Lattice.DIRECTIONS)) {
+                path.addFirst(new Cell(state.lattice, key, angle));
+            }
+            current = previous;
+        }
+        path.add(new Cell(destination, Cell.HOVER_ANGLE));
+        state.statistics.pathLength = path.size();
+        return new ArrayList<>(path);
+    }
+
+    /**
+     * @return direction of the run between two nodes that differ along a single axis
+     */
+    private int runDirection(long from, long to) {
+        for (int axis = 0; axis < Lattice.DIRECTIONS / 2; axis++) {
+            int difference = state.lattice.getSteps(to, axis) - state.lattice.getSteps(from, axis);
+            if (difference != 0) {
+                return difference > 0 ? axis : axis + Lattice.DIRECTIONS / 2;
+            }
+        }
+        throw new IllegalStateException("Jump of no moves");
+    }
+}
@@ -0,0 +1,295 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.utils.IndexedMinHeap;
+import uk.ac.ed.inf.utils.ZoneIndex;
+import uk.ac.ed.inf.utils.ZoneRaster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Landmark (ALT) lower bound on top of the lattice heuristic, precomputed for every zone configuration.
+ * The lattice never repeats a position, so the landmark distances are taken over a grid of DRONE_MOVE_DISTANCE
+ * cells around the noFlyZones instead: a Dijkstra from every landmark along 16 grid offsets within 0.4 degrees
+ * of the lattice directions, each offset costing its least number of lattice moves (LatticeHeuristic.moves)
+ * and not passing through a cell the zones provably cover (ZoneRaster.isCovered, so a gap narrower than a cell
+ * stays open; the lattice only checks where the moves end).
+ * By the triangle inequality |d(L, goal) - d(L, x)| moves are left from x for every landmark L,
+ * which sees the detours around the zones that the straight-line estimate cannot.
+ * The grid distances are off by up to a cell at either end and combining the offsets costs up to 0.1% more
+ * than the lattice moves, both are taken off the bound before it is rounded up to whole moves.
+ * Outside the grid (and before the first prepare) the estimate is the plain lattice one.
+ */
+public class LandmarkHeuristic implements Heuristic {
+    public static final int DEFAULT_LANDMARKS = 8;
+    private static final double CELL = SystemConstants.DRONE_MOVE_DISTANCE;
+    // the grid extends this many cells past the bounding box of the zones, the landmarks are on its border
+    private static final int MARGIN_CELLS = 100;
+    // grid offsets (column, row) along the lattice directions, (12, 5) is 22.6 degrees
+    private static final int[][] OFFSETS = {
+            {1, 0}, {12, 5}, {1, 1}, {5, 12}, {0, 1}, {-5, 12}, {-1, 1}, {-12, 5},
+            {-1, 0}, {-12, -5}, {-1, -1}, {-5, -12}, {0, -1}, {5, -12}, {1, -1}, {12, -5}};
+    // least number of lattice moves covering each offset
+    private static final double[] OFFSET_MOVES = new double[OFFSETS.length];
+    // cells (column, row) the segment between the centres passes through, up to and including the end
+    private static final int[][][] CROSSED = new int[OFFSETS.length][][];
+    // share of a grid distance the offsets can overestimate the lattice moves by
+    private static final double OFFSET_ERROR = 0.001;
+    // moves taken off the bound: a cell at either end, the goal circle and a move for corners the lattice cuts
+    private static final double SLACK_MOVES = 3;
+    private static final double EPSILON = 1e-9;
+
+    static {
+        for (int i = 0; i < OFFSETS.length; i++) {
+            int dx = OFFSETS[i][0], dy = OFFSETS[i][1];
+            OFFSET_MOVES[i] = LatticeHeuristic.moves(dx * CELL, dy * CELL);
+            // sampled finely enough to visit every cell along the way
+            int samples = 8 * (Math.abs(dx) + Math.abs(dy));
+            List<int[]> crossed = new ArrayList<>();
+            int lastColumn = 0, lastRow = 0;
+            for (int k = 1; k <= samples; k++) {
+                int column = (int) Math.floor(0.5 + dx * (double) k / samples);
+                int row = (int) Math.floor(0.5 + dy * (double) k / samples);
+                if (column != lastColumn || row != lastRow) {
+                    crossed.add(new int[] {column, row});
+                    lastColumn = column;
+                    lastRow = row;
+                }
+            }
+            CROSSED[i] = crossed.toArray(new int[0][]);
+        }
+    }
+
+    private final LatticeHeuristic lattice = new LatticeHeuristic();
+    private final int landmarkCount;
+    // grid, empty until prepared
+    private final double minX;
+    private final double minY;
+    private final int columns;
+    private final int rows;
+    private final List<LngLat> landmarks;
+    // moves from every landmark to every cell (infinity for unreachable cells)
+    private final float[][] distances;
+    private final long precomputeNanos;
+
+    public LandmarkHeuristic() {
+        this(DEFAULT_LANDMARKS);
+    }
+
+    /**
+     * @param landmarks - number of landmarks to place around the zones on every prepare
+     */
+    public LandmarkHeuristic(int landmarks) {
+        if (landmarks < 1) {
+            throw new IllegalArgumentException("At least one landmark is needed: " + landmarks);
+        }
+        this.landmarkCount = landmarks;
+        this.minX = this.minY = 0;
+        this.columns = this.rows = 0;
+        this.landmarks = List.of();
+        this.distances = new float[0][];
+        this.precomputeNanos = 0;
+    }
+
+    /**
+     * Places the landmarks and floods the grid from each of them
+     */
+    private LandmarkHeuristic(int landmarks, NamedRegion[] noFlyZones) {
+        long start = System.nanoTime();
+        this.landmarkCount = landmarks;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (NamedRegion region : noFlyZones) {
+            for (LngLat vertex : region.vertices()) {
+                minX = Math.min(minX, vertex.lng());
+                minY = Math.min(minY, vertex.lat());
+                maxX = Math.max(maxX, vertex.lng());
+                maxY = Math.max(maxY, vertex.lat());
+            }
+        }
+        this.minX = minX - MARGIN_CELLS * CELL;
+        this.minY = minY - MARGIN_CELLS * CELL;
+        this.columns = (int) Math.ceil((maxX - minX) / CELL) + 2 * MARGIN_CELLS;
+        this.rows = (int) Math.ceil((maxY - minY) / CELL) + 2 * MARGIN_CELLS;
+        boolean[] blocked = new boolean[columns * rows];
+        ZoneIndex zones = new ZoneIndex(noFlyZones);
+        for (int cell = 0; cell < blocked.length; cell++) {
+            double x = centreLng(cell), y = centreLat(cell), half = CELL / 2;
+            // a sampled point outside rules the cell out cheaply, only the exact test may block it
+            blocked[cell] = zones.contains(x, y) && zones.contains(x - half, y - half) && zones.contains(x + half, y - half)
+                    && zones.contains(x - half, y + half) && zones.contains(x + half, y + half)
+                    && ZoneRaster.isCovered(noFlyZones, x - half, y - half, x + half, y + half);
+        }
+        int[] landmarkCells = selectLandmarks(blocked);
+        List<LngLat> landmarkPoints = new ArrayList<>();
+        this.distances = new float[landmarkCells.length][];
+        for (int i = 0; i < landmarkCells.length; i++) {
+            landmarkPoints.add(new LngLat(centreLng(landmarkCells[i]), centreLat(landmarkCells[i])));
+            distances[i] = flood(landmarkCells[i], blocked);
+        }
+        this.landmarks = List.copyOf(landmarkPoints);
+        this.precomputeNanos = System.nanoTime() - start;
+    }
+
+    private double centreLng(int cell) {
+        return minX + (cell % columns + 0.5) * CELL;
+    }
+
+    private double centreLat(int cell) {
+        return minY + (cell / columns + 0.5) * CELL;
+    }
+
+    /**
+     * @return cell of the point or -1 outside the grid
+     */
+    private int cellOf(double x, double y) {
+        double column = (x - minX) / CELL;
+        double row = (y - minY) / CELL;
+        if (!(column >= 0 && column < columns && row >= 0 && row < rows)) {
+            return -1;
+        }
+        return (int) row * columns + (int) column;
+    }
+
+    /**
+     * farthest-point selection among the free border cells, starting from the one furthest from the zones,
+     * so that the landmarks surround the zones and lie behind the goals as seen from the starts
+     */
+    private int[] selectLandmarks(boolean[] blocked) {
+        List<Integer> border = new ArrayList<>();
+        for (int cell = 0; cell < blocked.length; cell++) {
+            int column = cell % columns, row = cell / columns;
+            if ((column == 0 || row == 0 || column == columns - 1 || row == rows - 1) && !blocked[cell]) {
+                border.add(cell);
+            }
+        }
+        int count = Math.min(landmarkCount, border.size());
+        int[] selected = new int[count];
+        double[] nearest = new double[border.size()];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        // the grid centre stands in for a first landmark
+        int previous = (rows / 2) * columns + columns / 2;
+        for (int i = 0; i < count; i++) {
+            int best = 0;
+            for (int j = 0; j < border.size(); j++) {
+                int cell = border.get(j);
+                double dx = cell % columns - previous % columns, dy = cell / columns - previous / columns;
+                nearest[j] = Math.min(nearest[j], dx * dx + dy * dy);
+                if (nearest[j] > nearest[best]) {
+                    best = j;
+                }
+            }
+            selected[i] = border.get(best);
+            previous = selected[i];
+        }
+        return selected;
+    }
+
+    /**
+     * Dijkstra over the free cells from the landmark
+     */
+    private float[] flood(int landmark, boolean[] blocked) {
+        float[] distance = new float[blocked.length];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        IndexedMinHeap queue = new IndexedMinHeap(blocked.length);
+        distance[landmark] = 0;
+        queue.insert(landmark, 0);
+        while (!queue.isEmpty()) {
+            double score = queue.peekPriority();
+            int cell = queue.poll();
+            int column = cell % columns, row = cell / columns;
+            for (int i = 0; i < OFFSETS.length; i++) {
+                int nextColumn = column + OFFSETS[i][0], nextRow = row + OFFSETS[i][1];
+                if (nextColumn < 0 || nextColumn >= columns || nextRow < 0 || nextRow >= rows) {
+                    continue;
+                }
+                int next = nextRow * columns + nextColumn;
+                double nextScore = score + OFFSET_MOVES[i];
+                if (nextScore < distance[next] && isClear(column, row, i, blocked)) {
+                    distance[next] = (float) nextScore;
+                    queue.insertOrDecrease(next, nextScore);
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * @return whether none of the cells the offset from the cell passes through is blocked
+     */
+    private boolean isClear(int column, int row, int offset, boolean[] blocked) {
+        for (int[] crossed : CROSSED[offset]) {
+            if (blocked[(row + crossed[1]) * columns + column + crossed[0]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param noFlyZones - zones of the following searches
+     * @return heuristic with the landmarks placed and flooded around these zones
+     */
+    @Override
+    public Heuristic prepare(NamedRegion[] noFlyZones) {
+        if (Arrays.stream(noFlyZones).allMatch(region -> region.vertices().length == 0)) {
+            // nothing to go around
+            return new LandmarkHeuristic(landmarkCount);
+        }
+        return new LandmarkHeuristic(landmarkCount, noFlyZones);
+    }
+
+    @Override
+    public double estimate(Lattice lattice, long key, LngLat destination) {
+        double estimate = this.lattice.estimate(lattice, key, destination);
+        if (distances.length == 0) {
+            return estimate;
+        }
+        int from = cellOf(lattice.lng(key), lattice.lat(key));
+        int to = cellOf(destination.lng(), destination.lat());
+        if (from < 0 || to < 0) {
+            return estimate;
+        }
+        double bound = 0;
+        for (float[] distance : distances) {
+            double a = distance[from], b = distance[to];
+            // cells the landmark does not reach say nothing
+            if (a != Double.POSITIVE_INFINITY && b != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, Math.abs(a - b) / (1 + OFFSET_ERROR));
+            }
+        }
+        double remaining = bound - SLACK_MOVES;
+        if (remaining <= 0) {
+            return estimate;
+        }
+        return Math.max(estimate, Math.ceil(remaining - EPSILON) * SystemConstants.DRONE_MOVE_DISTANCE);
+    }
+
+    @Override
+    public double getSuboptimalityBound() {
+        return 1;
+    }
+
+    /**
+     * @return landmarks placed by the last prepare (empty before)
+     */
+    public List<LngLat> getLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * @return time it took to place and flood the landmarks in nanoseconds
+     */
+    public long getPrecomputeNanos() {
+        return precomputeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "landmark";
+    }
+}
@@ -0,0 +1,261 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.utils.LngLatHandler;
+
+import java.util.Arrays;
+
+/**
+ * Positions the drone can reach from a fixed origin.
+ * Every move is DRONE_MOVE_DISTANCE along one of the 16 directions (i * 22.5 degrees),
+ * direction i + 8 is the opposite of direction i, so a position is exactly described by
+ * the net number of steps along directions 0..7.
+ * While all 8 step counts are within [-127, 127] (every position up to 127 moves from the origin, which covers
+ * the legs across the city) they are packed as signed bytes into the long key. A position beyond gets a wide key
+ * instead: WIDE_TAG in the top byte and the index of its counts in a table of the lattice, where each count goes
+ * up to MAX_STEPS. Every position has a single key either way, moves commute (E then N is the same key as N then E)
+ * and two keys of a lattice are equal only if the positions are.
+ * Coordinates are computed from the counts in one go, so they do not drift along a path.
+ * Stepping adds wide keys to the table, so a lattice is stepped by one search (thread) at a time,
+ * reading positions from several threads afterwards is safe.
+ */
+public class Lattice {
+    public static final int DIRECTIONS = 16;
+    public static final double DIRECTION_ANGLE = 22.5;
+    // key of the origin itself
+    public static final long ORIGIN_KEY = 0L;
+    // returned by `step` when a count would exceed MAX_STEPS
+    public static final long OUT_OF_RANGE = 0x8080808080808080L;
+    // most net steps along a direction, about 4.9 degrees of moves
+    public static final int MAX_STEPS = Short.MAX_VALUE;
+    // counts are packed into bytes within [-127, 127], so a top byte of -128 marks wide keys (and OUT_OF_RANGE)
+    static final int PACKED_STEPS = 127;
+    private static final long WIDE_TAG = 0x80L;
+
+    private static final int AXES = DIRECTIONS / 2;
+    // offsets of a single move along directions 0..7
+    private static final double[] STEP_LNG = new double[AXES];
+    private static final double[] STEP_LAT = new double[AXES];
+
+    static {
+        // same moves as LngLatHandler.nextPosition
+        for (int axis = 0; axis < AXES; axis++) {
+            STEP_LNG[axis] = LngLatHandler.stepLng(axis);
+            STEP_LAT[axis] = LngLatHandler.stepLat(axis);
+        }
+    }
+
+    private final double originLng;
+    private final double originLat;
+    // counts of the wide keys, AXES per key, allocated once a position leaves the packed range
+    private short[] wideCounts;
+    private int wideSize;
+    // open addressing table of the wide keys by their counts, index + 1 (0 is empty)
+    private int[] wideSlots;
+    private final int[] counts = new int[AXES];
+
+    public Lattice(LngLat origin) {
+        this.originLng = origin.lng();
+        this.originLat = origin.lat();
+    }
+
+    /**
+     * @param key - position
+     * @param direction - 0..15 (angle = direction * 22.5)
+     * @return key of the position one move away or OUT_OF_RANGE
+     */
+    public long step(long key, int direction) {
+        int axis = direction & (AXES - 1);
+        int delta = direction < AXES ? 1 : -1;
+        if (!isWide(key)) {
+            int shift = axis * 8;
+            int count = (byte) (key >>> shift) + delta;
+            if (count <= PACKED_STEPS && count >= -PACKED_STEPS) {
+                return (key & ~(0xFFL << shift)) | ((count & 0xFFL) << shift);
+            }
+        }
+        for (int i = 0; i < AXES; i++) {
+            counts[i] = getSteps(key, i);
+        }
+        counts[axis] += delta;
+        if (counts[axis] > MAX_STEPS || counts[axis] < -MAX_STEPS) {
+            return OUT_OF_RANGE;
+        }
+        return keyOf(counts);
+    }
+
+    private static boolean isWide(long key) {
+        return key >>> 56 == WIDE_TAG;
+    }
+
+    /**
+     * @return packed key of the counts if they all fit in a byte, their wide key otherwise
+     */
+    private long keyOf(int[] counts) {
+        long key = 0;
+        boolean packed = true;
+        int hash = 0;
+        for (int axis = 0; axis < AXES; axis++) {
+            packed &= counts[axis] <= PACKED_STEPS && counts[axis] >= -PACKED_STEPS;
+            key |= (counts[axis] & 0xFFL) << (axis * 8);
+            hash = hash * 31 + counts[axis];
+        }
+        if (packed) {
+            return key;
+        }
+        if (wideSlots == null) {
+            wideSlots = new int[1 << 10];
+            wideCounts = new short[(wideSlots.length / 2) * AXES];
+        }
+        int mask = wideSlots.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (wideSlots[slot] != 0) {
+            int index = wideSlots[slot] - 1;
+            if (hasCounts(index, counts)) {
+                return (WIDE_TAG << 56) | index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int index = wideSize++;
+        if ((index + 1) * AXES > wideCounts.length) {
+            wideCounts = Arrays.copyOf(wideCounts, wideCounts.length * 2);
+        }
+        for (int axis = 0; axis < AXES; axis++) {
+            wideCounts[index * AXES + axis] = (short) counts[axis];
+        }
+        wideSlots[slot] = index + 1;
+        // at most half full
+        if (wideSize * 2 > wideSlots.length) {
+            rehash();
+        }
+        return (WIDE_TAG << 56) | index;
+    }
+
+    private boolean hasCounts(int index, int[] counts) {
+        for (int axis = 0; axis < AXES; axis++) {
+            if (wideCounts[index * AXES + axis] != counts[axis]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        wideSlots = new int[wideSlots.length * 2];
+        int mask = wideSlots.length - 1;
+        for (int index = 0; index < wideSize; index++) {
+            int hash = 0;
+            for (int axis = 0; axis < AXES; axis++) {
+                hash = hash * 31 + wideCounts[index * AXES + axis];
+            }
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (wideSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            wideSlots[slot] = index + 1;
+        }
+    }
+
+    /**
+     * @param key - position
+     * @param axis - 0..7
+     * @return net number of steps along the direction `axis`
+     */
+    public int getSteps(long key, int axis) {
+        if (isWide(key)) {
+            return wideCounts[(int) key * AXES + axis];
+        }
+        return (byte) (key >>> (axis * 8));
+    }
+
+    /**
+     * @param from - position
+     * @param to - position one move away from `from`
+     * @return direction (0..15) of the move or -1 if the positions are not neighbors
+     */
+    public int direction(long from, long to) {
+        int direction = -1;
+        for (int axis = 0; axis < AXES; axis++) {
+            int difference = getSteps(to, axis) - getSteps(from, axis);
+            if (difference == 0) {
+                continue;
+            }
+            if (direction != -1 || Math.abs(difference) != 1) {
+                return -1;
+            }
+            direction = difference > 0 ? axis : axis + AXES;
+        }
+        return direction;
+    }
+
+    /**
+     * @param direction - 0..15
+     * @return angle of the direction in degrees
+     */
+    public static double toAngle(int direction) {
+        return direction * DIRECTION_ANGLE;
+    }
+
+    /**
+     * @param key - position
+     * @return longitude of the position
+     */
+    public double lng(long key) {
+        double offset = 0;
+        if (isWide(key)) {
+            int base = (int) key * AXES;
+            for (int axis = 0; axis < AXES; axis++) {
+                offset += wideCounts[base + axis] * STEP_LNG[axis];
+            }
+        } else {
+            for (int axis = 0; axis < AXES; axis++) {
+                offset += (byte) (key >>> (axis * 8)) * STEP_LNG[axis];
+            }
+        }
+        return originLng + offset;
+    }
+
+    /**
+     * @param key - position
+     * @return latitude of the position
+     */
+    public double lat(long key) {
+        double offset = 0;
+        if (isWide(key)) {
+            int base = (int) key * AXES;
+            for (int axis = 0; axis < AXES; axis++) {
+                offset += wideCounts[base + axis] * STEP_LAT[axis];
+            }
+        } else {
+            for (int axis = 0; axis < AXES; axis++) {
+                offset += (byte) (key >>> (axis * 8)) * STEP_LAT[axis];
+            }
+        }
+        return originLat + offset;
+    }
+
+    /**
+     * Both coordinates of a position in one pass over the key (same values as lng and lat), without allocating
+     * @param key - position
+     * @param position - buffer the longitude and latitude are written into
+     */
+    public void position(long key, double[] position) {
+        double offsetLng = 0, offsetLat = 0;
+        for (int axis = 0; axis < AXES; axis++) {
+            int count = getSteps(key, axis);
+            offsetLng += count * STEP_LNG[axis];
+            offsetLat += count * STEP_LAT[axis];
+        }
+        position[0] = originLng + offsetLng;
+        position[1] = originLat + offsetLat;
+    }
+
+    /**
+     * Materialises the coordinates of a position (for export)
+     * @param key - position
+     * @return coordinates
+     */
+    public LngLat toLngLat(long key) {
+        return new LngLat(lng(key), lat(key));
+    }
+}
@@ -0,0 +1,55 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Exact lower bound on the flight length when only the 16 lattice moves are allowed
+ * (the 16-direction counterpart of the octile distance).
+ * Without obstacles the cheapest way to cover an offset is to combine the two move directions around it:
+ * an offset of length d at an angle phi past the previous direction takes d * cos(phi - a / 2) / cos(a / 2) moves,
+ * a being the 22.5 degrees between two directions.
+ * The goal circle is reached up to DRONE_IS_CLOSE_DISTANCE / cos(a / 2) earlier and the result is rounded
+ * up to whole moves, the estimate stays consistent so the first path found is the shortest.
+ */
+public class LatticeHeuristic implements Heuristic {
+    private static final double SECTOR = Math.toRadians(Lattice.DIRECTION_ANGLE);
+    private static final double HALF_SECTOR_COS = Math.cos(SECTOR / 2);
+    private static final double CLOSE_MOVES =
+            SystemConstants.DRONE_IS_CLOSE_DISTANCE / SystemConstants.DRONE_MOVE_DISTANCE / HALF_SECTOR_COS;
+    // rounding error allowed before a move count is rounded up
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * @param dLng - longitude offset
+     * @param dLat - latitude offset
+     * @return least number of moves (as a fraction) covering the offset
+     */
+    static double moves(double dLng, double dLat) {
+        double distance = Math.sqrt(dLng * dLng + dLat * dLat) / SystemConstants.DRONE_MOVE_DISTANCE;
+        double angle = Math.atan2(dLat, dLng);
+        // angle past the previous move direction, in [0, SECTOR)
+        double phi = angle - Math.floor(angle / SECTOR) * SECTOR;
+        return distance * Math.cos(phi - SECTOR / 2) / HALF_SECTOR_COS;
+    }
+
+    @Override
+    public double estimate(Lattice lattice, long key, LngLat destination) {
+        double remaining = moves(destination.lng() - lattice.lng(key), destination.lat() - lattice.lat(key))
+                - CLOSE_MOVES;
+        if (remaining <= 0) {
+            return 0;
+        }
+        return Math.ceil(remaining - EPSILON) * SystemConstants.DRONE_MOVE_DISTANCE;
+    }
+
+    @Override
+    public double getSuboptimalityBound() {
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "lattice";
+    }
+}
@@ -0,0 +1,26 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+/**
+ * Manhattan distance to the destination.
+ * Overestimates diagonal flights (by up to sqrt(2)) and ignores the close distance around the goal,
+ * so A* explores little but the path is not guaranteed to be the shortest.
+ */
+public class ManhattanHeuristic implements Heuristic {
+    @Override
+    public double estimate(Lattice lattice, long key, LngLat destination) {
+        return Math.abs(lattice.lat(key) - destination.lat()) +
+                Math.abs(lattice.lng(key) - destination.lng());
+    }
+
+    @Override
+    public double getSuboptimalityBound() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+        return "manhattan";
+    }
+}
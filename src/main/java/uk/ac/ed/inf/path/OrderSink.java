@@ -0,0 +1,30 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.Order;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Output file written order by order (see ExportPipeline), closing it completes the file
+ */
+interface OrderSink extends Closeable {
+    /**
+     * Builds a sink over an open file (eg FlightPathJsonWriter::deliveriesSink)
+     */
+    interface Factory {
+        /**
+         * @param out - stream into the file
+         * @return sink writing the file
+         */
+        OrderSink open(OutputStream out) throws IOException;
+    }
+
+    /**
+     * @param order - order with its final status
+     * @param path - flight path of the order, empty if it is not delivered
+     */
+    void write(Order order, List<Cell> path) throws IOException;
+}
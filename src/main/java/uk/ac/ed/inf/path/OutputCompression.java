@@ -0,0 +1,89 @@
+package uk.ac.ed.inf.path;
+
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of the files FlightPlanner writes, its suffix is appended to their names
+ */
+public enum OutputCompression {
+    // plain files
+    NONE(""),
+    // gzip, the smallest files, read by gunzip / zcat and most tools
+    GZIP(".gz"),
+    // snappy framing format (snappy-java), larger files than gzip but compressed several times faster
+    SNAPPY(".sz");
+
+    // deflater buffer of the gzip stream
+    private static final int GZIP_BUFFER_BYTES = 1 << 16;
+
+    private final String suffix;
+
+    OutputCompression(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * @return suffix of the compressed files (eg .gz), empty without compression
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @param out - stream of the file
+     * @return stream compressing into it, closing it closes the file stream
+     */
+    public OutputStream compress(OutputStream out) throws IOException {
+        return switch (this) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, GZIP_BUFFER_BYTES);
+            case SNAPPY -> new SnappyFramedOutputStream(out);
+        };
+    }
+
+    /**
+     * @param in - stream of a file compressed this way
+     * @return stream of the uncompressed content
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        return switch (this) {
+            case NONE -> in;
+            case GZIP -> new GZIPInputStream(in, GZIP_BUFFER_BYTES);
+            case SNAPPY -> new SnappyFramedInputStream(in);
+        };
+    }
+
+    /**
+     * @param name - compression name, case-insensitive (none, gzip, snappy)
+     * @return compression of that name
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static OutputCompression fromName(String name) {
+        for (OutputCompression compression : values()) {
+            if (compression.name().equalsIgnoreCase(name)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output compression: " + name);
+    }
+
+    /**
+     * @param filename - name of a file
+     * @return compression its suffix stands for, NONE if it has none of the suffixes
+     */
+    public static OutputCompression fromFilename(String filename) {
+        for (OutputCompression compression : values()) {
+            if (compression != NONE && filename.endsWith(compression.suffix)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,186 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.*;
+
+/**
+ * Keeps computed flight paths between pairs of points so that repeated legs
+ * (Appleton Tower <-> restaurant) do not have to be searched again.
+ * Routes are keyed by origin, destination and a fingerprint of the noFlyZones
+ * they were computed against, so a zone update never serves a stale path.
+ */
+public class RouteCache {
+    /**
+     * How entries are dropped once the cache is at capacity
+     * LRU - least recently used route goes first
+     * FIFO - oldest computed route goes first
+     * NONE - never evict (capacity is ignored)
+     */
+    public enum EvictionPolicy {
+        LRU,
+        FIFO,
+        NONE
+    }
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private record RouteKey(LngLat origin, LngLat destination, long zoneFingerprint) {}
+
+    private final EvictionPolicy evictionPolicy;
+    private final int capacity;
+    private final LinkedHashMap<RouteKey, List<Cell>> routes;
+
+    private long hits;
+    private long reverseHits;
+    private long misses;
+
+    public RouteCache() {
+        this(EvictionPolicy.LRU, DEFAULT_CAPACITY);
+    }
+
+    public RouteCache(EvictionPolicy evictionPolicy, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Route cache capacity must be positive");
+        }
+        this.evictionPolicy = evictionPolicy;
+        this.capacity = capacity;
+        // access order only matters for LRU, FIFO keeps the insertion order
+        this.routes = new LinkedHashMap<>(16, 0.75f, evictionPolicy == EvictionPolicy.LRU) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RouteKey, List<Cell>> eldest) {
+                return RouteCache.this.evictionPolicy != EvictionPolicy.NONE
+                        && size() > RouteCache.this.capacity;
+            }
+        };
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of lookups served from the cache (including reversed routes)
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups served by reversing the opposite route
+     */
+    public synchronized long getReverseHits() {
+        return reverseHits;
+    }
+
+    /**
+     * @return number of lookups that required a fresh search
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    /**
+     * Drops all routes and resets the counters
+     */
+    public synchronized void clear() {
+        routes.clear();
+        hits = 0;
+        reverseHits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Looks up a route between two points, if only the opposite route is known,
+     * it is reversed (angles flipped) and served instead
+     * @param origin - start
+     * @param destination - destination
+     * @param zoneFingerprint - fingerprint of the active noFlyZones
+     * @return path in the same format as AStarPathFinder produces or null if unknown
+     */
+    public synchronized List<Cell> get(LngLat origin, LngLat destination, long zoneFingerprint) {
+        List<Cell> path = routes.get(new RouteKey(origin, destination, zoneFingerprint));
+        if (path != null) {
+            hits++;
+            return path;
+        }
+        List<Cell> oppositePath = routes.get(new RouteKey(destination, origin, zoneFingerprint));
+        if (oppositePath != null) {
+            hits++;
+            reverseHits++;
+            return reversePath(destination, oppositePath);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Saves a computed route
+     * @param origin - start
+     * @param destination - destination
+     * @param zoneFingerprint - fingerprint of the noFlyZones the path avoids
+     * @param path - computed path
+     */
+    public synchronized void put(LngLat origin, LngLat destination, long zoneFingerprint, List<Cell> path) {
+        routes.put(new RouteKey(origin, destination, zoneFingerprint), List.copyOf(path));
+    }
+
+    /**
+     * Computes a fingerprint of the zone configuration,
+     * any change to the names or vertices produces a different value
+     * @param noFlyZones - zones to fingerprint
+     * @return fingerprint
+     */
+    public static long fingerprint(NamedRegion[] noFlyZones) {
+        long fingerprint = 1125899906842597L;
+        if (noFlyZones == null) {
+            return fingerprint;
+        }
+        for (NamedRegion zone : noFlyZones) {
+            fingerprint = 31 * fingerprint + Objects.hashCode(zone.name());
+            for (LngLat vertex : zone.vertices()) {
+                fingerprint = 31 * fingerprint + Double.doubleToLongBits(vertex.lng());
+                fingerprint = 31 * fingerprint + Double.doubleToLongBits(vertex.lat());
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Reverses a path found from `origin` so that it leads back to `origin`.
+     * A path has the form [c1, ..., cn, goal(999)] where every cell holds the angle it was entered with,
+     * the reversed one is [cn(999), c(n-1), ..., c1, origin, origin(999)]:
+     * the snap from the destination onto the path is a hover (as the original arrival was)
+     * and every other move gets the opposite angle of the move it mirrors
+     * @param origin - start point of the original path
+     * @param path - original path
+     * @return reversed path
+     */
+    public static List<Cell> reversePath(LngLat origin, List<Cell> path) {
+        List<Cell> reversed = new ArrayList<>(path.size() + 1);
+        // last cell is the hover at the destination, not a lattice move
+        int lastMove = path.size() - 2;
+        for (int i = lastMove; i >= 0; i--) {
+            double angle = (i == lastMove) ? Cell.HOVER_ANGLE : flipAngle(path.get(i + 1).getEnterAngle());
+            reversed.add(new Cell(path.get(i).getCoordinates(), angle));
+        }
+        if (lastMove >= 0) {
+            reversed.add(new Cell(origin, flipAngle(path.get(0).getEnterAngle())));
+        }
+        reversed.add(new Cell(origin, Cell.HOVER_ANGLE));
+        return reversed;
+    }
+
+    private static double flipAngle(double angle) {
+        return (angle + 180) % 360;
+    }
+}
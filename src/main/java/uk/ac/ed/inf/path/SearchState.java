@@ -0,0 +1,42 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.utils.IndexedMinHeap;
+import uk.ac.ed.inf.utils.LongDoubleHashMap;
+import uk.ac.ed.inf.utils.LongLongHashMap;
+import uk.ac.ed.inf.utils.ZoneLookup;
+
+import java.util.BitSet;
+
+/**
+ * State of a single search, every call to findShortestPath gets its own
+ * so that searches can run concurrently on the same instance
+ * nodes are identified by their lattice keys, the tables are primitive (no boxing, no entry objects)
+ */
+class SearchState {
+    // initial size of the search tables, they grow as needed
+    static final int EXPECTED_NODES = 1 << 10;
+
+    // tracks distance up to the node, its ids index the open and closed sets
+    final LongDoubleHashMap gScore = new LongDoubleHashMap(EXPECTED_NODES);
+    // open set of gScore ids, lowest `f` bubbles to the top, a better `f` re-sifts the node
+    final IndexedMinHeap nextCellQueue = new IndexedMinHeap(EXPECTED_NODES);
+    // key -> key of the node it was reached from
+    final LongLongHashMap cameFrom = new LongLongHashMap(EXPECTED_NODES);
+    // expanded (or blocked) nodes, indexed by gScore ids
+    final BitSet closed = new BitSet(EXPECTED_NODES);
+    // valid neighbors of the node being expanded
+    final long[] neighbors = new long[Lattice.DIRECTIONS];
+    // coordinates {lng, lat} of the node being tested, decoded in place
+    final double[] position = new double[2];
+    // zones are read once so that an update does not affect a running search
+    final ZoneLookup noFlyZones;
+    // positions reachable from the origin of the search
+    final Lattice lattice;
+    final SearchStatistics statistics;
+
+    SearchState(ZoneLookup noFlyZones, Lattice lattice, SearchStatistics statistics) {
+        this.noFlyZones = noFlyZones;
+        this.lattice = lattice;
+        this.statistics = statistics;
+    }
+}
@@ -0,0 +1,88 @@
+package uk.ac.ed.inf.path;
+
+/**
+ * Counters of a single search, pass one to the pathfinder to have it filled in
+ */
+public class SearchStatistics {
+    long expandedNodes;
+    long insertedNodes;
+    long decreasedKeys;
+    long collisionChecks;
+    int pathLength;
+    // proven bound of the found path, set by every search
+    double suboptimalityBound = 1;
+    boolean budgetExhausted;
+
+    /**
+     * @return number of nodes taken off the open set and expanded
+     */
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * @return number of nodes added to the open set
+     */
+    public long getInsertedNodes() {
+        return insertedNodes;
+    }
+
+    /**
+     * @return number of times a queued node got a better score
+     * (each would have been a stale duplicate entry in a queue without decrease-key)
+     */
+    public long getDecreasedKeys() {
+        return decreasedKeys;
+    }
+
+    /**
+     * @return number of nodes tested against the noFlyZones by the A* searches of AStarPathFinder
+     */
+    public long getCollisionChecks() {
+        return collisionChecks;
+    }
+
+    /**
+     * @return number of moves of the found path, including the hover (0 if none was found)
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @return how many times longer than the shortest one the found path is proven to be at most
+     * (the bound of the heuristic for the strategies that run to the end, infinity if an anytime search found none
+     * and for the bidirectional and hierarchical searches, which prove none)
+     */
+    public double getSuboptimalityBound() {
+        return suboptimalityBound;
+    }
+
+    /**
+     * @return whether the search stopped at its budget (SearchStrategy.ANYTIME) rather than finishing
+     */
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    /**
+     * Adds the counters of another search (eg to total a day)
+     * @param other - counters to add
+     */
+    public void add(SearchStatistics other) {
+        expandedNodes += other.expandedNodes;
+        insertedNodes += other.insertedNodes;
+        decreasedKeys += other.decreasedKeys;
+        collisionChecks += other.collisionChecks;
+        pathLength += other.pathLength;
+        // the day is only as good as its worst leg
+        suboptimalityBound = Math.max(suboptimalityBound, other.suboptimalityBound);
+        budgetExhausted |= other.budgetExhausted;
+    }
+
+    @Override
+    public String toString() {
+        return "expanded=%d inserted=%d decreased=%d moves=%d".formatted(
+                expandedNodes, insertedNodes, decreasedKeys, pathLength);
+    }
+}
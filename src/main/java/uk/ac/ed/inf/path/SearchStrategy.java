@@ -0,0 +1,35 @@
+package uk.ac.ed.inf.path;
+
+/**
+ * How AStarPathFinder searches the lattice
+ */
+public enum SearchStrategy {
+    // single A* search from the origin to the goal circle
+    ASTAR,
+    // A* searches from both ends that meet in the middle, not proven shortest (the ends live on different lattices)
+    BIDIRECTIONAL,
+    // A* over jump points, only the ends of straight runs are queued (JumpPointSearch)
+    JUMP_POINT,
+    // ARA* within the search budget, returns the best path so far and its proven bound (AnytimeSearch)
+    ANYTIME,
+    // IDA* with a transposition table of at most the node cap, memory stays bounded (IterativeDeepeningSearch)
+    IDA_STAR,
+    // HPA*: plans over the entrances of the clusters of the airspace, then searches the lattice within them (ClusterGraph)
+    // not shortest: a few percent longer among open zones, far longer when the shortest path squeezes between zones
+    // less than about two moves apart, which the plans cannot see
+    HIERARCHICAL;
+
+    /**
+     * @param name - strategy name, case-insensitive (eg astar, bidirectional, jump_point, anytime, ida_star, hierarchical)
+     * @return strategy of that name
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static SearchStrategy fromName(String name) {
+        for (SearchStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown search strategy: " + name);
+    }
+}
@@ -0,0 +1,47 @@
+package uk.ac.ed.inf.path;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+/**
+ * Inflates another heuristic by a constant weight (weighted A*).
+ * The search heads for the goal more greedily and expands fewer nodes,
+ * with a consistent base heuristic the path is at most `weight` times longer than the shortest one.
+ */
+public class WeightedHeuristic implements Heuristic {
+    private final Heuristic base;
+    private final double weight;
+
+    /**
+     * @param base - heuristic to inflate
+     * @param weight - inflation factor, at least 1
+     */
+    public WeightedHeuristic(Heuristic base, double weight) {
+        if (!(weight >= 1)) {
+            throw new IllegalArgumentException("Heuristic weight must be at least 1: " + weight);
+        }
+        this.base = base;
+        this.weight = weight;
+    }
+
+    @Override
+    public double estimate(Lattice lattice, long key, LngLat destination) {
+        return weight * base.estimate(lattice, key, destination);
+    }
+
+    @Override
+    public double getSuboptimalityBound() {
+        return weight * base.getSuboptimalityBound();
+    }
+
+    @Override
+    public Heuristic prepare(NamedRegion[] noFlyZones) {
+        Heuristic prepared = base.prepare(noFlyZones);
+        return prepared == base ? this : new WeightedHeuristic(prepared, weight);
+    }
+
+    @Override
+    public String toString() {
+        return "%s x%s".formatted(base, weight);
+    }
+}
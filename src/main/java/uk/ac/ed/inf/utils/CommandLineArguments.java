@@ -0,0 +1,91 @@
+package uk.ac.ed.inf.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Splits the program arguments into positional ones and options
+ * options are of the form `--name` or `--name=value`
+ */
+public class CommandLineArguments {
+    private final List<String> positional = new ArrayList<>();
+    private final HashMap<String, String> options = new HashMap<>();
+
+    public CommandLineArguments(String[] args) {
+        for (String arg : args) {
+            if (arg != null && arg.startsWith("--")) {
+                String option = arg.substring(2);
+                int separator = option.indexOf('=');
+                if (separator == -1) {
+                    options.put(option, "");
+                } else {
+                    options.put(option.substring(0, separator), option.substring(separator + 1));
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+    }
+
+    public List<String> getPositional() {
+        return positional;
+    }
+
+    /**
+     * @param name - option name (without `--`)
+     * @return whether the option was provided
+     */
+    public boolean hasOption(String name) {
+        return options.containsKey(name);
+    }
+
+    /**
+     * @param name - option name (without `--`)
+     * @param defaultValue - returned when the option is missing or has no value
+     * @return value of the option
+     */
+    public String getOption(String name, String defaultValue) {
+        String value = options.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    /**
+     * @param name - option name (without `--`)
+     * @param defaultValue - returned when the option is missing or has no value
+     * @return value of the option as an integer
+     * @throws IllegalArgumentException if the value is not an integer
+     */
+    public int getIntOption(String name, int defaultValue) {
+        String value = getOption(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for --%s: %s".formatted(name, value));
+        }
+    }
+
+    /**
+     * @param name - option name (without `--`)
+     * @param defaultValue - returned when the option is missing or has no value
+     * @return value of the option as a double
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public double getDoubleOption(String name, double defaultValue) {
+        String value = getOption(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for --%s: %s".formatted(name, value));
+        }
+    }
+}
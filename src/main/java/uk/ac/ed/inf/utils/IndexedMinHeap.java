@@ -0,0 +1,213 @@
+package uk.ac.ed.inf.utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int ids (eg dense node ids of a LongKeyTable) with a real decrease-key operation.
+ * Priorities are kept in a double[] indexed by id and every id knows its position in the heap,
+ * so an id is queued at most once and lowering its priority re-sifts it in O(log n).
+ */
+public class IndexedMinHeap {
+    private static final int NOT_QUEUED = -1;
+
+    // ids in heap order
+    private int[] heap;
+    // position of an id in `heap` or NOT_QUEUED
+    private int[] positions;
+    // priority of an id
+    private double[] priorities;
+    private int size;
+
+    public IndexedMinHeap(int expectedIds) {
+        int capacity = Math.max(expectedIds, 8);
+        heap = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, NOT_QUEUED);
+        priorities = new double[capacity];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id - id to check
+     * @return whether the id is currently queued
+     */
+    public boolean contains(int id) {
+        return id < positions.length && positions[id] != NOT_QUEUED;
+    }
+
+    /**
+     * @param id - id of a queued (or previously queued) element
+     * @return its last priority
+     */
+    public double priorityOf(int id) {
+        return priorities[id];
+    }
+
+    /**
+     * Queues an id that is not queued yet
+     * @param id - non-negative id
+     * @param priority - priority (lowest is polled first)
+     */
+    public void insert(int id, double priority) {
+        ensureCapacity(id + 1);
+        priorities[id] = priority;
+        heap[size] = id;
+        positions[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lowers the priority of a queued id
+     * @param id - queued id
+     * @param priority - new priority, not above the current one
+     */
+    public void decreaseKey(int id, double priority) {
+        priorities[id] = priority;
+        siftUp(positions[id]);
+    }
+
+    /**
+     * Queues the id or lowers its priority if it is already queued
+     * @param id - non-negative id
+     * @param priority - priority (lowest is polled first)
+     * @return true if the id was already queued
+     */
+    public boolean insertOrDecrease(int id, double priority) {
+        if (contains(id)) {
+            decreaseKey(id, priority);
+            return true;
+        }
+        insert(id, priority);
+        return false;
+    }
+
+    /**
+     * Queues the id or moves it to a new priority (higher or lower) if it is already queued
+     * @param id - non-negative id
+     * @param priority - priority (lowest is polled first)
+     */
+    public void update(int id, double priority) {
+        if (!contains(id)) {
+            insert(id, priority);
+            return;
+        }
+        double previous = priorities[id];
+        priorities[id] = priority;
+        if (priority < previous) {
+            siftUp(positions[id]);
+        } else {
+            siftDown(positions[id]);
+        }
+    }
+
+    /**
+     * Removes a queued id
+     * @param id - queued id
+     */
+    public void remove(int id) {
+        int position = positions[id];
+        positions[id] = NOT_QUEUED;
+        size--;
+        if (position == size) {
+            return;
+        }
+        // the last id fills the gap and moves whichever way its priority needs
+        int last = heap[size];
+        heap[position] = last;
+        positions[last] = position;
+        siftDown(position);
+        if (heap[position] == last) {
+            siftUp(position);
+        }
+    }
+
+    /**
+     * @return priority of the id on top of the heap
+     */
+    public double peekPriority() {
+        return priorities[heap[0]];
+    }
+
+    /**
+     * Removes the id with the lowest priority
+     * @return removed id
+     */
+    public int poll() {
+        int top = heap[0];
+        positions[top] = NOT_QUEUED;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes all queued ids, priorities are kept
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = NOT_QUEUED;
+        }
+        size = 0;
+    }
+
+    private void ensureCapacity(int ids) {
+        if (ids > positions.length) {
+            int capacity = Math.max(ids, positions.length << 1);
+            int oldCapacity = positions.length;
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, oldCapacity, capacity, NOT_QUEUED);
+            priorities = Arrays.copyOf(priorities, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+        }
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        double priority = priorities[id];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentId = heap[parent];
+            if (priorities[parentId] <= priority) {
+                break;
+            }
+            heap[position] = parentId;
+            positions[parentId] = position;
+            position = parent;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        double priority = priorities[id];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && priorities[heap[right]] < priorities[heap[child]]) {
+                child = right;
+            }
+            int childId = heap[child];
+            if (priority <= priorities[childId]) {
+                break;
+            }
+            heap[position] = childId;
+            positions[childId] = position;
+            position = child;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+}
@@ -7,6 +7,66 @@ import uk.ac.ed.inf.ilp.interfaces.LngLatHandling;
 import java.lang.Math;
 
 public class LngLatHandler implements LngLatHandling {
+    // the drone flies along 16 compass directions, 22.5 degrees apart
+    public static final int DIRECTIONS = 16;
+    private static final double DIRECTION_ANGLE = 22.5;
+    // offsets of a single move along every direction, so that a move costs no trigonometry
+    private static final double[] STEP_LNG = new double[DIRECTIONS];
+    private static final double[] STEP_LAT = new double[DIRECTIONS];
+
+    // most points a batch test takes, one bit each in the result
+    public static final int MAX_BATCH = 64;
+    private static final RegionBatch SCALAR_BATCH = LngLatHandler::inAnyRegionScalar;
+    // vectorised batch test when the Vector API is available, scalar otherwise
+    private static final RegionBatch REGION_BATCH = loadRegionBatch();
+
+    static {
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            // the same expressions nextPosition used per move, so the positions do not change
+            double angle = Math.toRadians(direction * DIRECTION_ANGLE);
+            STEP_LNG[direction] = SystemConstants.DRONE_MOVE_DISTANCE * Math.cos(angle);
+            STEP_LAT[direction] = SystemConstants.DRONE_MOVE_DISTANCE * Math.sin(angle);
+        }
+    }
+
+    /**
+     * @param angle - angle in degrees
+     * @return compass direction (0..15) of the angle or -1 if it is not one of them (eg a hover)
+     */
+    public static int directionOf(double angle) {
+        double direction = angle / DIRECTION_ANGLE;
+        if (direction >= 0 && direction < DIRECTIONS && direction == Math.rint(direction)) {
+            return (int) direction;
+        }
+        return -1;
+    }
+
+    /**
+     * @param direction - 0..15 (angle = direction * 22.5)
+     * @return longitude offset of a move along the direction
+     */
+    public static double stepLng(int direction) {
+        return STEP_LNG[direction];
+    }
+
+    /**
+     * @param direction - 0..15 (angle = direction * 22.5)
+     * @return latitude offset of a move along the direction
+     */
+    public static double stepLat(int direction) {
+        return STEP_LAT[direction];
+    }
+
+    /**
+     * Allocation-free counterpart of nextPosition, the position is a mutable cursor
+     * @param position - {lng, lat}, moved in place
+     * @param direction - 0..15 (angle = direction * 22.5)
+     */
+    public static void step(double[] position, int direction) {
+        position[0] += STEP_LNG[direction];
+        position[1] += STEP_LAT[direction];
+    }
+
     /**
      * get the distance between two positions
      * @param startPosition is where the start is
@@ -35,6 +95,19 @@ public class LngLatHandler implements LngLatHandling {
         return distance <= SystemConstants.DRONE_IS_CLOSE_DISTANCE;
     }
 
+    /**
+     * check if a position given by its coordinates is close to another position
+     * @param lng - longitude of the starting position
+     * @param lat - latitude of the starting position
+     * @param otherPosition is the position to check
+     * @return if the positions are close
+     */
+    public boolean isCloseTo(double lng, double lat, LngLat otherPosition) {
+        double dLat = otherPosition.lat() - lat;
+        double dLng = otherPosition.lng() - lng;
+        return Math.sqrt(dLat * dLat + dLng * dLng) <= SystemConstants.DRONE_IS_CLOSE_DISTANCE;
+    }
+
     /**
      * check if the @position is in the @region (includes the border)
      * basic implementation of ray-caster algorithm
@@ -43,10 +116,96 @@ public class LngLatHandler implements LngLatHandling {
      * @return if the position is inside the region (including the border)
      */
     public boolean isInRegion(LngLat position, NamedRegion region) {
+        return isInRegion(position.lng(), position.lat(), region);
+    }
+
+    /**
+     * @return VectorRegionBatch if it was compiled in (profile `vector`) and jdk.incubator.vector is present,
+     * the scalar batch test otherwise
+     */
+    private static RegionBatch loadRegionBatch() {
+        try {
+            return (RegionBatch) Class.forName("uk.ac.ed.inf.utils.VectorRegionBatch")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR_BATCH;
+        }
+    }
+
+    /**
+     * @return whether inAnyRegion runs on the Vector API
+     */
+    public static boolean isBatchVectorized() {
+        return REGION_BATCH != SCALAR_BATCH;
+    }
+
+    /**
+     * Tests a batch of points against the same regions at once (eg the 16 neighbours of a node),
+     * vectorised across the points when the Vector API is available
+     * @param xs - longitudes of the points
+     * @param ys - latitudes of the points
+     * @param count - number of points, at most MAX_BATCH
+     * @param regions - regions to test against
+     * @return bit i is set if point i is in any of the regions
+     */
+    public long inAnyRegion(double[] xs, double[] ys, int count, PreparedRegion[] regions) {
+        if (count < 0 || count > MAX_BATCH) {
+            throw new IllegalArgumentException("Batch of " + count + " points, at most " + MAX_BATCH);
+        }
+        return REGION_BATCH.inAnyRegion(xs, ys, count, regions);
+    }
+
+    /**
+     * inAnyRegion point after point, the fallback without the Vector API
+     * @param xs - longitudes of the points
+     * @param ys - latitudes of the points
+     * @param count - number of points, at most MAX_BATCH
+     * @param regions - regions to test against
+     * @return bit i is set if point i is in any of the regions
+     */
+    public static long inAnyRegionScalar(double[] xs, double[] ys, int count, PreparedRegion[] regions) {
+        long result = 0;
+        for (int i = 0; i < count; i++) {
+            for (PreparedRegion region : regions) {
+                if (region.contains(xs[i], ys[i])) {
+                    result |= 1L << i;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * check if the @position is in the prepared @region, for regions tested over and over
+     * @param position to check
+     * @param region prepared once from a NamedRegion
+     * @return if the position is inside the region
+     */
+    public boolean isInRegion(LngLat position, PreparedRegion region) {
+        return region.contains(position.lng(), position.lat());
+    }
+
+    /**
+     * @param x - longitude of the position
+     * @param y - latitude of the position
+     * @param region prepared once from a NamedRegion
+     * @return if the position is inside the region
+     */
+    public boolean isInRegion(double x, double y, PreparedRegion region) {
+        return region.contains(x, y);
+    }
+
+    /**
+     * check if the position given by its coordinates is in the @region (includes the border)
+     * @param x - longitude of the position
+     * @param y - latitude of the position
+     * @param region as a closed polygon
+     * @return if the position is inside the region (including the border)
+     */
+    public boolean isInRegion(double x, double y, NamedRegion region) {
         final LngLat[] vertices = region.vertices();
         int intersectionCounter = 0;
-        final double x = position.lng();
-        final double y = position.lat();
         for (int i=0; i < vertices.length; i++) {
             final LngLat vertex = vertices[i];
             final double x1 = vertex.lng();
@@ -68,11 +227,16 @@ public class LngLatHandler implements LngLatHandling {
 
     /**
      * find the next position if an @angle is applied to a @startPosition
+     * the 16 compass directions are looked up, other angles are computed
      * @param startPosition is where the start is
      * @param angle is the angle to use in degrees
      * @return the new position after the angle is used
      */
     public LngLat nextPosition(LngLat startPosition, double angle) {
+        int direction = directionOf(angle);
+        if (direction != -1) {
+            return new LngLat(startPosition.lng() + STEP_LNG[direction], startPosition.lat() + STEP_LAT[direction]);
+        }
         double angleRounded = Math.toRadians(22.5 * angle / 22.5);
         double y = startPosition.lat();
         double x = startPosition.lng();
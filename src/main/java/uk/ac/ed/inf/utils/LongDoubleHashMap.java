@@ -0,0 +1,59 @@
+package uk.ac.ed.inf.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from long keys to double values (no boxing, no entry objects)
+ * entries keep their dense id for the lifetime of the map, see LongKeyTable
+ */
+public class LongDoubleHashMap extends LongKeyTable {
+    private double[] values;
+
+    public LongDoubleHashMap(int expectedSize) {
+        super(expectedSize);
+        values = new double[keys.length];
+    }
+
+    @Override
+    protected void resizeValues(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * Inserts or overwrites the value of a key
+     * @param key - key
+     * @param value - value
+     * @return id of the entry
+     */
+    public int put(long key, double value) {
+        int id = insert(key);
+        values[id] = value;
+        return id;
+    }
+
+    /**
+     * @param key - key to look up
+     * @param defaultValue - returned if the key is not in the map
+     * @return value of the key
+     */
+    public double get(long key, double defaultValue) {
+        int id = indexOf(key);
+        return id == -1 ? defaultValue : values[id];
+    }
+
+    /**
+     * @param id - id of an entry
+     * @return value of the entry
+     */
+    public double valueAt(int id) {
+        return values[id];
+    }
+
+    /**
+     * @param id - id of an entry
+     * @param value - new value of the entry
+     */
+    public void setValueAt(int id, double value) {
+        values[id] = value;
+    }
+}
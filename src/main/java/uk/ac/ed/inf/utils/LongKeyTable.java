@@ -0,0 +1,137 @@
+package uk.ac.ed.inf.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing (linear probing) index of long keys, base of the primitive maps used by the path search.
+ * Every key gets a dense id in insertion order, ids never change (only the probe table is rebuilt
+ * when it grows), so data about a key can be kept in parallel arrays or bitsets indexed by its id.
+ * Keys cannot be removed, the whole table is dropped once a search is over.
+ */
+public abstract class LongKeyTable {
+    private static final int EMPTY = -1;
+    // the probe table is kept at most half full
+    private static final int LOAD_FACTOR_SHIFT = 1;
+
+    // ids of the entries in probe order, EMPTY for free slots
+    private int[] slots;
+    private int mask;
+    protected long[] keys;
+    protected int size;
+
+    protected LongKeyTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) - 1) << 1;
+        slots = new int[capacity << LOAD_FACTOR_SHIFT];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        keys = new long[capacity];
+    }
+
+    /**
+     * called whenever the entry arrays grow, subclasses grow their value arrays to the same capacity
+     * @param capacity - new capacity
+     */
+    protected abstract void resizeValues(int capacity);
+
+    /**
+     * spreads the bits of the key (murmur3 finaliser)
+     * @param key - key to hash
+     * @return hash
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * @param key - key to look up
+     * @return id of the key or -1 if it is not in the table
+     */
+    public int indexOf(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                return -1;
+            }
+            if (keys[id] == key) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @param key - key to look up or insert
+     * @return id of the key, new keys get the next free id
+     */
+    protected int insert(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                break;
+            }
+            if (keys[id] == key) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = size++;
+        if (id == keys.length) {
+            grow();
+            // probe table was rebuilt, find the free slot again
+            slot = hash(key) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        keys[id] = key;
+        slots[slot] = id;
+        return id;
+    }
+
+    private void grow() {
+        int capacity = keys.length << 1;
+        keys = Arrays.copyOf(keys, capacity);
+        resizeValues(capacity);
+        slots = new int[capacity << LOAD_FACTOR_SHIFT];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        // re-insert the existing entries, their ids stay the same
+        for (int id = 0; id < size - 1; id++) {
+            int slot = hash(keys[id]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    /**
+     * @param key - key to look up
+     * @return whether the key is in the table
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * @param id - id of an entry
+     * @return key of the entry
+     */
+    public long keyAt(int id) {
+        return keys[id];
+    }
+
+    /**
+     * @return number of entries (ids are 0..size-1)
+     */
+    public int size() {
+        return size;
+    }
+}
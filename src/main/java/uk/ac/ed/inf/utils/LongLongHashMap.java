@@ -0,0 +1,59 @@
+package uk.ac.ed.inf.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from long keys to long values (no boxing, no entry objects)
+ * entries keep their dense id for the lifetime of the map, see LongKeyTable
+ */
+public class LongLongHashMap extends LongKeyTable {
+    private long[] values;
+
+    public LongLongHashMap(int expectedSize) {
+        super(expectedSize);
+        values = new long[keys.length];
+    }
+
+    @Override
+    protected void resizeValues(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * Inserts or overwrites the value of a key
+     * @param key - key
+     * @param value - value
+     * @return id of the entry
+     */
+    public int put(long key, long value) {
+        int id = insert(key);
+        values[id] = value;
+        return id;
+    }
+
+    /**
+     * @param key - key to look up
+     * @param defaultValue - returned if the key is not in the map
+     * @return value of the key
+     */
+    public long get(long key, long defaultValue) {
+        int id = indexOf(key);
+        return id == -1 ? defaultValue : values[id];
+    }
+
+    /**
+     * @param id - id of an entry
+     * @return value of the entry
+     */
+    public long valueAt(int id) {
+        return values[id];
+    }
+
+    /**
+     * @param id - id of an entry
+     * @param value - new value of the entry
+     */
+    public void setValueAt(int id, long value) {
+        values[id] = value;
+    }
+}
@@ -0,0 +1,103 @@
+package uk.ac.ed.inf.utils;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+/**
+ * Region with its edges prepared once for repeated point-in-region tests.
+ * The vertices are kept in flat arrays with the first one repeated at the end (no modulo per edge),
+ * the inverse slope (dx / dy) of every edge is computed once (no division per edge)
+ * and points outside the bounding box are rejected before the ray-cast.
+ * The result is the same as LngLatHandler.isInRegion on the region up to rounding at the edges
+ * (the precomputed slope rounds differently from the division per edge, so points within rounding error
+ * of an edge can land on either side), except for points outside the bounding box level with a vertex,
+ * which the plain ray-cast can wrongly count as inside.
+ */
+public final class PreparedRegion {
+    private final NamedRegion region;
+    final double minX;
+    final double minY;
+    final double maxX;
+    final double maxY;
+    // vertices, the first one is repeated at the end to close the polygon
+    final double[] xs;
+    final double[] ys;
+    // dx / dy of every edge
+    final double[] inverseSlopes;
+
+    /**
+     * @param region - region to prepare
+     */
+    public PreparedRegion(NamedRegion region) {
+        this.region = region;
+        LngLat[] vertices = region.vertices();
+        int n = vertices.length;
+        // a region without vertices contains nothing
+        xs = new double[n == 0 ? 0 : n + 1];
+        ys = new double[xs.length];
+        inverseSlopes = new double[n];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = vertices[i % n].lng();
+            ys[i] = vertices[i % n].lat();
+        }
+        for (int i = 0; i < n; i++) {
+            inverseSlopes[i] = (xs[i + 1] - xs[i]) / (ys[i + 1] - ys[i]);
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * @param regions - regions to prepare
+     * @return the prepared regions, in the same order
+     */
+    public static PreparedRegion[] prepare(NamedRegion[] regions) {
+        PreparedRegion[] prepared = new PreparedRegion[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            prepared[i] = new PreparedRegion(regions[i]);
+        }
+        return prepared;
+    }
+
+    /**
+     * @param x - longitude of the point
+     * @param y - latitude of the point
+     * @return whether the point is in the region
+     */
+    public boolean contains(double x, double y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        // same ray-cast as LngLatHandler.isInRegion
+        boolean inside = false;
+        for (int i = 0; i < inverseSlopes.length; i++) {
+            double y1 = ys[i];
+            if (((y < y1) != (y <= ys[i + 1])) && (x < inverseSlopes[i] * (y - y1) + xs[i])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * @return region this was prepared from
+     */
+    public NamedRegion getRegion() {
+        return region;
+    }
+
+    /**
+     * @return bounding box of the region as minX, minY, maxX, maxY (infinities for a region without vertices)
+     */
+    public double[] getBoundingBox() {
+        return new double[] {minX, minY, maxX, maxY};
+    }
+}
@@ -0,0 +1,15 @@
+package uk.ac.ed.inf.utils;
+
+/**
+ * Point-in-regions test of a batch of points (structure of arrays), see LngLatHandler.inAnyRegion
+ */
+interface RegionBatch {
+    /**
+     * @param xs - longitudes of the points
+     * @param ys - latitudes of the points
+     * @param count - number of points, at most LngLatHandler.MAX_BATCH
+     * @param regions - regions to test against
+     * @return bit i is set if point i is in any of the regions
+     */
+    long inAnyRegion(double[] xs, double[] ys, int count, PreparedRegion[] regions);
+}
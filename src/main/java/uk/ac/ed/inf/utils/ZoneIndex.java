@@ -0,0 +1,149 @@
+package uk.ac.ed.inf.utils;
+
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Arrays;
+
+/**
+ * Prepared set of regions for repeated point-in-region tests (eg the noFlyZones of the path search).
+ * The bounding boxes of the regions are bucketed into a uniform grid over their union,
+ * a point is only ray-cast against the regions whose box contains it,
+ * every region is a PreparedRegion (flat arrays, slopes computed once).
+ * The result is the same as PreparedRegion.contains on any of the regions.
+ */
+public class ZoneIndex implements ZoneLookup {
+    // the grid has about this many cells per region along each axis
+    private static final int CELLS_PER_REGION = 4;
+    private static final int MAX_CELLS_PER_AXIS = 256;
+
+    private final PreparedRegion[] zones;
+    // grid over the union of the bounding boxes
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+    // ids of the zones whose bounding box overlaps a cell, indexed by row * columns + column
+    private final int[][] cells;
+
+    /**
+     * @param regions - regions to index
+     */
+    public ZoneIndex(NamedRegion[] regions) {
+        this(PreparedRegion.prepare(regions));
+    }
+
+    /**
+     * @param regions - regions to index, already prepared (eg shared with other lookups)
+     */
+    public ZoneIndex(PreparedRegion[] regions) {
+        zones = regions.clone();
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < zones.length; i++) {
+            minX = Math.min(minX, zones[i].minX);
+            minY = Math.min(minY, zones[i].minY);
+            maxX = Math.max(maxX, zones[i].maxX);
+            maxY = Math.max(maxY, zones[i].maxY);
+        }
+        if (zones.length == 0) {
+            this.minX = this.minY = 0;
+            cellWidth = cellHeight = 1;
+            columns = rows = 0;
+            cells = new int[0][];
+            return;
+        }
+        int cellsPerAxis = Math.min(MAX_CELLS_PER_AXIS, Math.max(1,
+                (int) Math.ceil(Math.sqrt(zones.length) * CELLS_PER_REGION)));
+        this.minX = minX;
+        this.minY = minY;
+        columns = cellsPerAxis;
+        rows = cellsPerAxis;
+        // a degenerate (flat) extent still gets a non-zero cell size
+        cellWidth = Math.max(maxX - minX, Double.MIN_NORMAL) / columns;
+        cellHeight = Math.max(maxY - minY, Double.MIN_NORMAL) / rows;
+
+        int[] counts = new int[columns * rows];
+        for (PreparedRegion zone : zones) {
+            forEachCell(zone, cell -> counts[cell]++);
+        }
+        cells = new int[columns * rows][];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = new int[counts[cell]];
+        }
+        Arrays.fill(counts, 0);
+        for (int id = 0; id < zones.length; id++) {
+            final int zoneId = id;
+            forEachCell(zones[id], cell -> cells[cell][counts[cell]++] = zoneId);
+        }
+    }
+
+    private interface CellConsumer {
+        void accept(int cell);
+    }
+
+    /**
+     * calls the consumer with every grid cell the bounding box of the zone overlaps
+     */
+    private void forEachCell(PreparedRegion zone, CellConsumer consumer) {
+        int fromColumn = column(zone.minX), toColumn = column(zone.maxX);
+        int fromRow = row(zone.minY), toRow = row(zone.maxY);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                consumer.accept(row * columns + column);
+            }
+        }
+    }
+
+    private int column(double x) {
+        return Math.min(columns - 1, Math.max(0, (int) ((x - minX) / cellWidth)));
+    }
+
+    private int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) ((y - minY) / cellHeight)));
+    }
+
+    /**
+     * @param x - longitude of the point
+     * @param y - latitude of the point
+     * @return whether the point is in any of the regions
+     */
+    @Override
+    public boolean contains(double x, double y) {
+        if (zones.length == 0) {
+            return false;
+        }
+        double column = (x - minX) / cellWidth;
+        double row = (y - minY) / cellHeight;
+        // outside the grid (or NaN), so outside every bounding box
+        if (!(column >= 0 && column <= columns && row >= 0 && row <= rows)) {
+            return false;
+        }
+        for (int zoneId : cells[Math.min(rows - 1, (int) row) * columns + Math.min(columns - 1, (int) column)]) {
+            if (zones[zoneId].contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public double[] getBoundingBoxes() {
+        double[] boxes = new double[zones.length * 4];
+        for (int i = 0; i < zones.length; i++) {
+            boxes[i * 4] = zones[i].minX;
+            boxes[i * 4 + 1] = zones[i].minY;
+            boxes[i * 4 + 2] = zones[i].maxX;
+            boxes[i * 4 + 3] = zones[i].maxY;
+        }
+        return boxes;
+    }
+
+    /**
+     * @return number of indexed regions
+     */
+    public int size() {
+        return zones.length;
+    }
+}
@@ -0,0 +1,18 @@
+package uk.ac.ed.inf.utils;
+
+/**
+ * Point-in-zones test prepared from a set of regions
+ */
+public interface ZoneLookup {
+    /**
+     * @param x - longitude of the point
+     * @param y - latitude of the point
+     * @return whether the point is in any of the regions
+     */
+    boolean contains(double x, double y);
+
+    /**
+     * @return bounding boxes of the regions, flattened as minX, minY, maxX, maxY per region
+     */
+    double[] getBoundingBoxes();
+}
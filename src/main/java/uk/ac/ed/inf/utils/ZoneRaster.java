@@ -0,0 +1,431 @@
+package uk.ac.ed.inf.utils;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Occupancy bitmap of the noFlyZones (and the centralArea) over the operating bounding box.
+ * Cells are `resolution` wide (DRONE_MOVE_DISTANCE for the path search), so most checks are a single bit lookup:
+ * a cell no region edge passes through is either wholly inside or wholly outside and its bit says which,
+ * cells an edge passes through are marked as edge cells and fall back to the exact test (ZoneIndex).
+ * Built once per zone update.
+ * The cells not covered by the noFlyZones are also labelled by connected component (cells a single drone move
+ * can get across are connected), so a destination the drone cannot get close to is rejected without a search.
+ * Edge cells only count as covered when the zones provably cover all of them (see isCovered),
+ * so zones that meet still seal off an area while a gap between zones, however narrow, stays open.
+ */
+public class ZoneRaster implements ZoneLookup {
+    /**
+     * Bitmap of one set of regions
+     */
+    private static class Layer {
+        final NamedRegion[] regions;
+        final ZoneIndex exact;
+        // cells wholly inside a region
+        final long[] inside;
+        // cells a region edge passes through
+        final long[] edge;
+
+        Layer(NamedRegion[] regions, int cells) {
+            this.regions = regions;
+            this.exact = new ZoneIndex(regions);
+            this.inside = new long[(cells + 63) >>> 6];
+            this.edge = new long[inside.length];
+        }
+    }
+
+    private final double minX;
+    private final double minY;
+    private final double resolution;
+    private final int columns;
+    private final int rows;
+    private final Layer noFlyZones;
+    private final Layer centralArea;
+    // connected component of every cell, BLOCKED for cells wholly inside a noFlyZone
+    // the border of the bitmap is free, so OUTSIDE is the component of everything around the zones
+    private final int[] components;
+    private static final int BLOCKED = -1;
+    private static final int OUTSIDE = 0;
+
+    /**
+     * @param noFlyZones - regions the drone cannot enter
+     * @param centralArea - central area (can be null)
+     * @param resolution - size of a cell in degrees
+     */
+    public ZoneRaster(NamedRegion[] noFlyZones, NamedRegion centralArea, double resolution) {
+        NamedRegion[] centralAreas = centralArea == null ? new NamedRegion[] {} : new NamedRegion[] {centralArea};
+        // operating bounding box: every vertex, padded by a cell
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (NamedRegion[] regions : new NamedRegion[][] {noFlyZones, centralAreas}) {
+            for (NamedRegion region : regions) {
+                for (LngLat vertex : region.vertices()) {
+                    minX = Math.min(minX, vertex.lng());
+                    minY = Math.min(minY, vertex.lat());
+                    maxX = Math.max(maxX, vertex.lng());
+                    maxY = Math.max(maxY, vertex.lat());
+                }
+            }
+        }
+        this.resolution = resolution;
+        if (minX > maxX) {
+            // nothing to rasterise
+            this.minX = this.minY = 0;
+            columns = rows = 0;
+        } else {
+            this.minX = minX - resolution;
+            this.minY = minY - resolution;
+            columns = (int) Math.ceil((maxX - minX) / resolution) + 2;
+            rows = (int) Math.ceil((maxY - minY) / resolution) + 2;
+        }
+        this.noFlyZones = rasterise(noFlyZones);
+        this.centralArea = rasterise(centralAreas);
+        this.components = labelComponents();
+    }
+
+    private Layer rasterise(NamedRegion[] regions) {
+        Layer layer = new Layer(regions, columns * rows);
+        for (NamedRegion region : regions) {
+            LngLat[] vertices = region.vertices();
+            for (int i = 0; i < vertices.length; i++) {
+                markEdge(layer.edge, vertices[i], vertices[(i + 1) % vertices.length]);
+            }
+        }
+        // cells without an edge are classified by their centre
+        for (int row = 0; row < rows; row++) {
+            double y = minY + (row + 0.5) * resolution;
+            for (int column = 0; column < columns; column++) {
+                int cell = row * columns + column;
+                if (!isSet(layer.edge, cell) && layer.exact.contains(minX + (column + 0.5) * resolution, y)) {
+                    layer.inside[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+        return layer;
+    }
+
+    /**
+     * marks all cells the segment passes through (and their direct neighbors along the rows, against rounding)
+     */
+    private void markEdge(long[] edge, LngLat from, LngLat to) {
+        double x1 = from.lng(), y1 = from.lat(), x2 = to.lng(), y2 = to.lat();
+        double bottom = Math.min(y1, y2), top = Math.max(y1, y2);
+        int fromRow = Math.max(0, cellRow(bottom) - 1);
+        int toRow = Math.min(rows - 1, cellRow(top) + 1);
+        for (int row = fromRow; row <= toRow; row++) {
+            // part of the segment within the row
+            double bandBottom = Math.max(bottom, minY + row * resolution);
+            double bandTop = Math.min(top, minY + (row + 1) * resolution);
+            double left, right;
+            if (y1 == y2) {
+                left = Math.min(x1, x2);
+                right = Math.max(x1, x2);
+            } else {
+                if (bandBottom > bandTop) {
+                    // the segment does not reach this row, it is only a neighbor
+                    bandBottom = bandTop = Math.max(bottom, Math.min(top, minY + (row + 0.5) * resolution));
+                }
+                double xBottom = x1 + (x2 - x1) * (bandBottom - y1) / (y2 - y1);
+                double xTop = x1 + (x2 - x1) * (bandTop - y1) / (y2 - y1);
+                left = Math.min(xBottom, xTop);
+                right = Math.max(xBottom, xTop);
+            }
+            int fromColumn = Math.max(0, cellColumn(left) - 1);
+            int toColumn = Math.min(columns - 1, cellColumn(right) + 1);
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int cell = row * columns + column;
+                edge[cell >>> 6] |= 1L << cell;
+            }
+        }
+    }
+
+    /**
+     * flood fill of the free cells, a move connects cells that are less than DRONE_MOVE_DISTANCE apart
+     */
+    private int[] labelComponents() {
+        int[] labels = new int[columns * rows];
+        Arrays.fill(labels, Integer.MAX_VALUE);
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (isSet(noFlyZones.inside, cell) || isSet(noFlyZones.edge, cell) && isCovered(cell)) {
+                labels[cell] = BLOCKED;
+            }
+        }
+        // offsets of the cells a move can reach
+        int reach = (int) Math.ceil(SystemConstants.DRONE_MOVE_DISTANCE / resolution);
+        double reachSquared = Math.pow(SystemConstants.DRONE_MOVE_DISTANCE / resolution, 2);
+        List<int[]> offsets = new ArrayList<>();
+        for (int dx = -reach - 1; dx <= reach + 1; dx++) {
+            for (int dy = -reach - 1; dy <= reach + 1; dy++) {
+                double gapX = Math.max(Math.abs(dx) - 1, 0), gapY = Math.max(Math.abs(dy) - 1, 0);
+                if ((dx != 0 || dy != 0) && gapX * gapX + gapY * gapY <= reachSquared) {
+                    offsets.add(new int[] {dx, dy});
+                }
+            }
+        }
+        int[] queue = new int[labels.length];
+        int next = OUTSIDE;
+        for (int start = 0; start < labels.length; start++) {
+            if (labels[start] != Integer.MAX_VALUE) {
+                continue;
+            }
+            int head = 0, tail = 0;
+            labels[start] = next;
+            queue[tail++] = start;
+            while (head < tail) {
+                int cell = queue[head++];
+                int column = cell % columns, row = cell / columns;
+                for (int[] offset : offsets) {
+                    int neighborColumn = column + offset[0], neighborRow = row + offset[1];
+                    if (neighborColumn < 0 || neighborColumn >= columns || neighborRow < 0 || neighborRow >= rows) {
+                        continue;
+                    }
+                    int neighbor = neighborRow * columns + neighborColumn;
+                    if (labels[neighbor] == Integer.MAX_VALUE) {
+                        labels[neighbor] = next;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            next++;
+        }
+        return labels;
+    }
+
+    /**
+     * whether an edge cell is wholly covered by the zones (eg where two zones meet)
+     */
+    private boolean isCovered(int cell) {
+        double left = minX + (cell % columns) * resolution, bottom = minY + (cell / columns) * resolution;
+        return isCovered(noFlyZones.regions, left, bottom, left + resolution, bottom + resolution);
+    }
+
+    /**
+     * whether the regions together provably cover the whole box.
+     * The box is cut into vertical slabs at every x where the order of the region edges along a vertical line
+     * can change (vertices, crossings of two edges, crossings of the top and bottom of the box),
+     * within a slab the regions cover the same share of every vertical line, so one line per slab is checked
+     * @param regions - regions that may cover the box
+     * @param left - west side of the box
+     * @param bottom - south side of the box
+     * @param right - east side of the box
+     * @param top - north side of the box
+     * @return true if no point of the box lies outside all of the regions
+     */
+    public static boolean isCovered(NamedRegion[] regions, double left, double bottom, double right, double top) {
+        // edges of the regions reaching into the box, as x1, y1, x2, y2 with x1 <= x2
+        List<double[]> edges = new ArrayList<>();
+        List<Integer> firstEdges = new ArrayList<>();
+        for (NamedRegion region : regions) {
+            LngLat[] vertices = region.vertices();
+            double regionMinX = Double.POSITIVE_INFINITY, regionMinY = Double.POSITIVE_INFINITY;
+            double regionMaxX = Double.NEGATIVE_INFINITY, regionMaxY = Double.NEGATIVE_INFINITY;
+            for (LngLat vertex : vertices) {
+                regionMinX = Math.min(regionMinX, vertex.lng());
+                regionMinY = Math.min(regionMinY, vertex.lat());
+                regionMaxX = Math.max(regionMaxX, vertex.lng());
+                regionMaxY = Math.max(regionMaxY, vertex.lat());
+            }
+            if (regionMinX > right || regionMaxX < left || regionMinY > top || regionMaxY < bottom) {
+                continue;
+            }
+            firstEdges.add(edges.size());
+            for (int i = 0; i < vertices.length; i++) {
+                LngLat from = vertices[i], to = vertices[(i + 1) % vertices.length];
+                // the same edge of two zones is always evaluated from the same end, so they meet exactly
+                edges.add(from.lng() <= to.lng()
+                        ? new double[] {from.lng(), from.lat(), to.lng(), to.lat()}
+                        : new double[] {to.lng(), to.lat(), from.lng(), from.lat()});
+            }
+        }
+        if (edges.isEmpty()) {
+            return false;
+        }
+        firstEdges.add(edges.size());
+        List<Double> cuts = new ArrayList<>(List.of(left, right));
+        for (int i = 0; i < edges.size(); i++) {
+            double[] edge = edges.get(i);
+            addCut(cuts, edge[0], left, right);
+            addCut(cuts, edge[2], left, right);
+            if (edge[1] != edge[3]) {
+                addCut(cuts, edge[0] + (edge[2] - edge[0]) * (bottom - edge[1]) / (edge[3] - edge[1]), left, right);
+                addCut(cuts, edge[0] + (edge[2] - edge[0]) * (top - edge[1]) / (edge[3] - edge[1]), left, right);
+            }
+            for (int j = i + 1; j < edges.size(); j++) {
+                addCut(cuts, crossingX(edge, edges.get(j)), left, right);
+            }
+        }
+        cuts.sort(null);
+        for (int i = 1; i < cuts.size(); i++) {
+            double x = (cuts.get(i - 1) + cuts.get(i)) / 2;
+            if (cuts.get(i - 1) < cuts.get(i) && !isCoveredAlong(x, bottom, top, edges, firstEdges)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addCut(List<Double> cuts, double x, double left, double right) {
+        if (x > left && x < right) {
+            cuts.add(x);
+        }
+    }
+
+    /**
+     * @return x of the crossing of the lines through the two edges (NaN if they are parallel)
+     */
+    private static double crossingX(double[] a, double[] b) {
+        double ax = a[2] - a[0], ay = a[3] - a[1], bx = b[2] - b[0], by = b[3] - b[1];
+        double denominator = ax * by - ay * bx;
+        if (denominator == 0) {
+            return Double.NaN;
+        }
+        double t = ((b[0] - a[0]) * by - (b[1] - a[1]) * bx) / denominator;
+        return a[0] + t * ax;
+    }
+
+    /**
+     * whether the zones cover the vertical line at x from bottom to top,
+     * the stretches inside a zone are found with the same even-odd rule as the ray-cast
+     * @param firstEdges - index of the first edge of every zone, followed by the number of edges
+     */
+    private static boolean isCoveredAlong(double x, double bottom, double top, List<double[]> edges,
+                                          List<Integer> firstEdges) {
+        List<double[]> stretches = new ArrayList<>();
+        for (int zone = 0; zone + 1 < firstEdges.size(); zone++) {
+            List<Double> crossings = new ArrayList<>();
+            for (double[] edge : edges.subList(firstEdges.get(zone), firstEdges.get(zone + 1))) {
+                if (edge[0] < x && x < edge[2]) {
+                    crossings.add(edge[1] + (edge[3] - edge[1]) * (x - edge[0]) / (edge[2] - edge[0]));
+                }
+            }
+            crossings.sort(null);
+            for (int i = 0; i + 1 < crossings.size(); i += 2) {
+                stretches.add(new double[] {crossings.get(i), crossings.get(i + 1)});
+            }
+        }
+        stretches.sort(Comparator.comparingDouble(stretch -> stretch[0]));
+        double reached = bottom;
+        for (double[] stretch : stretches) {
+            if (reached >= top) {
+                break;
+            }
+            if (stretch[0] > reached) {
+                return false;
+            }
+            reached = Math.max(reached, stretch[1]);
+        }
+        return reached >= top;
+    }
+
+    /**
+     * @return component of the cell (OUTSIDE beyond the bitmap)
+     */
+    private int componentAt(int column, int row) {
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            return OUTSIDE;
+        }
+        return components[row * columns + column];
+    }
+
+    /**
+     * Conservative reachability check: false only if no sequence of moves from the origin avoiding the
+     * noFlyZones can end within `radius` of the destination
+     * @param origin - start of the flight
+     * @param destination - goal point
+     * @param radius - how close to the destination the flight has to get
+     * @return whether the destination may be reachable
+     */
+    public boolean isReachable(LngLat origin, LngLat destination, double radius) {
+        int from = componentAt(cellColumn(origin.lng()), cellRow(origin.lat()));
+        if (from == BLOCKED) {
+            // deep inside a zone, nothing can be said
+            return true;
+        }
+        for (int row = cellRow(destination.lat() - radius); row <= cellRow(destination.lat() + radius); row++) {
+            for (int column = cellColumn(destination.lng() - radius); column <= cellColumn(destination.lng() + radius); column++) {
+                if (componentAt(column, row) == from) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of connected components of the cells outside the noFlyZones
+     */
+    public int getComponentCount() {
+        return Arrays.stream(components).max().orElse(OUTSIDE) + 1;
+    }
+
+    private int cellColumn(double x) {
+        return (int) Math.floor((x - minX) / resolution);
+    }
+
+    private int cellRow(double y) {
+        return (int) Math.floor((y - minY) / resolution);
+    }
+
+    private static boolean isSet(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private boolean contains(Layer layer, double x, double y) {
+        double column = (x - minX) / resolution;
+        double row = (y - minY) / resolution;
+        // outside the operating bounding box (or NaN), so outside every region
+        if (!(column >= 0 && column < columns && row >= 0 && row < rows)) {
+            return false;
+        }
+        int cell = (int) row * columns + (int) column;
+        if (isSet(layer.edge, cell)) {
+            return layer.exact.contains(x, y);
+        }
+        return isSet(layer.inside, cell);
+    }
+
+    /**
+     * @param x - longitude of the point
+     * @param y - latitude of the point
+     * @return whether the point is in any of the noFlyZones
+     */
+    @Override
+    public boolean contains(double x, double y) {
+        return contains(noFlyZones, x, y);
+    }
+
+    @Override
+    public double[] getBoundingBoxes() {
+        return noFlyZones.exact.getBoundingBoxes();
+    }
+
+    /**
+     * @param x - longitude of the point
+     * @param y - latitude of the point
+     * @return whether the point is in the central area
+     */
+    public boolean isInCentralArea(double x, double y) {
+        return contains(centralArea, x, y);
+    }
+
+    /**
+     * @return size of the bitmaps in bytes (the exact fallback is not included)
+     */
+    public long getMemoryBytes() {
+        return 8L * (noFlyZones.inside.length + noFlyZones.edge.length
+                + centralArea.inside.length + centralArea.edge.length);
+    }
+
+    /**
+     * @return number of cells along the longitude and the latitude
+     */
+    public int[] getDimensions() {
+        return new int[] {columns, rows};
+    }
+}
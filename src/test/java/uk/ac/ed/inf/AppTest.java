@@ -1,16 +1,25 @@
 package uk.ac.ed.inf;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import uk.ac.ed.inf.ilp.constant.OrderStatus;
+import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.*;
+import uk.ac.ed.inf.path.FlightPathBinaryReader;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -65,6 +74,16 @@ public class AppTest extends TestCase {
         }
     }
 
+    public void testOptionsAreNotCountedAsArguments() {
+        String[] argList = new String[] {"2023-12-31", "--parallel=4"};
+        try {
+            mainLoop(argList);
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("Invalid number of arguments"));
+        }
+    }
+
     public void testAppProducesThreeFiles() throws Exception {
         // fetch orders (valid1, invalid, valid2)
         // mainLoop(orders)
@@ -181,6 +200,63 @@ public class AppTest extends TestCase {
         server.stop();
     }
 
+    public void testBinaryFlightPathConvertsToFlightPath() throws Exception {
+        // a HashMap of these orderNos iterates them backwards, the third order is invalid
+        String date = "2023-12-31";
+        LngLat[] locations = {
+                new LngLat(-3.1912869215011597, 55.945535152517735),
+                new LngLat(-3.202541470527649, 55.943284737579376),
+                new LngLat(-3.179798972064253, 55.939884084483)
+        };
+        Restaurant[] restaurants = new Restaurant[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            restaurants[i] = new Restaurant("Restaurant " + i, locations[i], DayOfWeek.values(),
+                    new Pizza[] {new Pizza("Pizza " + i, 1000)});
+        }
+        Order[] orders = new Order[6];
+        for (int i = 0; i < orders.length; i++) {
+            Restaurant restaurant = restaurants[i % restaurants.length];
+            orders[i] = new Order("ORDR" + (i + 1), LocalDate.parse(date), OrderStatus.UNDEFINED,
+                    OrderValidationCode.UNDEFINED, SystemConstants.ORDER_CHARGE_IN_PENCE + 1000,
+                    i == 2 ? new Pizza[] {} : restaurant.menu(), OrderUtils.getValidPaymentDetails());
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        int port = 8005;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/isAlive", "true");
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.getContextToServeDataOnUrl("/restaurants", mapper.writeValueAsString(restaurants));
+        server.getContextToServeDataOnUrl("/orders/" + date, mapper.writeValueAsString(orders));
+        server.start();
+
+        String dir = "resultfiles";
+        String pathFileName = dir + "/flightpath-" + date + ".json";
+        String binaryFileName = dir + "/flightpath-" + date + ".bin";
+        main(new String[] {date, "http://localhost:" + port, "--binary-flightpath"});
+        server.stop();
+
+        // the binary file converts back to the flightpath file of the same run, orders in the order of the day
+        ByteArrayOutputStream converted = new ByteArrayOutputStream();
+        FlightPathBinaryReader.convertToJson(Files.newInputStream(Path.of(binaryFileName)), converted);
+        byte[] json = Files.readAllBytes(Path.of(pathFileName));
+        List<String> orderNos = new ArrayList<>();
+        for (JsonNode move : mapper.readTree(json)) {
+            if (!orderNos.contains(move.get("orderNo").asText())) {
+                orderNos.add(move.get("orderNo").asText());
+            }
+        }
+        assertEquals(List.of("ORDR1", "ORDR2", "ORDR4", "ORDR5", "ORDR6"), orderNos);
+        assertTrue(Arrays.equals(json, converted.toByteArray()));
+
+        for (String name : new String[] {"deliveries-", "flightpath-", "drone-"}) {
+            FlightPlannerUtils.deleteFile(dir + "/" + name + date + ".json");
+        }
+        FlightPlannerUtils.deleteFile(binaryFileName);
+    }
+
     public void testAppRunsUnder60secsForADay() {
         int maxDurationSec = 60;
         String baseUrl = "https://ilp-rest.azurewebsites.net";
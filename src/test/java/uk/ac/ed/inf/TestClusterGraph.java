@@ -0,0 +1,102 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.ClusterGraph;
+import uk.ac.ed.inf.path.SearchStatistics;
+import uk.ac.ed.inf.path.SearchStrategy;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestClusterGraph extends TestCase {
+    LngLat tower = new LngLat(-3.186874, 55.944494);
+    LngLat[] restaurants = new LngLat[] {
+            new LngLat(-3.1912869215011597, 55.945535152517735),
+            new LngLat(-3.202541470527649, 55.943284737579376),
+            new LngLat(-3.179798972064253, 55.939884084483)
+    };
+    NamedRegion[] zones;
+
+    @Override
+    protected void setUp() throws Exception {
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            zones = new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+    }
+
+    /**
+     * @return zones with an extra square of the given half side around a point
+     */
+    private NamedRegion[] withSquare(LngLat centre, double radius) {
+        NamedRegion[] result = Arrays.copyOf(zones, zones.length + 1);
+        result[zones.length] = new NamedRegion("restriction", new LngLat[] {
+                new LngLat(centre.lng() - radius, centre.lat() - radius),
+                new LngLat(centre.lng() + radius, centre.lat() - radius),
+                new LngLat(centre.lng() + radius, centre.lat() + radius),
+                new LngLat(centre.lng() - radius, centre.lat() + radius)});
+        return result;
+    }
+
+    private AStarPathFinder pathFinder(NamedRegion[] noFlyZones) {
+        AStarPathFinder pathFinder = new AStarPathFinder();
+        pathFinder.updateZones(noFlyZones, null);
+        pathFinder.setSearchStrategy(SearchStrategy.HIERARCHICAL);
+        return pathFinder;
+    }
+
+    private void assertSamePath(List<Cell> expected, List<Cell> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCoordinates(), actual.get(i).getCoordinates());
+        }
+    }
+
+    public void testUpdateRebuildsOnlyTouchedClusters() {
+        ClusterGraph graph = new ClusterGraph(zones);
+        assertEquals(graph.getClusterCount(), graph.getRebuiltClusters());
+        // two moves wide, away from the other zones
+        ClusterGraph updated = graph.update(withSquare(new LngLat(-3.1800, 55.9420), 0.00015));
+        assertEquals(graph.getClusterCount(), updated.getClusterCount());
+        assertEquals(1, updated.getRebuiltClusters());
+        // the same zones again
+        assertEquals(0, updated.update(withSquare(new LngLat(-3.1800, 55.9420), 0.00015)).getRebuiltClusters());
+    }
+
+    public void testZoneOutsideTheGridRebuildsEverything() {
+        ClusterGraph graph = new ClusterGraph(zones);
+        ClusterGraph updated = graph.update(withSquare(new LngLat(-3.3000, 55.9000), 0.0005));
+        assertEquals(updated.getClusterCount(), updated.getRebuiltClusters());
+        assertTrue(updated.getClusterCount() > graph.getClusterCount());
+    }
+
+    public void testUpdatedGraphPlansLikeRebuiltOne() {
+        NamedRegion[] restricted = withSquare(new LngLat(-3.1890, 55.9440), 0.0004);
+        AStarPathFinder updated = pathFinder(zones);
+        // built for the first zones, then updated
+        updated.getClusterGraph();
+        updated.updateZones(restricted, null);
+        assertTrue(updated.getClusterGraph().getRebuiltClusters() < updated.getClusterGraph().getClusterCount());
+        AStarPathFinder rebuilt = pathFinder(restricted);
+        for (LngLat restaurant : restaurants) {
+            assertSamePath(rebuilt.findShortestPath(tower, restaurant), updated.findShortestPath(tower, restaurant));
+            assertSamePath(rebuilt.findShortestPath(restaurant, tower), updated.findShortestPath(restaurant, tower));
+        }
+    }
+
+    public void testLegOutsideTheGridIsSearchedInFull() {
+        LngLat origin = new LngLat(-3.3000, 55.9000);
+        LngLat destination = new LngLat(-3.2950, 55.9020);
+        SearchStatistics statistics = new SearchStatistics();
+        List<Cell> path = pathFinder(zones).findShortestPath(origin, destination, statistics);
+        assertEquals(1.0, statistics.getSuboptimalityBound());
+        AStarPathFinder astar = new AStarPathFinder();
+        astar.updateZones(zones, null);
+        assertSamePath(astar.findShortestPath(origin, destination), path);
+    }
+}
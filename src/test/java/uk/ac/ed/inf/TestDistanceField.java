@@ -0,0 +1,86 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.DistanceField;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.ZoneIndex;
+
+import java.io.InputStream;
+import java.util.List;
+
+public class TestDistanceField extends TestCase {
+    LngLat tower = new LngLat(-3.186874, 55.944494);
+    // Sora Lella, behind the zones
+    LngLat restaurant = new LngLat(-3.202541470527649, 55.943284737579376);
+    LngLatHandler lngLatHandler = new LngLatHandler();
+    NamedRegion[] zones;
+    DistanceField field;
+
+    @Override
+    protected void setUp() throws Exception {
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            zones = new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+        field = new DistanceField(tower, zones, 0.02, SystemConstants.DRONE_MOVE_DISTANCE / 3);
+    }
+
+    public void testPathIsMadeOfValidMoves() {
+        List<Cell> path = field.findPath(restaurant);
+        assertNotNull(path);
+        ZoneIndex noFlyZones = new ZoneIndex(zones);
+        LngLat previous = tower;
+        for (Cell cell : path.subList(0, path.size() - 1)) {
+            LngLat position = cell.getCoordinates();
+            assertEquals(position.lng(), lngLatHandler.nextPosition(previous, cell.getEnterAngle()).lng(), 1e-12);
+            assertEquals(position.lat(), lngLatHandler.nextPosition(previous, cell.getEnterAngle()).lat(), 1e-12);
+            assertFalse(noFlyZones.contains(position.lng(), position.lat()));
+            previous = position;
+        }
+        assertTrue(lngLatHandler.isCloseTo(previous, restaurant));
+        assertEquals(restaurant, path.get(path.size() - 1).getCoordinates());
+        assertEquals(Cell.HOVER_ANGLE, path.get(path.size() - 1).getEnterAngle());
+    }
+
+    public void testPathIsCloseToShortest() {
+        AStarPathFinder pathFinder = new AStarPathFinder();
+        pathFinder.updateZones(zones, null);
+        int shortest = pathFinder.findShortestPath(tower, restaurant).size();
+        int walked = field.findPath(restaurant).size();
+        assertTrue(walked >= shortest);
+        assertTrue(walked <= shortest * 1.05);
+    }
+
+    public void testUnservedDestinations() {
+        // too far away
+        LngLat far = new LngLat(-3.3, 55.9);
+        assertFalse(field.covers(far));
+        assertNull(field.findPath(far));
+        // in the middle of a zone
+        LngLat[] vertices = zones[0].vertices();
+        double lng = 0, lat = 0;
+        for (LngLat vertex : vertices) {
+            lng += vertex.lng() / vertices.length;
+            lat += vertex.lat() / vertices.length;
+        }
+        LngLat inside = new LngLat(lng, lat);
+        assertTrue(new ZoneIndex(zones).contains(lng, lat));
+        assertTrue(field.covers(inside));
+        assertNull(field.findPath(inside));
+        assertTrue(field.getReachedCells() > 0);
+    }
+
+    public void testRadiusIsCapped() {
+        // about 1.5 degrees used to overflow the size of the arrays
+        DistanceField wide = new DistanceField(tower, new NamedRegion[0], 1.5, SystemConstants.DRONE_MOVE_DISTANCE / 3);
+        assertEquals(DistanceField.MAX_RADIUS, wide.getRadius());
+        assertTrue(wide.getMemoryBytes() < 32L << 20);
+        assertFalse(wide.covers(new LngLat(tower.lng() + 0.05, tower.lat())));
+        assertNotNull(wide.findPath(new LngLat(tower.lng() + 0.025, tower.lat())));
+    }
+}
@@ -1,16 +1,40 @@
 package uk.ac.ed.inf;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import junit.framework.TestCase;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
 import uk.ac.ed.inf.client.ApiClient;
 import uk.ac.ed.inf.ilp.constant.OrderStatus;
 import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
 import uk.ac.ed.inf.ilp.data.*;
 import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.DistanceField;
+import uk.ac.ed.inf.path.ExportFormat;
+import uk.ac.ed.inf.path.ExportPipeline;
+import uk.ac.ed.inf.path.FlightPathBinaryReader;
 import uk.ac.ed.inf.path.FlightPlanner;
+import uk.ac.ed.inf.path.OutputCompression;
+import uk.ac.ed.inf.path.RouteCache;
+import uk.ac.ed.inf.utils.ZoneIndex;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TestFlightPlanner extends TestCase {
 
@@ -124,4 +148,553 @@ public class TestFlightPlanner extends TestCase {
 
         server.stop();
     }
+
+    public void testStreamedExportsMatchObjectMapper() throws Exception {
+        int port = 8005;
+        String baseUrl = "http://localhost:"+port;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        String dir = "resultfiles";
+        FlightPlanner planner = new FlightPlanner(dir, new ApiClient(baseUrl));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        HashMap<String, List<Cell>> orderPaths = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            LngLat restaurant = new LngLat(tower.lng() + 0.001 * (i - 2), tower.lat() + 0.0007 * i);
+            String orderNo = "ORDR" + i;
+            planner.calculateOrderFlightPath(tower, restaurant, orderNo);
+            planner.calculateOrderFlightPath(restaurant, tower, orderNo);
+            orderPaths.put(orderNo, planner.getOrderPath(orderNo));
+        }
+        planner.exportOrderPathHistoryToJson("deliveries-stream-test.json");
+        planner.exportFlightHistoryToGeoJson("drone-stream-test.json");
+
+        // the trees the exports used to build and hand to ObjectMapper
+        List<HashMap<String, Object>> moves = new ArrayList<>();
+        List<Double[]> coordinates = new ArrayList<>();
+        for (String orderNo : orderPaths.keySet()) {
+            Cell previous = null;
+            for (Cell cell : orderPaths.get(orderNo)) {
+                coordinates.add(new Double[] {cell.getCoordinates().lng(), cell.getCoordinates().lat()});
+                if (previous != null) {
+                    HashMap<String, Object> move = new HashMap<>();
+                    move.put("orderNo", orderNo);
+                    move.put("fromLatitude", previous.getCoordinates().lat());
+                    move.put("fromLongitude", previous.getCoordinates().lng());
+                    move.put("angle", cell.getEnterAngle());
+                    move.put("toLatitude", cell.getCoordinates().lat());
+                    move.put("toLongitude", cell.getCoordinates().lng());
+                    moves.add(move);
+                }
+                previous = cell;
+            }
+        }
+        HashMap<String, Object> geometry = new HashMap<>();
+        geometry.put("type", "LineString");
+        geometry.put("coordinates", coordinates);
+        HashMap<String, Object> feature = new HashMap<>();
+        feature.put("type", "Feature");
+        feature.put("properties", new HashMap<>());
+        feature.put("geometry", geometry);
+        HashMap<String, Object> geoJson = new HashMap<>();
+        geoJson.put("type", "FeatureCollection");
+        geoJson.put("features", List.of(feature));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertTrue(Arrays.equals(objectMapper.writeValueAsBytes(moves),
+                Files.readAllBytes(Path.of(dir, "deliveries-stream-test.json"))));
+        assertTrue(Arrays.equals(objectMapper.writeValueAsBytes(geoJson),
+                Files.readAllBytes(Path.of(dir, "drone-stream-test.json"))));
+        FlightPlannerUtils.deleteFile(dir + "/deliveries-stream-test.json");
+        FlightPlannerUtils.deleteFile(dir + "/drone-stream-test.json");
+
+        server.stop();
+    }
+
+    public void testBinaryFlightpathConvertsBackToJson() throws Exception {
+        String zonesJson;
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            zonesJson = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        int port = 8005;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", zonesJson);
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        String dir = "resultfiles";
+        FlightPlanner planner = new FlightPlanner(dir, new ApiClient("http://localhost:" + port));
+        LngLat[] restaurants = {
+                new LngLat(-3.1912869215011597, 55.945535152517735),
+                new LngLat(-3.202541470527649, 55.943284737579376),
+                new LngLat(-3.179798972064253, 55.939884084483)
+        };
+        for (int i = 0; i < restaurants.length; i++) {
+            planner.recordOrderFlightPath("ORDR" + i, planner.planDeliveryFlightPath(restaurants[i]));
+        }
+        // a path that is not on a lattice, with an angle off the compass
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        planner.recordOrderFlightPath("FREE", List.of(new Cell(tower, 10), new Cell(tower, Cell.HOVER_ANGLE)));
+        planner.exportOrderPathHistoryToJson("flightpath-binary-test.json");
+        planner.exportOrderPathHistoryToBinary("flightpath-binary-test.bin");
+
+        Path binary = Path.of(dir, "flightpath-binary-test.bin");
+        byte[] json = Files.readAllBytes(Path.of(dir, "flightpath-binary-test.json"));
+        ByteArrayOutputStream converted = new ByteArrayOutputStream();
+        FlightPathBinaryReader.convertToJson(Files.newInputStream(binary), converted);
+        assertTrue(Arrays.equals(json, converted.toByteArray()));
+        // about a byte per move against more than 200 bytes of JSON
+        assertTrue(Files.size(binary) * 50 < json.length);
+
+        Map<String, List<Cell>> read = FlightPathBinaryReader.readOrderPaths(Files.newInputStream(binary));
+        assertEquals(4, read.size());
+        for (String orderNo : read.keySet()) {
+            List<Cell> expected = planner.getOrderPath(orderNo);
+            List<Cell> actual = read.get(orderNo);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getCoordinates(), actual.get(i).getCoordinates());
+                assertEquals(expected.get(i).getEnterAngle(), actual.get(i).getEnterAngle());
+            }
+        }
+        FlightPlannerUtils.deleteFile(dir + "/flightpath-binary-test.json");
+        FlightPlannerUtils.deleteFile(dir + "/flightpath-binary-test.bin");
+
+        server.stop();
+    }
+
+    public void testAvroExportsMatchJson() throws Exception {
+        int port = 8005;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        String dir = "resultfiles";
+        FlightPlanner planner = new FlightPlanner(dir, new ApiClient("http://localhost:" + port));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        for (int i = 0; i < 3; i++) {
+            planner.recordOrderFlightPath("ORDR" + i,
+                    planner.planDeliveryFlightPath(new LngLat(tower.lng() - 0.001 * i, tower.lat() + 0.0015)));
+        }
+        Order[] orders = {
+                new Order("ORDR0", LocalDate.now(), OrderStatus.DELIVERED, OrderValidationCode.NO_ERROR, 1100,
+                        new Pizza[] {}, new CreditCardInformation()),
+                new Order("ORDR9", LocalDate.now(), OrderStatus.INVALID, OrderValidationCode.CVV_INVALID, 0,
+                        new Pizza[] {}, new CreditCardInformation())
+        };
+        planner.exportOrdersToJson("deliveries-avro-test.json", orders);
+        planner.exportOrderPathHistoryToJson("flightpath-avro-test.json");
+        planner.exportFlightHistoryToGeoJson("drone-avro-test.json");
+        planner.exportOrdersToAvro("deliveries-avro-test.avro", orders);
+        planner.exportOrderPathHistoryToAvro("flightpath-avro-test.avro");
+        planner.exportFlightHistoryToAvro("drone-avro-test.avro");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode deliveries = objectMapper.readTree(new File(dir, "deliveries-avro-test.json"));
+        List<GenericRecord> deliveryRecords = readAvro(new File(dir, "deliveries-avro-test.avro"));
+        assertEquals(deliveries.size(), deliveryRecords.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            for (String field : List.of("orderNo", "orderStatus", "orderValidationCode")) {
+                assertEquals(deliveries.get(i).get(field).asText(), deliveryRecords.get(i).get(field).toString());
+            }
+            assertEquals(deliveries.get(i).get("costInPence").asInt(), deliveryRecords.get(i).get("costInPence"));
+        }
+
+        JsonNode moves = objectMapper.readTree(new File(dir, "flightpath-avro-test.json"));
+        List<GenericRecord> moveRecords = readAvro(new File(dir, "flightpath-avro-test.avro"));
+        assertEquals(moves.size(), moveRecords.size());
+        assertTrue(moves.size() > 0);
+        for (int i = 0; i < moves.size(); i++) {
+            assertEquals(moves.get(i).get("orderNo").asText(), moveRecords.get(i).get("orderNo").toString());
+            for (String field : List.of("fromLongitude", "fromLatitude", "angle", "toLatitude", "toLongitude")) {
+                assertEquals(moves.get(i).get(field).asDouble(), moveRecords.get(i).get(field));
+            }
+        }
+
+        JsonNode coordinates = objectMapper.readTree(new File(dir, "drone-avro-test.json"))
+                .get("features").get(0).get("geometry").get("coordinates");
+        List<GenericRecord> points = readAvro(new File(dir, "drone-avro-test.avro"));
+        assertEquals(coordinates.size(), points.size());
+        for (int i = 0; i < coordinates.size(); i++) {
+            assertEquals(coordinates.get(i).get(0).asDouble(), points.get(i).get("longitude"));
+            assertEquals(coordinates.get(i).get(1).asDouble(), points.get(i).get("latitude"));
+        }
+
+        for (String file : List.of("deliveries", "flightpath", "drone")) {
+            FlightPlannerUtils.deleteFile(dir + "/" + file + "-avro-test.json");
+            FlightPlannerUtils.deleteFile(dir + "/" + file + "-avro-test.avro");
+        }
+        server.stop();
+    }
+
+    public void testExportPipelineMatchesSequentialExports() throws Exception {
+        int port = 8005;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        String dir = "resultfiles";
+        FlightPlanner planner = new FlightPlanner(dir, new ApiClient("http://localhost:" + port));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        Order[] orders = new Order[4];
+        List<List<Cell>> paths = new ArrayList<>();
+        for (int i = 0; i < orders.length; i++) {
+            boolean valid = i != 1;
+            orders[i] = new Order("ORDR" + (7 - i), LocalDate.now(),
+                    valid ? OrderStatus.DELIVERED : OrderStatus.INVALID,
+                    valid ? OrderValidationCode.NO_ERROR : OrderValidationCode.CVV_INVALID, 1100,
+                    new Pizza[] {}, new CreditCardInformation());
+            List<Cell> path = valid
+                    ? planner.planDeliveryFlightPath(new LngLat(tower.lng() - 0.001 * i, tower.lat() + 0.0015))
+                    : List.of();
+            planner.recordOrderFlightPath(orders[i].getOrderNo(), path);
+            paths.add(path);
+        }
+        // handed over last to first, written first to last
+        ExportPipeline exports = planner.openExportPipeline(ExportFormat.JSON,
+                "deliveries-pipeline-test.json", "flightpath-pipeline-test.json", "drone-pipeline-test.json");
+        for (int i = orders.length - 1; i >= 0; i--) {
+            exports.add(i, orders[i], paths.get(i));
+            assertEquals(i == 0 ? orders.length : 0, exports.getWrittenOrders());
+        }
+        exports.finish();
+        planner.exportOrdersToJson("deliveries-sequential-test.json", orders);
+        planner.exportOrderPathHistoryToJson("flightpath-sequential-test.json");
+
+        assertTrue(Arrays.equals(Files.readAllBytes(Path.of(dir, "deliveries-sequential-test.json")),
+                Files.readAllBytes(Path.of(dir, "deliveries-pipeline-test.json"))));
+        // the same moves, by order of the day instead of by orderNo hash
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> orderNos = Arrays.stream(orders).map(Order::getOrderNo).toList();
+        List<JsonNode> expectedMoves = new ArrayList<>();
+        objectMapper.readTree(new File(dir, "flightpath-sequential-test.json")).forEach(expectedMoves::add);
+        expectedMoves.sort(Comparator.comparingInt(move -> orderNos.indexOf(move.get("orderNo").asText())));
+        List<JsonNode> moves = new ArrayList<>();
+        objectMapper.readTree(new File(dir, "flightpath-pipeline-test.json")).forEach(moves::add);
+        assertTrue(moves.size() > 0);
+        assertEquals(expectedMoves, moves);
+        JsonNode coordinates = objectMapper.readTree(new File(dir, "drone-pipeline-test.json"))
+                .get("features").get(0).get("geometry").get("coordinates");
+        int point = 0;
+        for (List<Cell> path : paths) {
+            for (Cell cell : path) {
+                assertEquals(cell.getCoordinates().lng(), coordinates.get(point).get(0).asDouble());
+                assertEquals(cell.getCoordinates().lat(), coordinates.get(point++).get(1).asDouble());
+            }
+        }
+        assertEquals(point, coordinates.size());
+
+        ExportPipeline avroExports = planner.openExportPipeline(ExportFormat.AVRO,
+                "deliveries-pipeline-test.avro", "flightpath-pipeline-test.avro", "drone-pipeline-test.avro");
+        for (int i = 0; i < orders.length; i++) {
+            avroExports.add(i, orders[i], paths.get(i));
+        }
+        avroExports.finish();
+        List<GenericRecord> deliveries = readAvro(new File(dir, "deliveries-pipeline-test.avro"));
+        assertEquals(orderNos, deliveries.stream().map(record -> record.get("orderNo").toString()).toList());
+        assertEquals(moves.size(), readAvro(new File(dir, "flightpath-pipeline-test.avro")).size());
+        assertEquals(coordinates.size(), readAvro(new File(dir, "drone-pipeline-test.avro")).size());
+
+        // the first order never comes
+        ExportPipeline incomplete = planner.openExportPipeline(ExportFormat.JSON,
+                "deliveries-pipeline-test.json", "flightpath-pipeline-test.json", "drone-pipeline-test.json");
+        incomplete.add(1, orders[1], paths.get(1));
+        try {
+            incomplete.finish();
+            fail();
+        } catch (IllegalStateException e) {
+            incomplete.close();
+        }
+
+        for (String file : List.of("deliveries", "flightpath", "drone")) {
+            FlightPlannerUtils.deleteFile(dir + "/" + file + "-pipeline-test.json");
+            FlightPlannerUtils.deleteFile(dir + "/" + file + "-pipeline-test.avro");
+            FlightPlannerUtils.deleteFile(dir + "/" + file + "-sequential-test.json");
+        }
+        server.stop();
+    }
+
+    public void testFailedPlanningLeavesNoExportFile() throws Exception {
+        int port = 8005;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        String dir = "resultfiles";
+        FlightPlanner planner = new FlightPlanner(dir, new ApiClient("http://localhost:" + port));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        // a complete file of an earlier run is kept
+        Files.writeString(Path.of(dir, "deliveries-abort-test.json"), "[]");
+        List<String> names = List.of("deliveries-abort-test.json", "flightpath-abort-test.json",
+                "drone-abort-test.json");
+        try (ExportPipeline exports = planner.openExportPipeline(ExportFormat.JSON, names.get(0), names.get(1),
+                names.get(2))) {
+            for (int i = 0; i < 4; i++) {
+                if (i == 2) {
+                    throw new IllegalStateException("planning failed");
+                }
+                Order order = new Order("ORDR" + i, LocalDate.now(), OrderStatus.DELIVERED,
+                        OrderValidationCode.NO_ERROR, 1100, new Pizza[] {}, new CreditCardInformation());
+                exports.add(i, order, planner.planDeliveryFlightPath(
+                        new LngLat(tower.lng() - 0.001 * i, tower.lat() + 0.0015)));
+            }
+            exports.finish();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("planning failed", e.getMessage());
+        }
+
+        assertEquals("[]", Files.readString(Path.of(dir, names.get(0))));
+        assertFalse(new File(dir, names.get(1)).exists());
+        assertFalse(new File(dir, names.get(2)).exists());
+        for (String name : names) {
+            assertFalse(new File(dir, name + ".part").exists());
+            FlightPlannerUtils.deleteFile(dir + "/" + name);
+        }
+        server.stop();
+    }
+
+    public void testFailedOpenClosesTheOpenedFiles() throws Exception {
+        int port = 8005;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        String dir = "resultfiles";
+        FlightPlanner planner = new FlightPlanner(dir, new ApiClient("http://localhost:" + port));
+        List<String> names = List.of("deliveries-open-test.json", "flightpath-open-test.json",
+                "drone-open-test.json");
+        // the last file cannot be opened, the two before it are
+        File blocker = new File(dir, names.get(2) + ".part");
+        assertTrue(blocker.mkdirs());
+        try {
+            planner.openExportPipeline(ExportFormat.JSON, names.get(0), names.get(1), names.get(2));
+            fail();
+        } catch (IOException e) {
+            // closed and deleted
+            for (String name : names.subList(0, 2)) {
+                assertFalse(new File(dir, name + ".part").exists());
+                assertFalse(new File(dir, name).exists());
+            }
+        } finally {
+            blocker.delete();
+        }
+        server.stop();
+    }
+
+    public void testCompressedExportsDecompressToPlain() throws Exception {
+        int port = 8005;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        String dir = "resultfiles";
+        FlightPlanner planner = new FlightPlanner(dir, new ApiClient("http://localhost:" + port));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        for (int i = 0; i < 3; i++) {
+            planner.recordOrderFlightPath("ORDR" + i,
+                    planner.planDeliveryFlightPath(new LngLat(tower.lng() - 0.001 * i, tower.lat() + 0.0015)));
+        }
+        Order[] orders = {
+                new Order("ORDR0", LocalDate.now(), OrderStatus.DELIVERED, OrderValidationCode.NO_ERROR, 1100,
+                        new Pizza[] {}, new CreditCardInformation())
+        };
+        List<String> files = List.of("deliveries-compress-test.json", "flightpath-compress-test.json",
+                "drone-compress-test.json");
+        for (OutputCompression compression : OutputCompression.values()) {
+            planner.setOutputCompression(compression);
+            planner.exportOrdersToJson(files.get(0), orders);
+            planner.exportOrderPathHistoryToJson(files.get(1));
+            planner.exportFlightHistoryToGeoJson(files.get(2));
+        }
+        for (String file : files) {
+            byte[] plain = Files.readAllBytes(Path.of(dir, file));
+            for (OutputCompression compression : List.of(OutputCompression.GZIP, OutputCompression.SNAPPY)) {
+                String compressedFile = file + compression.getSuffix();
+                assertEquals(compression, OutputCompression.fromFilename(compressedFile));
+                try (InputStream in = compression.decompress(Files.newInputStream(Path.of(dir, compressedFile)))) {
+                    assertTrue(Arrays.equals(plain, in.readAllBytes()));
+                }
+                if (!file.startsWith("deliveries")) {
+                    assertTrue(Files.size(Path.of(dir, compressedFile)) < plain.length);
+                }
+                FlightPlannerUtils.deleteFile(dir + "/" + compressedFile);
+            }
+            FlightPlannerUtils.deleteFile(dir + "/" + file);
+        }
+        server.stop();
+    }
+
+    private static List<GenericRecord> readAvro(File file) throws Exception {
+        List<GenericRecord> records = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+            for (GenericRecord record : reader) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    public void testReturnLegServedFromCache() throws Exception {
+        int port = 8005;
+        String baseUrl = "http://localhost:"+port;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        FlightPlanner planner = new FlightPlanner("resultfiles", new ApiClient(baseUrl));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        LngLat restaurant = new LngLat(tower.lng() + 0.001, tower.lat() + 0.001);
+        planner.calculateOrderFlightPath(tower, restaurant, "ORDR1");
+        planner.calculateOrderFlightPath(restaurant, tower, "ORDR1");
+        planner.calculateOrderFlightPath(tower, restaurant, "ORDR2");
+
+        RouteCache cache = planner.getRouteCache();
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getReverseHits());
+        // the order ends hovering at the tower
+        List<Cell> path = planner.getOrderPath("ORDR1");
+        assertEquals(tower, path.get(path.size() - 1).getCoordinates());
+        assertEquals(Cell.HOVER_ANGLE, path.get(path.size() - 1).getEnterAngle());
+
+        server.stop();
+    }
+
+    public void testParallelPlanningMatchesSequential() throws Exception {
+        int port = 8005;
+        String baseUrl = "http://localhost:"+port;
+        MockRestServer server = new MockRestServer(port);
+        // a square zone right next to the tower
+        server.getContextToServeDataOnUrl("/noFlyZones", "[{\"name\":\"square\",\"vertices\":[" +
+                "{\"lng\":-3.1860,\"lat\":55.9440},{\"lng\":-3.1850,\"lat\":55.9440}," +
+                "{\"lng\":-3.1850,\"lat\":55.9450},{\"lng\":-3.1860,\"lat\":55.9450}]}]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+        ApiClient client = new ApiClient(baseUrl);
+
+        List<LngLat> restaurants = List.of(
+                new LngLat(-3.1838, 55.9445),
+                new LngLat(-3.1912, 55.9455),
+                new LngLat(-3.1838, 55.9445),
+                new LngLat(-3.1854, 55.9458)
+        );
+        FlightPlanner sequentialPlanner = new FlightPlanner("resultfiles", client);
+        List<List<Cell>> sequential = restaurants.stream()
+                .map(sequentialPlanner::planDeliveryFlightPath).toList();
+        FlightPlanner parallelPlanner = new FlightPlanner("resultfiles", client);
+        List<List<Cell>> parallel = restaurants.parallelStream()
+                .map(parallelPlanner::planDeliveryFlightPath).toList();
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            List<Cell> expected = sequential.get(i);
+            List<Cell> actual = parallel.get(i);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j++) {
+                assertEquals(expected.get(j).getCoordinates(), actual.get(j).getCoordinates());
+                assertEquals(expected.get(j).getEnterAngle(), actual.get(j).getEnterAngle());
+            }
+        }
+
+        server.stop();
+    }
+
+    public void testDistanceFieldServesBothLegs() throws Exception {
+        int port = 8005;
+        String baseUrl = "http://localhost:"+port;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[{\"name\":\"square\",\"vertices\":[" +
+                "{\"lng\":-3.1860,\"lat\":55.9440},{\"lng\":-3.1850,\"lat\":55.9440}," +
+                "{\"lng\":-3.1850,\"lat\":55.9450},{\"lng\":-3.1860,\"lat\":55.9450}]}]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        FlightPlanner planner = new FlightPlanner("resultfiles", new ApiClient(baseUrl));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        LngLat restaurant = new LngLat(-3.1838, 55.9445);
+        planner.enableDistanceField(List.of(restaurant));
+        List<Cell> path = planner.planDeliveryFlightPath(restaurant);
+
+        // nothing was searched
+        assertEquals(0, planner.getSearchStatistics().getExpandedNodes());
+        assertEquals(0, planner.getRouteCache().getMisses());
+        // out to the restaurant (hovering there) and back to the tower
+        int hover = path.size() / 2 - 1;
+        assertEquals(restaurant, path.get(hover).getCoordinates());
+        assertEquals(Cell.HOVER_ANGLE, path.get(hover).getEnterAngle());
+        assertEquals(tower, path.get(path.size() - 1).getCoordinates());
+        assertEquals(Cell.HOVER_ANGLE, path.get(path.size() - 1).getEnterAngle());
+
+        server.stop();
+    }
+
+    public void testOutlyingRestaurantIsLeftToTheSearch() throws Exception {
+        int port = 8005;
+        String baseUrl = "http://localhost:"+port;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        FlightPlanner planner = new FlightPlanner("resultfiles", new ApiClient(baseUrl));
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        LngLat restaurant = new LngLat(-3.1838, 55.9445);
+        // about 5 km east, past the largest field
+        LngLat outlying = new LngLat(tower.lng() + 0.08, tower.lat());
+        DistanceField field = planner.enableDistanceField(List.of(restaurant, outlying));
+
+        // the field is sized for the close restaurant only
+        assertTrue(field.getRadius() < 0.01);
+        assertTrue(field.covers(restaurant));
+        assertFalse(field.covers(outlying));
+        planner.planFlightPath(tower, restaurant);
+        assertEquals(0, planner.getSearchStatistics().getExpandedNodes());
+        // the outlying restaurant is still reached, by a search
+        List<Cell> path = planner.planFlightPath(tower, outlying);
+        assertTrue(planner.getSearchStatistics().getExpandedNodes() > 0);
+        assertEquals(outlying, path.get(path.size() - 1).getCoordinates());
+
+        server.stop();
+    }
+
+    public void testZoneUpdateRepairsKeptRoutes() throws Exception {
+        int port = 8005;
+        String baseUrl = "http://localhost:"+port;
+        MockRestServer server = new MockRestServer(port);
+        server.getContextToServeDataOnUrl("/noFlyZones", "[]");
+        server.getContextToServeDataOnUrl("/centralArea", "{\"name\":\"central\",\"vertices\":[]}");
+        server.start();
+
+        FlightPlanner planner = new FlightPlanner("resultfiles", new ApiClient(baseUrl));
+        planner.setIncrementalReplanning(true);
+        LngLat tower = planner.getAppletonTowerCoordinates();
+        LngLat restaurant = new LngLat(-3.1838, 55.9445);
+        List<Cell> before = planner.planFlightPath(tower, restaurant);
+
+        // a temporary restriction across the route
+        NamedRegion restriction = new NamedRegion("restriction", new LngLat[] {
+                new LngLat(-3.1856, 55.9440), new LngLat(-3.1850, 55.9440),
+                new LngLat(-3.1850, 55.9450), new LngLat(-3.1856, 55.9450)});
+        assertEquals(1, planner.updateNoFlyZones(new NamedRegion[] {restriction}));
+        List<Cell> after = planner.planFlightPath(tower, restaurant);
+        // served from the cache, no new search
+        assertEquals(1, planner.getRouteCache().getMisses());
+        assertTrue(after.size() > before.size());
+        ZoneIndex noFlyZones = new ZoneIndex(new NamedRegion[] {restriction});
+        for (Cell cell : after) {
+            assertFalse(noFlyZones.contains(cell.getCoordinates().lng(), cell.getCoordinates().lat()));
+        }
+
+        server.stop();
+    }
 }
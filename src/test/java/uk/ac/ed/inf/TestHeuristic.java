@@ -0,0 +1,146 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.*;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+public class TestHeuristic extends TestCase {
+    LngLat origin = new LngLat(-3.186874, 55.944494);
+    Lattice lattice = new Lattice(origin);
+
+    public void testLatticeHeuristicIsExactWithoutObstacles() {
+        Heuristic heuristic = new LatticeHeuristic();
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            long key = Lattice.ORIGIN_KEY;
+            for (int i = 0; i < 10; i++) {
+                key = lattice.step(key, direction);
+            }
+            // the last move is not needed, the goal is reached once within a move of it
+            LngLat destination = lattice.toLngLat(key);
+            assertEquals(9 * SystemConstants.DRONE_MOVE_DISTANCE,
+                    heuristic.estimate(lattice, Lattice.ORIGIN_KEY, destination), 1e-12);
+        }
+    }
+
+    public void testLatticeHeuristicIsConsistent() {
+        Heuristic heuristic = new LatticeHeuristic();
+        Random random = new Random(42);
+        LngLat destination = new LngLat(-3.202541470527649, 55.943284737579376);
+        long key = Lattice.ORIGIN_KEY;
+        for (int i = 0; i < 1000; i++) {
+            int direction = random.nextInt(Lattice.DIRECTIONS);
+            long next = lattice.step(key, direction);
+            double difference = heuristic.estimate(lattice, key, destination) - heuristic.estimate(lattice, next, destination);
+            // one move never lowers the estimate by more than its length
+            assertTrue(difference <= SystemConstants.DRONE_MOVE_DISTANCE + 1e-12);
+            key = random.nextInt(4) == 0 ? Lattice.ORIGIN_KEY : next;
+        }
+    }
+
+    public void testAdmissibleHeuristicsFindShortestPath() {
+        LngLat destination = new LngLat(-3.1940174102783203, 55.94390696616939);
+        int lattice = new AStarPathFinder(new LatticeHeuristic()).findShortestPath(origin, destination).size();
+        int euclidean = new AStarPathFinder(new EuclideanHeuristic()).findShortestPath(origin, destination).size();
+        int manhattan = new AStarPathFinder(new ManhattanHeuristic()).findShortestPath(origin, destination).size();
+        assertEquals(lattice, euclidean);
+        assertTrue(lattice <= manhattan);
+        // moves of the path (without the hover) match the estimate from the origin
+        double estimate = new LatticeHeuristic().estimate(this.lattice, Lattice.ORIGIN_KEY, destination);
+        assertEquals(Math.round(estimate / SystemConstants.DRONE_MOVE_DISTANCE), lattice - 1);
+    }
+
+    public void testWeightedHeuristicStaysWithinBound() {
+        Heuristic weighted = Heuristic.fromName("lattice", 2);
+        assertEquals(2.0, weighted.getSuboptimalityBound());
+        LngLat destination = new LngLat(-3.202541470527649, 55.943284737579376);
+        SearchStatistics optimal = new SearchStatistics();
+        SearchStatistics inflated = new SearchStatistics();
+        new AStarPathFinder(new LatticeHeuristic()).findShortestPath(origin, destination, optimal);
+        new AStarPathFinder(weighted).findShortestPath(origin, destination, inflated);
+        assertTrue(inflated.getPathLength() <= 2 * optimal.getPathLength());
+        assertTrue(inflated.getExpandedNodes() <= optimal.getExpandedNodes());
+    }
+
+    public void testLandmarkHeuristicFindsShortestPath() throws Exception {
+        NamedRegion[] zones;
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            zones = new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+        AStarPathFinder lattice = new AStarPathFinder(new LatticeHeuristic());
+        AStarPathFinder landmark = new AStarPathFinder(Heuristic.fromName("landmark", 1));
+        lattice.updateZones(zones, null);
+        landmark.updateZones(zones, null);
+        LandmarkHeuristic prepared = (LandmarkHeuristic) landmark.getPreparedHeuristic();
+        assertEquals(LandmarkHeuristic.DEFAULT_LANDMARKS, prepared.getLandmarks().size());
+        assertTrue(prepared.getPrecomputeNanos() > 0);
+        // the leg into Appleton Tower goes around George Square
+        LngLat restaurant = new LngLat(-3.202541470527649, 55.943284737579376);
+        SearchStatistics exact = new SearchStatistics();
+        SearchStatistics landmarks = new SearchStatistics();
+        lattice.findShortestPath(restaurant, origin, exact);
+        landmark.findShortestPath(restaurant, origin, landmarks);
+        assertEquals(exact.getPathLength(), landmarks.getPathLength());
+        assertTrue(landmarks.getExpandedNodes() < exact.getExpandedNodes());
+    }
+
+    public void testLandmarkHeuristicKeepsThinGapOpen() {
+        // two walls 6 moves thick with a gap of a fifth of a move between them, inside a single grid cell
+        // whose centre and corners all fall in the walls
+        double move = SystemConstants.DRONE_MOVE_DISTANCE;
+        double[][] walls = {{-30, 0.27}, {0.47, 30}};
+        NamedRegion[] zones = new NamedRegion[walls.length];
+        for (int i = 0; i < walls.length; i++) {
+            double x1 = origin.lng() + walls[i][0] * move, x2 = origin.lng() + walls[i][1] * move;
+            double y1 = origin.lat(), y2 = origin.lat() + 6 * move;
+            zones[i] = new NamedRegion("wall " + i, new LngLat[] {
+                    new LngLat(x1, y1), new LngLat(x2, y1), new LngLat(x2, y2), new LngLat(x1, y2)});
+        }
+        LngLat start = new LngLat(origin.lng() + 0.37 * move, origin.lat() - 3 * move);
+        LngLat goal = new LngLat(origin.lng() + 0.37 * move, origin.lat() + 9 * move);
+        AStarPathFinder lattice = new AStarPathFinder(new LatticeHeuristic());
+        AStarPathFinder landmark = new AStarPathFinder(Heuristic.fromName("landmark", 1));
+        lattice.updateZones(zones, null);
+        landmark.updateZones(zones, null);
+        int shortest = lattice.findShortestPath(start, goal).size();
+        double estimate = landmark.getPreparedHeuristic().estimate(new Lattice(start), Lattice.ORIGIN_KEY, goal);
+        // moves of the path (without the hover)
+        assertTrue(estimate / move <= shortest - 1 + 1e-9);
+        assertEquals(shortest, landmark.findShortestPath(start, goal).size());
+    }
+
+    public void testUnpreparedLandmarkHeuristicIsLattice() {
+        Heuristic landmark = new LandmarkHeuristic(4);
+        assertTrue(landmark.prepare(new NamedRegion[] {}) instanceof LandmarkHeuristic);
+        LngLat destination = new LngLat(-3.202541470527649, 55.943284737579376);
+        long key = lattice.step(Lattice.ORIGIN_KEY, 3);
+        assertEquals(new LatticeHeuristic().estimate(lattice, key, destination), landmark.estimate(lattice, key, destination));
+        assertTrue(((LandmarkHeuristic) landmark).getLandmarks().isEmpty());
+    }
+
+    public void testFromName() {
+        assertTrue(Heuristic.fromName("manhattan", 1) instanceof ManhattanHeuristic);
+        assertTrue(Heuristic.fromName("euclidean", 1) instanceof EuclideanHeuristic);
+        assertTrue(Heuristic.fromName("lattice", 1.5) instanceof WeightedHeuristic);
+        assertTrue(Heuristic.fromName("landmark", 1) instanceof LandmarkHeuristic);
+        assertEquals(Double.POSITIVE_INFINITY, Heuristic.fromName("manhattan", 1).getSuboptimalityBound());
+        try {
+            Heuristic.fromName("dijkstra", 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown heuristic: dijkstra", e.getMessage());
+        }
+        try {
+            Heuristic.fromName("lattice", 0.5);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // weights below 1 would make the search slower, not the path shorter
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.IncrementalSearch;
+import uk.ac.ed.inf.path.LatticeHeuristic;
+import uk.ac.ed.inf.path.SearchStatistics;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.ZoneIndex;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestIncrementalSearch extends TestCase {
+    LngLat tower = new LngLat(-3.186874, 55.944494);
+    LngLat[] restaurants = new LngLat[] {
+            new LngLat(-3.1912869215011597, 55.945535152517735),
+            new LngLat(-3.202541470527649, 55.943284737579376),
+            new LngLat(-3.179798972064253, 55.939884084483)
+    };
+    LngLatHandler lngLatHandler = new LngLatHandler();
+    NamedRegion[] zones;
+
+    @Override
+    protected void setUp() throws Exception {
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            zones = new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+    }
+
+    private int searchedLength(NamedRegion[] noFlyZones, LngLat origin, LngLat destination) {
+        AStarPathFinder pathFinder = new AStarPathFinder();
+        pathFinder.updateZones(noFlyZones, null);
+        return pathFinder.findShortestPath(origin, destination).size();
+    }
+
+    /**
+     * @return zones with an extra square of the given half side around a point
+     */
+    private NamedRegion[] withSquare(LngLat centre, double radius) {
+        NamedRegion[] result = Arrays.copyOf(zones, zones.length + 1);
+        result[zones.length] = new NamedRegion("restriction", new LngLat[] {
+                new LngLat(centre.lng() - radius, centre.lat() - radius),
+                new LngLat(centre.lng() + radius, centre.lat() - radius),
+                new LngLat(centre.lng() + radius, centre.lat() + radius),
+                new LngLat(centre.lng() - radius, centre.lat() + radius)});
+        return result;
+    }
+
+    private void assertValidPath(NamedRegion[] noFlyZones, LngLat origin, LngLat destination, List<Cell> path) {
+        ZoneIndex index = new ZoneIndex(noFlyZones);
+        LngLat previous = origin;
+        for (Cell cell : path.subList(0, path.size() - 1)) {
+            LngLat expected = lngLatHandler.nextPosition(previous, cell.getEnterAngle());
+            assertEquals(expected.lng(), cell.getCoordinates().lng(), 1e-12);
+            assertEquals(expected.lat(), cell.getCoordinates().lat(), 1e-12);
+            assertFalse(index.contains(expected.lng(), expected.lat()));
+            previous = cell.getCoordinates();
+        }
+        assertTrue(lngLatHandler.isCloseTo(previous, destination));
+        assertEquals(Cell.HOVER_ANGLE, path.get(path.size() - 1).getEnterAngle());
+    }
+
+    public void testFirstSearchMatchesAStar() {
+        for (LngLat restaurant : restaurants) {
+            IncrementalSearch search = new IncrementalSearch(tower, restaurant, zones, new LatticeHeuristic());
+            List<Cell> path = search.findPath(new SearchStatistics());
+            assertValidPath(zones, tower, restaurant, path);
+            assertEquals(searchedLength(zones, tower, restaurant), path.size());
+        }
+    }
+
+    public void testRepairMatchesFullSearch() {
+        for (LngLat restaurant : restaurants) {
+            IncrementalSearch search = new IncrementalSearch(tower, restaurant, zones, new LatticeHeuristic());
+            List<Cell> path = search.findPath(new SearchStatistics());
+            // a zone across the middle of the route
+            NamedRegion[] restricted = withSquare(path.get(path.size() / 2).getCoordinates(), 0.00045);
+            assertTrue(search.updateZones(restricted));
+            List<Cell> repaired = search.findPath(new SearchStatistics());
+            assertValidPath(restricted, tower, restaurant, repaired);
+            assertEquals(searchedLength(restricted, tower, restaurant), repaired.size());
+            // and lifted again
+            assertTrue(search.updateZones(zones));
+            assertEquals(path.size(), search.findPath(new SearchStatistics()).size());
+        }
+    }
+
+    public void testUnreachedZoneIsIgnored() {
+        IncrementalSearch search = new IncrementalSearch(tower, restaurants[0], zones, new LatticeHeuristic());
+        List<Cell> path = search.findPath(new SearchStatistics());
+        // well away from the route
+        assertFalse(search.updateZones(withSquare(new LngLat(-3.17, 55.93), 0.001)));
+        SearchStatistics statistics = new SearchStatistics();
+        List<Cell> kept = search.findPath(statistics);
+        assertEquals(0, statistics.getExpandedNodes());
+        assertEquals(path.size(), kept.size());
+    }
+}
@@ -0,0 +1,72 @@
+package uk.ac.ed.inf;
+
+import junit.framework.TestCase;
+import uk.ac.ed.inf.utils.IndexedMinHeap;
+
+import java.util.Random;
+
+public class TestIndexedMinHeap extends TestCase {
+    public void testPollsInPriorityOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        Random random = new Random(42);
+        int ids = 1000;
+        for (int id = 0; id < ids; id++) {
+            heap.insert(id, random.nextDouble());
+        }
+        double previous = Double.NEGATIVE_INFINITY;
+        while (!heap.isEmpty()) {
+            double priority = heap.peekPriority();
+            int id = heap.poll();
+            assertEquals(priority, heap.priorityOf(id));
+            assertTrue(priority >= previous);
+            assertFalse(heap.contains(id));
+            previous = priority;
+        }
+    }
+
+    public void testDecreaseKeyReorders() {
+        IndexedMinHeap heap = new IndexedMinHeap(8);
+        heap.insert(0, 1.0);
+        heap.insert(1, 2.0);
+        heap.insert(2, 3.0);
+        // a better score moves the queued id up instead of queueing it again
+        assertTrue(heap.insertOrDecrease(2, 0.5));
+        assertEquals(3, heap.size());
+        assertEquals(2, heap.poll());
+        assertEquals(0, heap.poll());
+        assertEquals(1, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    public void testInsertAfterPoll() {
+        IndexedMinHeap heap = new IndexedMinHeap(8);
+        heap.insert(3, 1.0);
+        assertEquals(3, heap.poll());
+        assertFalse(heap.insertOrDecrease(3, 2.0));
+        assertTrue(heap.contains(3));
+    }
+
+    public void testUpdateAndRemove() {
+        IndexedMinHeap heap = new IndexedMinHeap(8);
+        Random random = new Random(7);
+        for (int id = 0; id < 100; id++) {
+            heap.insert(id, random.nextDouble());
+        }
+        // raise every third priority, drop every fifth id
+        for (int id = 0; id < 100; id += 3) {
+            heap.update(id, heap.priorityOf(id) + 0.5);
+        }
+        for (int id = 0; id < 100; id += 5) {
+            heap.remove(id);
+            assertFalse(heap.contains(id));
+        }
+        assertEquals(80, heap.size());
+        double previous = Double.NEGATIVE_INFINITY;
+        while (!heap.isEmpty()) {
+            int id = heap.poll();
+            assertTrue(id % 5 != 0);
+            assertTrue(heap.priorityOf(id) >= previous);
+            previous = heap.priorityOf(id);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package uk.ac.ed.inf;
+
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.Lattice;
+import uk.ac.ed.inf.utils.LngLatHandler;
+
+import java.util.List;
+
+public class TestLattice extends TestCase {
+    LngLat origin = new LngLat(-3.186874, 55.944494);
+    Lattice lattice = new Lattice(origin);
+
+    public void testMovesCommute() {
+        // E then N is the same position as N then E
+        long eastNorth = lattice.step(lattice.step(Lattice.ORIGIN_KEY, 0), 4);
+        long northEast = lattice.step(lattice.step(Lattice.ORIGIN_KEY, 4), 0);
+        assertEquals(eastNorth, northEast);
+    }
+
+    public void testOppositeMovesCancel() {
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            long there = lattice.step(Lattice.ORIGIN_KEY, direction);
+            long back = lattice.step(there, (direction + 8) % Lattice.DIRECTIONS);
+            assertEquals(Lattice.ORIGIN_KEY, back);
+            assertEquals(origin.lng(), lattice.lng(back));
+            assertEquals(origin.lat(), lattice.lat(back));
+        }
+    }
+
+    public void testStepMatchesNextPosition() {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+            LngLat expected = lngLatHandler.nextPosition(origin, Lattice.toAngle(direction));
+            LngLat actual = lattice.toLngLat(lattice.step(Lattice.ORIGIN_KEY, direction));
+            assertEquals(expected.lng(), actual.lng(), 1e-12);
+            assertEquals(expected.lat(), actual.lat(), 1e-12);
+            assertEquals(SystemConstants.DRONE_MOVE_DISTANCE, lngLatHandler.distanceTo(origin, actual), 1e-12);
+        }
+    }
+
+    public void testPositionMatchesCoordinates() {
+        long key = Lattice.ORIGIN_KEY;
+        double[] position = new double[2];
+        for (int i = 0; i < 40; i++) {
+            key = lattice.step(key, (i * 7) % Lattice.DIRECTIONS);
+            lattice.position(key, position);
+            assertEquals(lattice.lng(key), position[0]);
+            assertEquals(lattice.lat(key), position[1]);
+        }
+    }
+
+    public void testNoDriftAlongLongPath() {
+        // 100 moves around a closed loop end exactly at the origin
+        long key = Lattice.ORIGIN_KEY;
+        for (int i = 0; i < 100; i++) {
+            key = lattice.step(key, (i * 3) % Lattice.DIRECTIONS);
+        }
+        for (int i = 99; i >= 0; i--) {
+            key = lattice.step(key, ((i * 3) % Lattice.DIRECTIONS + 8) % Lattice.DIRECTIONS);
+        }
+        assertEquals(Lattice.ORIGIN_KEY, key);
+        assertEquals(origin, lattice.toLngLat(key));
+    }
+
+    public void testStepOutOfRange() {
+        long key = Lattice.ORIGIN_KEY;
+        for (int i = 0; i < Lattice.MAX_STEPS; i++) {
+            key = lattice.step(key, 0);
+        }
+        assertEquals(Lattice.MAX_STEPS, lattice.getSteps(key, 0));
+        assertEquals(Lattice.OUT_OF_RANGE, lattice.step(key, 0));
+    }
+
+    public void testWideKeysBeyondPackedRange() {
+        LngLatHandler lngLatHandler = new LngLatHandler();
+        long key = Lattice.ORIGIN_KEY;
+        for (int i = 0; i < 300; i++) {
+            key = lattice.step(key, 0);
+        }
+        assertEquals(300, lattice.getSteps(key, 0));
+        assertEquals(origin.lng() + 300 * LngLatHandler.stepLng(0), lattice.lng(key), 1e-12);
+        assertEquals(origin.lat(), lattice.lat(key), 1e-12);
+        // moves commute across the packed and the wide keys
+        long northThenEast = lattice.step(Lattice.ORIGIN_KEY, 4);
+        for (int i = 0; i < 300; i++) {
+            northThenEast = lattice.step(northThenEast, 0);
+        }
+        assertEquals(lattice.step(key, 4), northThenEast);
+        assertEquals(4, lattice.direction(key, northThenEast));
+        // back in the packed range the key is packed again
+        for (int i = 0; i < 300; i++) {
+            key = lattice.step(key, 8);
+        }
+        assertEquals(Lattice.ORIGIN_KEY, key);
+        assertEquals(lngLatHandler.nextPosition(origin, 90).lat(), lattice.lat(lattice.step(key, 4)), 1e-12);
+    }
+
+    public void testLongStraightLegsStayStraight() {
+        // legs of 127 to 130 moves and well beyond are flown straight, none of them is cut short by the key
+        AStarPathFinder pathFinder = new AStarPathFinder();
+        pathFinder.updateZones(new NamedRegion[] {}, null);
+        for (int moves : new int[] {127, 128, 129, 130, 700}) {
+            // half a move past the last position, so the goal is reached after exactly `moves` moves
+            LngLat destination = new LngLat(origin.lng() + (moves + 0.5) * LngLatHandler.stepLng(0), origin.lat());
+            List<Cell> path = pathFinder.findShortestPath(origin, destination);
+            assertEquals(moves + 1, path.size());
+            for (Cell cell : path.subList(0, moves)) {
+                assertEquals(0.0, cell.getEnterAngle());
+            }
+        }
+    }
+
+    public void testCellEquality() {
+        long east = lattice.step(Lattice.ORIGIN_KEY, 0);
+        long north = lattice.step(Lattice.ORIGIN_KEY, 4);
+        assertEquals(new Cell(lattice, east, 0), new Cell(lattice, east, 22.5));
+        assertFalse(new Cell(lattice, east, 0).equals(new Cell(lattice, north, 0)));
+        // same key on another lattice is another position
+        assertFalse(new Cell(lattice, east, 0).equals(new Cell(new Lattice(new LngLat(0, 0)), east, 0)));
+    }
+}
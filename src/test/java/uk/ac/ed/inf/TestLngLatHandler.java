@@ -5,6 +5,9 @@ import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.PreparedRegion;
+
+import java.util.Random;
 
 public class TestLngLatHandler extends TestCase {
     LngLatHandler lngLatHandler;
@@ -27,6 +30,60 @@ public class TestLngLatHandler extends TestCase {
         assertFalse(lngLatHandler.isInRegion(pointOutside, polygon));
     }
 
+    public void testIsInPreparedRegion() {
+        // concave, with a notch between x = 1 and x = 2
+        NamedRegion u = new NamedRegion("u", new LngLat[] {
+                new LngLat(0, 0), new LngLat(3, 0), new LngLat(3, 3), new LngLat(2, 3),
+                new LngLat(2, 1), new LngLat(1, 1), new LngLat(1, 3), new LngLat(0, 3)
+        });
+        PreparedRegion prepared = new PreparedRegion(u);
+        assertSame(u, prepared.getRegion());
+        assertTrue(lngLatHandler.isInRegion(new LngLat(0.5, 2), prepared));
+        assertFalse(lngLatHandler.isInRegion(new LngLat(1.5, 2), prepared));
+        // off the vertex rows both ray-casts agree
+        for (double x = -0.5; x <= 3.5; x += 0.125) {
+            for (double y = -0.4375; y <= 3.5; y += 0.125) {
+                assertEquals(lngLatHandler.isInRegion(x, y, u), lngLatHandler.isInRegion(x, y, prepared));
+            }
+        }
+        assertFalse(lngLatHandler.isInRegion(0, 0, new PreparedRegion(new NamedRegion("empty", new LngLat[] {}))));
+    }
+
+    public void testBatchMatchesIsInRegion() {
+        NamedRegion[] regions = {
+                new NamedRegion("u", new LngLat[] {
+                        new LngLat(0, 0), new LngLat(3, 0), new LngLat(3, 3), new LngLat(2, 3),
+                        new LngLat(2, 1), new LngLat(1, 1), new LngLat(1, 3), new LngLat(0, 3)}),
+                new NamedRegion("square", new LngLat[] {
+                        new LngLat(2.5, 2.5), new LngLat(4, 2.5), new LngLat(4, 4), new LngLat(2.5, 4)})
+        };
+        PreparedRegion[] prepared = PreparedRegion.prepare(regions);
+        Random random = new Random(5);
+        double[] xs = new double[LngLatHandler.MAX_BATCH];
+        double[] ys = new double[LngLatHandler.MAX_BATCH];
+        // full batches and ones that do not fill the vector lanes
+        for (int count : new int[] {0, 1, 16, 37, LngLatHandler.MAX_BATCH}) {
+            for (int i = 0; i < count; i++) {
+                xs[i] = -0.5 + random.nextDouble() * 5;
+                ys[i] = -0.5 + random.nextDouble() * 5;
+            }
+            long expected = 0;
+            for (int i = 0; i < count; i++) {
+                if (prepared[0].contains(xs[i], ys[i]) || prepared[1].contains(xs[i], ys[i])) {
+                    expected |= 1L << i;
+                }
+            }
+            assertEquals(expected, lngLatHandler.inAnyRegion(xs, ys, count, prepared));
+            assertEquals(expected, LngLatHandler.inAnyRegionScalar(xs, ys, count, prepared));
+        }
+        try {
+            lngLatHandler.inAnyRegion(xs, ys, LngLatHandler.MAX_BATCH + 1, prepared);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     public void testIsCloseTo() {
         LngLat position = new LngLat(0, 0);
         // Check the position itself is within close distance
@@ -51,4 +108,23 @@ public class TestLngLatHandler extends TestCase {
             );
         }
     }
+
+    public void testStepMatchesNextPosition() {
+        LngLat start = new LngLat(-3.186874, 55.944494);
+        double[] position = new double[2];
+        for (int direction = 0; direction < LngLatHandler.DIRECTIONS; direction++) {
+            double angle = direction * 22.5;
+            assertEquals(direction, LngLatHandler.directionOf(angle));
+            position[0] = start.lng();
+            position[1] = start.lat();
+            LngLatHandler.step(position, direction);
+            LngLat nextPosition = lngLatHandler.nextPosition(start, angle);
+            assertEquals(nextPosition.lng(), position[0]);
+            assertEquals(nextPosition.lat(), position[1]);
+        }
+        // hovering and angles off the compass are not directions
+        assertEquals(-1, LngLatHandler.directionOf(999));
+        assertEquals(-1, LngLatHandler.directionOf(10));
+        assertEquals(-1, LngLatHandler.directionOf(360));
+    }
 }
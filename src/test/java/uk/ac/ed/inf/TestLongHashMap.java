@@ -0,0 +1,39 @@
+package uk.ac.ed.inf;
+
+import junit.framework.TestCase;
+import uk.ac.ed.inf.utils.LongDoubleHashMap;
+import uk.ac.ed.inf.utils.LongLongHashMap;
+
+public class TestLongHashMap extends TestCase {
+    public void testPutAndGet() {
+        LongDoubleHashMap map = new LongDoubleHashMap(4);
+        assertEquals(-1.0, map.get(42, -1));
+        map.put(42, 1.5);
+        map.put(-42, 2.5);
+        assertEquals(1.5, map.get(42, -1));
+        assertEquals(2.5, map.get(-42, -1));
+        // overwrite keeps the id
+        int id = map.indexOf(42);
+        assertEquals(id, map.put(42, 3.5));
+        assertEquals(3.5, map.valueAt(id));
+        assertEquals(2, map.size());
+    }
+
+    public void testIdsSurviveGrowth() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        int entries = 10000;
+        for (int i = 0; i < entries; i++) {
+            // spread keys over all bytes like lattice keys
+            long key = i * 0x0101010101010101L;
+            assertEquals(i, map.put(key, -i));
+        }
+        assertEquals(entries, map.size());
+        for (int i = 0; i < entries; i++) {
+            long key = i * 0x0101010101010101L;
+            assertEquals(i, map.indexOf(key));
+            assertEquals(key, map.keyAt(i));
+            assertEquals(-i, map.get(key, 1));
+        }
+        assertFalse(map.containsKey(entries * 0x0101010101010101L));
+    }
+}
@@ -0,0 +1,98 @@
+package uk.ac.ed.inf;
+
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.RouteCache;
+
+import java.util.List;
+
+public class TestRouteCache extends TestCase {
+    LngLat origin = new LngLat(0, 0);
+
+    private List<Cell> getStraightPath() {
+        // origin -> 2 moves east -> hover at the destination
+        return List.of(
+                new Cell(new LngLat(0.00015, 0), 0),
+                new Cell(new LngLat(0.0003, 0), 0),
+                new Cell(new LngLat(0.0004, 0), Cell.HOVER_ANGLE)
+        );
+    }
+
+    public void testMissThenHit() {
+        RouteCache cache = new RouteCache();
+        LngLat destination = new LngLat(0.0004, 0);
+        assertNull(cache.get(origin, destination, 0));
+        cache.put(origin, destination, 0, getStraightPath());
+        assertEquals(getStraightPath().size(), cache.get(origin, destination, 0).size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testDifferentZonesMiss() {
+        RouteCache cache = new RouteCache();
+        LngLat destination = new LngLat(0.0004, 0);
+        NamedRegion zone = new NamedRegion("zone", new LngLat[] {new LngLat(1, 1), new LngLat(2, 2)});
+        long noZones = RouteCache.fingerprint(new NamedRegion[] {});
+        long oneZone = RouteCache.fingerprint(new NamedRegion[] {zone});
+        assertFalse(noZones == oneZone);
+
+        cache.put(origin, destination, noZones, getStraightPath());
+        assertNull(cache.get(origin, destination, oneZone));
+    }
+
+    public void testReversedPath() {
+        RouteCache cache = new RouteCache();
+        LngLat destination = new LngLat(0.0004, 0);
+        cache.put(origin, destination, 0, getStraightPath());
+
+        List<Cell> reversed = cache.get(destination, origin, 0);
+        assertEquals(1, cache.getReverseHits());
+        // [c2(999), c1(180), origin(180), origin(999)]
+        assertEquals(4, reversed.size());
+        assertEquals(Cell.HOVER_ANGLE, reversed.get(0).getEnterAngle());
+        assertEquals(new LngLat(0.0003, 0), reversed.get(0).getCoordinates());
+        assertEquals(180.0, reversed.get(1).getEnterAngle());
+        assertEquals(new LngLat(0.00015, 0), reversed.get(1).getCoordinates());
+        assertEquals(180.0, reversed.get(2).getEnterAngle());
+        assertEquals(origin, reversed.get(2).getCoordinates());
+        assertEquals(Cell.HOVER_ANGLE, reversed.get(3).getEnterAngle());
+        assertEquals(origin, reversed.get(3).getCoordinates());
+    }
+
+    public void testLruEviction() {
+        RouteCache cache = new RouteCache(RouteCache.EvictionPolicy.LRU, 2);
+        LngLat a = new LngLat(1, 0);
+        LngLat b = new LngLat(2, 0);
+        LngLat c = new LngLat(3, 0);
+        cache.put(origin, a, 0, getStraightPath());
+        cache.put(origin, b, 0, getStraightPath());
+        // touch `a` so that `b` is the least recently used
+        cache.get(origin, a, 0);
+        cache.put(origin, c, 0, getStraightPath());
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(origin, a, 0));
+        assertNull(cache.get(origin, b, 0));
+    }
+
+    public void testFifoEviction() {
+        RouteCache cache = new RouteCache(RouteCache.EvictionPolicy.FIFO, 2);
+        LngLat a = new LngLat(1, 0);
+        LngLat b = new LngLat(2, 0);
+        LngLat c = new LngLat(3, 0);
+        cache.put(origin, a, 0, getStraightPath());
+        cache.put(origin, b, 0, getStraightPath());
+        cache.get(origin, a, 0);
+        cache.put(origin, c, 0, getStraightPath());
+        assertNull(cache.get(origin, a, 0));
+        assertNotNull(cache.get(origin, b, 0));
+    }
+
+    public void testNoEviction() {
+        RouteCache cache = new RouteCache(RouteCache.EvictionPolicy.NONE, 1);
+        cache.put(origin, new LngLat(1, 0), 0, getStraightPath());
+        cache.put(origin, new LngLat(2, 0), 0, getStraightPath());
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,303 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.SearchStatistics;
+import uk.ac.ed.inf.path.SearchStrategy;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.PreparedRegion;
+import uk.ac.ed.inf.utils.ZoneIndex;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+public class TestSearchStrategy extends TestCase {
+    LngLat tower = new LngLat(-3.186874, 55.944494);
+    LngLat[] restaurants = new LngLat[] {
+            new LngLat(-3.1912869215011597, 55.945535152517735),
+            new LngLat(-3.202541470527649, 55.943284737579376),
+            new LngLat(-3.1940174102783203, 55.94390696616939),
+            new LngLat(-3.179798972064253, 55.939884084483)
+    };
+    LngLatHandler lngLatHandler = new LngLatHandler();
+    NamedRegion[] zones;
+
+    @Override
+    protected void setUp() throws Exception {
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            zones = new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+    }
+
+    private AStarPathFinder pathFinder(SearchStrategy strategy) {
+        AStarPathFinder pathFinder = new AStarPathFinder();
+        pathFinder.updateZones(zones, null);
+        pathFinder.setSearchStrategy(strategy);
+        return pathFinder;
+    }
+
+    /**
+     * checks every move of the path is a lattice move outside the zones
+     * and that it ends with a hover at the destination from within the close distance
+     */
+    private void assertValidPath(LngLat origin, LngLat destination, List<Cell> path) {
+        ZoneIndex noFlyZones = new ZoneIndex(zones);
+        LngLat previous = origin;
+        for (Cell cell : path.subList(0, path.size() - 1)) {
+            LngLat expected = lngLatHandler.nextPosition(previous, cell.getEnterAngle());
+            LngLat position = cell.getCoordinates();
+            assertEquals(expected.lng(), position.lng(), 1e-12);
+            assertEquals(expected.lat(), position.lat(), 1e-12);
+            assertFalse(noFlyZones.contains(position.lng(), position.lat()));
+            previous = position;
+        }
+        assertTrue(lngLatHandler.isCloseTo(previous, destination));
+        assertEquals(destination, path.get(path.size() - 1).getCoordinates());
+        assertEquals(Cell.HOVER_ANGLE, path.get(path.size() - 1).getEnterAngle());
+    }
+
+    public void testBidirectionalMatchesAStar() {
+        AStarPathFinder astar = pathFinder(SearchStrategy.ASTAR);
+        AStarPathFinder bidirectional = pathFinder(SearchStrategy.BIDIRECTIONAL);
+        for (LngLat restaurant : restaurants) {
+            List<Cell> outbound = bidirectional.findShortestPath(tower, restaurant);
+            List<Cell> inbound = bidirectional.findShortestPath(restaurant, tower);
+            assertValidPath(tower, restaurant, outbound);
+            assertValidPath(restaurant, tower, inbound);
+            assertEquals(astar.findShortestPath(tower, restaurant).size(), outbound.size());
+            assertEquals(astar.findShortestPath(restaurant, tower).size(), inbound.size());
+        }
+    }
+
+    /**
+     * two walls 6 moves thick, side by side with a slit of a fifth of a move between them at the given point
+     */
+    static NamedRegion[] slit(LngLat bottom) {
+        double move = SystemConstants.DRONE_MOVE_DISTANCE;
+        double[][] walls = {{-30 * move, -0.1 * move}, {0.1 * move, 30 * move}};
+        NamedRegion[] regions = new NamedRegion[walls.length];
+        for (int i = 0; i < walls.length; i++) {
+            double x1 = bottom.lng() + walls[i][0], x2 = bottom.lng() + walls[i][1];
+            double y1 = bottom.lat(), y2 = bottom.lat() + 6 * move;
+            regions[i] = new NamedRegion("wall " + i, new LngLat[] {
+                    new LngLat(x1, y1), new LngLat(x2, y1), new LngLat(x2, y2), new LngLat(x1, y2)});
+        }
+        return regions;
+    }
+
+    public void testBidirectionalEndsCloseThroughSlit() {
+        double move = SystemConstants.DRONE_MOVE_DISTANCE;
+        zones = slit(tower);
+        LngLat origin = new LngLat(tower.lng(), tower.lat() - 3 * move);
+        LngLat destination = new LngLat(tower.lng(), tower.lat() + 9 * move);
+        // the meeting nodes are just within the close distance, the replayed end just outside
+        List<Cell> path = pathFinder(SearchStrategy.BIDIRECTIONAL).findShortestPath(origin, destination);
+        assertValidPath(origin, destination, path);
+        assertEquals(pathFinder(SearchStrategy.ASTAR).findShortestPath(origin, destination).size(), path.size());
+    }
+
+    /**
+     * rotated rectangles scattered around the tower
+     */
+    static NamedRegion[] randomZones(LngLat centre, Random random) {
+        NamedRegion[] regions = new NamedRegion[6];
+        for (int i = 0; i < regions.length; i++) {
+            double x = centre.lng() + (random.nextDouble() - 0.5) * 0.006;
+            double y = centre.lat() + (random.nextDouble() - 0.5) * 0.006;
+            double width = 0.0002 + random.nextDouble() * 0.0008, height = 0.0002 + random.nextDouble() * 0.0008;
+            double angle = random.nextDouble() * Math.PI;
+            LngLat[] vertices = new LngLat[4];
+            for (int k = 0; k < vertices.length; k++) {
+                double dx = k == 1 || k == 2 ? width : -width, dy = k >= 2 ? height : -height;
+                vertices[k] = new LngLat(x + dx * Math.cos(angle) - dy * Math.sin(angle),
+                        y + dx * Math.sin(angle) + dy * Math.cos(angle));
+            }
+            regions[i] = new NamedRegion("zone " + i, vertices);
+        }
+        return regions;
+    }
+
+    public void testBidirectionalAmongRandomZones() {
+        // zone layouts where some meetings come out a move longer than the shortest path
+        for (int seed : new int[] {4, 7, 11}) {
+            Random random = new Random(seed);
+            zones = randomZones(tower, random);
+            ZoneIndex noFlyZones = new ZoneIndex(zones);
+            AStarPathFinder astar = pathFinder(SearchStrategy.ASTAR);
+            AStarPathFinder bidirectional = pathFinder(SearchStrategy.BIDIRECTIONAL);
+            for (int i = 0; i < 8; i++) {
+                LngLat destination;
+                do {
+                    destination = new LngLat(tower.lng() + (random.nextDouble() - 0.5) * 0.008,
+                            tower.lat() + (random.nextDouble() - 0.5) * 0.008);
+                } while (noFlyZones.contains(destination.lng(), destination.lat()));
+                SearchStatistics statistics = new SearchStatistics();
+                List<Cell> path = bidirectional.findShortestPath(tower, destination, statistics);
+                int shortest = astar.findShortestPath(tower, destination).size();
+                assertValidPath(tower, destination, path);
+                assertTrue(path.size() >= shortest);
+                assertTrue(path.size() <= shortest + 1);
+                assertEquals(Double.POSITIVE_INFINITY, statistics.getSuboptimalityBound());
+            }
+        }
+    }
+
+    public void testPreparedZonesMatchNamedZones() {
+        AStarPathFinder named = pathFinder(SearchStrategy.ASTAR);
+        AStarPathFinder prepared = new AStarPathFinder();
+        prepared.updateZones(PreparedRegion.prepare(zones), null);
+        for (LngLat restaurant : restaurants) {
+            List<Cell> expected = named.findShortestPath(tower, restaurant);
+            List<Cell> actual = prepared.findShortestPath(tower, restaurant);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getCoordinates(), actual.get(i).getCoordinates());
+            }
+        }
+    }
+
+    public void testBidirectionalCloseDestination() {
+        // already within the close distance: a single hover
+        LngLat destination = new LngLat(tower.lng() + 0.0001, tower.lat());
+        List<Cell> path = pathFinder(SearchStrategy.BIDIRECTIONAL).findShortestPath(tower, destination);
+        assertEquals(1, path.size());
+        assertEquals(Cell.HOVER_ANGLE, path.get(0).getEnterAngle());
+    }
+
+    public void testJumpPointMatchesAStar() {
+        AStarPathFinder astar = pathFinder(SearchStrategy.ASTAR);
+        AStarPathFinder jumpPoint = pathFinder(SearchStrategy.JUMP_POINT);
+        for (LngLat restaurant : restaurants) {
+            List<Cell> outbound = jumpPoint.findShortestPath(tower, restaurant);
+            List<Cell> inbound = jumpPoint.findShortestPath(restaurant, tower);
+            assertValidPath(tower, restaurant, outbound);
+            assertValidPath(restaurant, tower, inbound);
+            assertEquals(astar.findShortestPath(tower, restaurant).size(), outbound.size());
+            assertEquals(astar.findShortestPath(restaurant, tower).size(), inbound.size());
+        }
+    }
+
+    public void testJumpPointAroundWall() {
+        // thin tilted wall across the straight line, the path has to turn at one of its ends
+        zones = new NamedRegion[] {new NamedRegion("wall", new LngLat[] {
+                new LngLat(-3.1850, 55.9430), new LngLat(-3.1846, 55.9431),
+                new LngLat(-3.1842, 55.9460), new LngLat(-3.1846, 55.9459), new LngLat(-3.1850, 55.9430)})};
+        LngLat destination = new LngLat(-3.1820, 55.9448);
+        List<Cell> path = pathFinder(SearchStrategy.JUMP_POINT).findShortestPath(tower, destination);
+        assertValidPath(tower, destination, path);
+        assertEquals(pathFinder(SearchStrategy.ASTAR).findShortestPath(tower, destination).size(), path.size());
+    }
+
+    public void testAnytimeWithoutBudgetMatchesAStar() {
+        AStarPathFinder astar = pathFinder(SearchStrategy.ASTAR);
+        AStarPathFinder anytime = pathFinder(SearchStrategy.ANYTIME);
+        for (LngLat restaurant : restaurants) {
+            SearchStatistics statistics = new SearchStatistics();
+            List<Cell> inbound = anytime.findShortestPath(restaurant, tower, statistics);
+            assertValidPath(restaurant, tower, inbound);
+            assertEquals(astar.findShortestPath(restaurant, tower).size(), inbound.size());
+            assertEquals(1.0, statistics.getSuboptimalityBound());
+            assertFalse(statistics.isBudgetExhausted());
+        }
+    }
+
+    public void testAnytimeStopsAtBudget() {
+        LngLat restaurant = restaurants[1];
+        int shortest = pathFinder(SearchStrategy.ASTAR).findShortestPath(restaurant, tower).size();
+        AStarPathFinder anytime = pathFinder(SearchStrategy.ANYTIME);
+        anytime.setSearchBudget(500, Long.MAX_VALUE);
+        SearchStatistics statistics = new SearchStatistics();
+        List<Cell> path = anytime.findShortestPath(restaurant, tower, statistics);
+        assertValidPath(restaurant, tower, path);
+        assertTrue(statistics.isBudgetExhausted());
+        assertEquals(500, statistics.getExpandedNodes());
+        // the first pass found a path, the bound it proves holds
+        assertTrue(statistics.getSuboptimalityBound() < 3);
+        assertTrue(path.size() - 1 <= statistics.getSuboptimalityBound() * (shortest - 1) + 1e-9);
+        // an unreachable destination ends at the deadline instead of exhausting the lattice
+        anytime.setSearchBudget(Long.MAX_VALUE, 20_000_000L);
+        statistics = new SearchStatistics();
+        assertTrue(anytime.findShortestPath(tower, new LngLat(10, 10), statistics).isEmpty());
+        assertTrue(statistics.isBudgetExhausted());
+        assertEquals(Double.POSITIVE_INFINITY, statistics.getSuboptimalityBound());
+    }
+
+    public void testIdaStarMatchesAStar() {
+        AStarPathFinder astar = pathFinder(SearchStrategy.ASTAR);
+        AStarPathFinder idaStar = pathFinder(SearchStrategy.IDA_STAR);
+        idaStar.setNodeCap(4096);
+        for (LngLat restaurant : restaurants) {
+            List<Cell> outbound = idaStar.findShortestPath(tower, restaurant);
+            List<Cell> inbound = idaStar.findShortestPath(restaurant, tower);
+            assertValidPath(tower, restaurant, outbound);
+            assertValidPath(restaurant, tower, inbound);
+            assertEquals(astar.findShortestPath(tower, restaurant).size(), outbound.size());
+            assertEquals(astar.findShortestPath(restaurant, tower).size(), inbound.size());
+        }
+    }
+
+    public void testLazyCollisionChecksMatchAStar() {
+        AStarPathFinder astar = pathFinder(SearchStrategy.ASTAR);
+        AStarPathFinder lazy = pathFinder(SearchStrategy.ASTAR);
+        lazy.setLazyCollisionChecks(true);
+        SearchStatistics eagerStatistics = new SearchStatistics();
+        SearchStatistics lazyStatistics = new SearchStatistics();
+        for (LngLat restaurant : restaurants) {
+            List<Cell> outbound = lazy.findShortestPath(tower, restaurant, lazyStatistics);
+            List<Cell> inbound = lazy.findShortestPath(restaurant, tower, lazyStatistics);
+            assertValidPath(tower, restaurant, outbound);
+            assertValidPath(restaurant, tower, inbound);
+            assertEquals(astar.findShortestPath(tower, restaurant, eagerStatistics).size(), outbound.size());
+            assertEquals(astar.findShortestPath(restaurant, tower, eagerStatistics).size(), inbound.size());
+        }
+        // only the expanded nodes are tested
+        assertTrue(lazyStatistics.getCollisionChecks() * 4 < eagerStatistics.getCollisionChecks());
+    }
+
+    public void testHierarchicalStaysCloseToAStar() {
+        AStarPathFinder astar = pathFinder(SearchStrategy.ASTAR);
+        AStarPathFinder hierarchical = pathFinder(SearchStrategy.HIERARCHICAL);
+        for (LngLat restaurant : restaurants) {
+            List<Cell> outbound = hierarchical.findShortestPath(tower, restaurant);
+            List<Cell> inbound = hierarchical.findShortestPath(restaurant, tower);
+            assertValidPath(tower, restaurant, outbound);
+            assertValidPath(restaurant, tower, inbound);
+            // the waypoints cost a few moves at most
+            assertTrue(outbound.size() <= astar.findShortestPath(tower, restaurant).size() * 1.1);
+            assertTrue(inbound.size() <= astar.findShortestPath(restaurant, tower).size() * 1.1);
+        }
+    }
+
+    public void testSealedDestinationIsRejected() {
+        LngLat destination = new LngLat(-3.1820, 55.9448);
+        zones = TestZoneRaster.courtyard(destination);
+        for (SearchStrategy strategy : SearchStrategy.values()) {
+            SearchStatistics statistics = new SearchStatistics();
+            AStarPathFinder pathFinder = pathFinder(strategy);
+            assertFalse(pathFinder.isReachable(tower, destination));
+            assertTrue(pathFinder.findShortestPath(tower, destination, statistics).isEmpty());
+            assertEquals(0, statistics.getExpandedNodes());
+        }
+    }
+
+    public void testFromName() {
+        assertEquals(SearchStrategy.ASTAR, SearchStrategy.fromName("astar"));
+        assertEquals(SearchStrategy.BIDIRECTIONAL, SearchStrategy.fromName("Bidirectional"));
+        assertEquals(SearchStrategy.JUMP_POINT, SearchStrategy.fromName("jump_point"));
+        assertEquals(SearchStrategy.ANYTIME, SearchStrategy.fromName("anytime"));
+        assertEquals(SearchStrategy.IDA_STAR, SearchStrategy.fromName("ida_star"));
+        assertEquals(SearchStrategy.HIERARCHICAL, SearchStrategy.fromName("hierarchical"));
+        try {
+            SearchStrategy.fromName("dfs");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown search strategy: dfs", e.getMessage());
+        }
+    }
+}
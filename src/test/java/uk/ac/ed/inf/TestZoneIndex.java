@@ -0,0 +1,78 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.ZoneIndex;
+
+import java.io.InputStream;
+import java.util.Random;
+
+public class TestZoneIndex extends TestCase {
+    LngLatHandler lngLatHandler = new LngLatHandler();
+
+    private boolean isInAnyRegion(NamedRegion[] regions, double x, double y) {
+        for (NamedRegion region : regions) {
+            if (lngLatHandler.isInRegion(x, y, region)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void testMatchesRayCastOnEdinburghZones() throws Exception {
+        NamedRegion[] zones;
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            zones = new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+        ZoneIndex index = new ZoneIndex(zones);
+        assertEquals(zones.length, index.size());
+        Random random = new Random(7);
+        int inside = 0;
+        for (int i = 0; i < 100000; i++) {
+            double x = -3.195 + random.nextDouble() * 0.012;
+            double y = 55.940 + random.nextDouble() * 0.008;
+            boolean expected = isInAnyRegion(zones, x, y);
+            assertEquals(expected, index.contains(x, y));
+            inside += expected ? 1 : 0;
+        }
+        // the sampled area covers both zones and free space
+        assertTrue(inside > 0 && inside < 100000);
+    }
+
+    public void testConcaveAndOverlappingRegions() {
+        // U shape with a notch between x = 1 and x = 2, and a square overlapping its right arm
+        NamedRegion u = new NamedRegion("u", new LngLat[] {
+                new LngLat(0, 0), new LngLat(3, 0), new LngLat(3, 3), new LngLat(2, 3),
+                new LngLat(2, 1), new LngLat(1, 1), new LngLat(1, 3), new LngLat(0, 3)
+        });
+        NamedRegion square = new NamedRegion("square", new LngLat[] {
+                new LngLat(2.5, 2.5), new LngLat(4, 2.5), new LngLat(4, 4), new LngLat(2.5, 4)
+        });
+        NamedRegion[] regions = new NamedRegion[] {u, square};
+        ZoneIndex index = new ZoneIndex(regions);
+        assertTrue(index.contains(0.5, 2));
+        assertFalse(index.contains(1.5, 2));
+        assertTrue(index.contains(3.5, 3.5));
+        assertFalse(index.contains(5, 5));
+        assertFalse(index.contains(Double.NaN, 1));
+        // the ray-cast counts points level with the bottom vertex as inside, the bounding box rules them out
+        assertTrue(lngLatHandler.isInRegion(-0.5, 0, u));
+        assertFalse(index.contains(-0.5, 0));
+        // elsewhere (off the vertex rows) the results are the same
+        for (double x = -0.5; x <= 4.5; x += 0.125) {
+            for (double y = -0.4375; y <= 4.5; y += 0.125) {
+                assertEquals(isInAnyRegion(regions, x, y), index.contains(x, y));
+            }
+        }
+    }
+
+    public void testEmptyIndex() {
+        ZoneIndex index = new ZoneIndex(new NamedRegion[] {});
+        assertEquals(0, index.size());
+        assertFalse(index.contains(0, 0));
+        assertFalse(new ZoneIndex(new NamedRegion[] {new NamedRegion("empty", new LngLat[] {})}).contains(0, 0));
+    }
+}
@@ -0,0 +1,157 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.utils.ZoneIndex;
+import uk.ac.ed.inf.utils.ZoneRaster;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+public class TestZoneRaster extends TestCase {
+    NamedRegion centralArea = new NamedRegion("central", new LngLat[] {
+            new LngLat(-3.192473, 55.946233), new LngLat(-3.192473, 55.942617),
+            new LngLat(-3.184319, 55.942617), new LngLat(-3.184319, 55.946233)
+    });
+
+    private NamedRegion[] loadNoFlyZones() throws Exception {
+        try (InputStream stream = getClass().getResourceAsStream("/noFlyZones.json")) {
+            return new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+    }
+
+    public void testMatchesZoneIndex() throws Exception {
+        NamedRegion[] zones = loadNoFlyZones();
+        ZoneIndex index = new ZoneIndex(zones);
+        ZoneRaster raster = new ZoneRaster(zones, centralArea, SystemConstants.DRONE_MOVE_DISTANCE);
+        Random random = new Random(11);
+        for (int i = 0; i < 200000; i++) {
+            double x = -3.195 + random.nextDouble() * 0.012;
+            double y = 55.940 + random.nextDouble() * 0.008;
+            assertEquals(index.contains(x, y), raster.contains(x, y));
+        }
+    }
+
+    public void testConcaveRegionAtCoarseResolution() {
+        NamedRegion u = new NamedRegion("u", new LngLat[] {
+                new LngLat(0, 0), new LngLat(3, 0), new LngLat(3, 3), new LngLat(2, 3),
+                new LngLat(2, 1), new LngLat(1, 1), new LngLat(1, 3), new LngLat(0, 3)
+        });
+        NamedRegion[] regions = new NamedRegion[] {u};
+        ZoneIndex index = new ZoneIndex(regions);
+        // from cells much smaller than the notch to cells larger than it (nearly every cell is an edge cell)
+        // the points are kept off the vertex rows, where the ray-cast itself is unreliable
+        for (double resolution : new double[] {0.1, 0.7, 2}) {
+            ZoneRaster raster = new ZoneRaster(regions, null, resolution);
+            for (double x = -0.5; x <= 3.5; x += 0.0625) {
+                for (double y = -0.46875; y <= 3.5; y += 0.0625) {
+                    assertEquals(index.contains(x, y), raster.contains(x, y));
+                }
+            }
+            assertFalse(raster.isInCentralArea(1.5, 1.5));
+        }
+    }
+
+    public void testCentralArea() throws Exception {
+        ZoneRaster raster = new ZoneRaster(loadNoFlyZones(), centralArea, SystemConstants.DRONE_MOVE_DISTANCE);
+        // Appleton Tower is in the central area, the restaurants in the meadows are not
+        assertTrue(raster.isInCentralArea(-3.186874, 55.944494));
+        assertFalse(raster.isInCentralArea(-3.1810810679852035, 55.938910643735845));
+        assertTrue(raster.getMemoryBytes() > 0);
+    }
+
+    public void testEmptyRaster() {
+        ZoneRaster raster = new ZoneRaster(new NamedRegion[] {}, null, SystemConstants.DRONE_MOVE_DISTANCE);
+        assertFalse(raster.contains(0, 0));
+        assertFalse(raster.isInCentralArea(0, 0));
+        assertEquals(0, raster.getMemoryBytes());
+    }
+
+    public void testSamePathsWithRaster() throws Exception {
+        AStarPathFinder exact = new AStarPathFinder();
+        AStarPathFinder rasterized = new AStarPathFinder();
+        exact.updateZones(loadNoFlyZones(), centralArea);
+        rasterized.updateZones(loadNoFlyZones(), centralArea);
+        rasterized.setZoneRasterization(true);
+        LngLat tower = new LngLat(-3.186874, 55.944494);
+        // Sora Lella, on the far side of the zones
+        LngLat restaurant = new LngLat(-3.202541470527649, 55.943284737579376);
+        List<Cell> expected = exact.findShortestPath(tower, restaurant);
+        List<Cell> actual = rasterized.findShortestPath(tower, restaurant);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCoordinates(), actual.get(i).getCoordinates());
+        }
+    }
+
+    /**
+     * four walls, each 4 moves thick, around a square courtyard 20 moves wide centred at the given point
+     */
+    static NamedRegion[] courtyard(LngLat centre) {
+        double inner = 10 * SystemConstants.DRONE_MOVE_DISTANCE, outer = 14 * SystemConstants.DRONE_MOVE_DISTANCE;
+        double[][] walls = {
+                {-outer, -outer, outer, -inner}, {-outer, inner, outer, outer},
+                {-outer, -inner, -inner, inner}, {inner, -inner, outer, inner}};
+        NamedRegion[] regions = new NamedRegion[walls.length];
+        for (int i = 0; i < walls.length; i++) {
+            double x1 = centre.lng() + walls[i][0], y1 = centre.lat() + walls[i][1];
+            double x2 = centre.lng() + walls[i][2], y2 = centre.lat() + walls[i][3];
+            regions[i] = new NamedRegion("wall " + i, new LngLat[] {
+                    new LngLat(x1, y1), new LngLat(x2, y1), new LngLat(x2, y2), new LngLat(x1, y2)});
+        }
+        return regions;
+    }
+
+    public void testReachability() throws Exception {
+        LngLat centre = new LngLat(-3.1820, 55.9448);
+        ZoneRaster raster = new ZoneRaster(courtyard(centre), null, SystemConstants.DRONE_MOVE_DISTANCE);
+        assertEquals(2, raster.getComponentCount());
+        LngLat outside = new LngLat(-3.186874, 55.944494);
+        double close = SystemConstants.DRONE_IS_CLOSE_DISTANCE;
+        assertFalse(raster.isReachable(outside, centre, close));
+        assertFalse(raster.isReachable(centre, outside, close));
+        assertTrue(raster.isReachable(centre, new LngLat(centre.lng() + 0.0005, centre.lat()), close));
+        assertTrue(raster.isReachable(outside, new LngLat(10, 10), close));
+        // the Edinburgh zones do not enclose anything
+        ZoneRaster edinburgh = new ZoneRaster(loadNoFlyZones(), centralArea, SystemConstants.DRONE_MOVE_DISTANCE);
+        assertEquals(1, edinburgh.getComponentCount());
+    }
+
+    public void testSubCellGapIsNotSealed() throws Exception {
+        LngLat centre = new LngLat(-3.1820, 55.9448);
+        double move = SystemConstants.DRONE_MOVE_DISTANCE;
+        // the bottom wall of the courtyard is split by a gap a tenth of a cell wide, off the cell borders
+        NamedRegion[] walls = courtyard(centre);
+        LngLat[] bottom = walls[0].vertices();
+        double gapLeft = centre.lng() + 0.3 * move, gapRight = centre.lng() + 0.4 * move;
+        NamedRegion[] zones = {
+                new NamedRegion("bottom left", new LngLat[] {bottom[0], new LngLat(gapLeft, bottom[0].lat()),
+                        new LngLat(gapLeft, bottom[2].lat()), bottom[3]}),
+                new NamedRegion("bottom right", new LngLat[] {new LngLat(gapRight, bottom[0].lat()), bottom[1],
+                        bottom[2], new LngLat(gapRight, bottom[2].lat())}),
+                walls[1], walls[2], walls[3]};
+        ZoneRaster raster = new ZoneRaster(zones, null, move);
+        assertEquals(1, raster.getComponentCount());
+
+        // flying straight north keeps the drone in the gap
+        double x = (gapLeft + gapRight) / 2;
+        LngLat origin = new LngLat(x, centre.lat() - 20 * move);
+        LngLat destination = new LngLat(x, centre.lat());
+        assertTrue(raster.isReachable(origin, destination, SystemConstants.DRONE_IS_CLOSE_DISTANCE));
+        AStarPathFinder pathFinder = new AStarPathFinder();
+        pathFinder.updateZones(zones, null);
+        List<Cell> path = pathFinder.findShortestPath(origin, destination);
+        assertFalse(path.isEmpty());
+        ZoneIndex index = new ZoneIndex(zones);
+        for (Cell cell : path) {
+            assertFalse(index.contains(cell.getCoordinates().lng(), cell.getCoordinates().lat()));
+        }
+    }
+}
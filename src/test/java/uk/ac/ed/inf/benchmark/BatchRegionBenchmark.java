@@ -0,0 +1,79 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.PreparedRegion;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch point-in-regions test of the 16 neighbours of a node, as one A* expansion does,
+ * scalar against the Vector API (LngLatHandler.inAnyRegion), on the Edinburgh noFlyZones alone and with 200 more.
+ * The vector path needs both profiles, otherwise both measure the scalar one (the setup prints which):
+ * mvn -P benchmark,vector test-compile exec:exec -Djmh.args="BatchRegionBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchRegionBenchmark {
+    private static final int NODES = 1 << 10;
+    private static final int NEIGHBOURS = LngLatHandler.DIRECTIONS;
+
+    @Param({"0", "200"})
+    public int extraZones;
+
+    private final LngLatHandler lngLatHandler = new LngLatHandler();
+    private PreparedRegion[] regions;
+    // neighbours of every node, NEIGHBOURS per node
+    private final double[] xs = new double[NODES * NEIGHBOURS];
+    private final double[] ys = new double[NODES * NEIGHBOURS];
+    private final double[] batchXs = new double[NEIGHBOURS];
+    private final double[] batchYs = new double[NEIGHBOURS];
+
+    @Setup
+    public void setUp() throws Exception {
+        regions = PreparedRegion.prepare(EdinburghFixture.loadNoFlyZones(extraZones, 1));
+        System.out.printf("%nvectorized: %b%n", LngLatHandler.isBatchVectorized());
+        Random random = new Random(2);
+        double[] position = new double[2];
+        for (int node = 0; node < NODES; node++) {
+            double lng = -3.195 + random.nextDouble() * 0.012;
+            double lat = 55.940 + random.nextDouble() * 0.008;
+            for (int direction = 0; direction < NEIGHBOURS; direction++) {
+                position[0] = lng;
+                position[1] = lat;
+                LngLatHandler.step(position, direction);
+                xs[node * NEIGHBOURS + direction] = position[0];
+                ys[node * NEIGHBOURS + direction] = position[1];
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public long scalar() {
+        long blocked = 0;
+        for (int node = 0; node < NODES; node++) {
+            System.arraycopy(xs, node * NEIGHBOURS, batchXs, 0, NEIGHBOURS);
+            System.arraycopy(ys, node * NEIGHBOURS, batchYs, 0, NEIGHBOURS);
+            blocked += Long.bitCount(LngLatHandler.inAnyRegionScalar(batchXs, batchYs, NEIGHBOURS, regions));
+        }
+        return blocked;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public long vector() {
+        long blocked = 0;
+        for (int node = 0; node < NODES; node++) {
+            System.arraycopy(xs, node * NEIGHBOURS, batchXs, 0, NEIGHBOURS);
+            System.arraycopy(ys, node * NEIGHBOURS, batchYs, 0, NEIGHBOURS);
+            blocked += Long.bitCount(lngLatHandler.inAnyRegion(batchXs, batchYs, NEIGHBOURS, regions));
+        }
+        return blocked;
+    }
+}
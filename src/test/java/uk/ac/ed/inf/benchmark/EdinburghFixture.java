@@ -0,0 +1,71 @@
+package uk.ac.ed.inf.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Edinburgh data shared by the benchmarks:
+ * the noFlyZones served by the ILP REST service (src/test/resources/noFlyZones.json)
+ * and the restaurants the drone visits on the recorded days in `resultfiles/`
+ */
+public class EdinburghFixture {
+    public static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+
+    public static final LngLat[] RESTAURANTS = new LngLat[] {
+            // Civerinos Slice
+            new LngLat(-3.1912869215011597, 55.945535152517735),
+            // Sora Lella Vegan Restaurant
+            new LngLat(-3.202541470527649, 55.943284737579376),
+            // Domino's Pizza - Edinburgh - Southside
+            new LngLat(-3.1838572025299072, 55.94449876875712),
+            // Sodeberg Pavillion
+            new LngLat(-3.1940174102783203, 55.94390696616939),
+            // La Trattoria
+            new LngLat(-3.1810810679852035, 55.938910643735845),
+            // Halal Pizza
+            new LngLat(-3.185428203143916, 55.945846113595),
+            // World of Pizza
+            new LngLat(-3.179798972064253, 55.939884084483),
+    };
+
+    /**
+     * @return noFlyZones of the recorded days
+     */
+    public static NamedRegion[] loadNoFlyZones() throws IOException {
+        try (InputStream stream = EdinburghFixture.class.getResourceAsStream("/noFlyZones.json")) {
+            return new ObjectMapper().readValue(stream, NamedRegion[].class);
+        }
+    }
+
+    /**
+     * Edinburgh noFlyZones plus extra random 12-sided zones (up to ~300m across) scattered over
+     * a 0.15 x 0.08 degree box around the city, for loads with more and larger zones than the recorded days
+     * @param extraZones - number of zones to add
+     * @param seed - random seed, the same seed gives the same zones
+     * @return zones
+     */
+    public static NamedRegion[] loadNoFlyZones(int extraZones, long seed) throws IOException {
+        NamedRegion[] edinburgh = loadNoFlyZones();
+        NamedRegion[] zones = Arrays.copyOf(edinburgh, edinburgh.length + extraZones);
+        Random random = new Random(seed);
+        for (int i = zones.length - extraZones; i < zones.length; i++) {
+            double lng = -3.25 + random.nextDouble() * 0.15;
+            double lat = 55.90 + random.nextDouble() * 0.08;
+            double size = 0.001 + random.nextDouble() * 0.003;
+            LngLat[] vertices = new LngLat[12];
+            for (int k = 0; k < vertices.length; k++) {
+                double angle = k * Math.PI / 6;
+                double radius = size * (0.6 + 0.4 * random.nextDouble());
+                vertices[k] = new LngLat(lng + radius * Math.cos(angle), lat + radius * Math.sin(angle));
+            }
+            zones[i] = new NamedRegion("synthetic-" + i, vertices);
+        }
+        return zones;
+    }
+}
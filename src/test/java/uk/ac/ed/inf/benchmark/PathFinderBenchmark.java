@@ -0,0 +1,75 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.Heuristic;
+import uk.ac.ed.inf.path.SearchStatistics;
+import uk.ac.ed.inf.path.SearchStrategy;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full searches between Appleton Tower and every restaurant of the recorded days
+ * around the Edinburgh noFlyZones, run with `-prof gc` to also get the allocation per search
+ * the number of expanded nodes and the moves of the found paths are reported as secondary results
+ * (euclidean is left out of the defaults, it expands a few hundred times more nodes on the long legs)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathFinderBenchmark {
+    // index into EdinburghFixture.RESTAURANTS
+    @Param({"0", "1", "2", "3", "4", "5", "6"})
+    public int restaurant;
+
+    // heuristic name, optionally followed by `:weight`
+    @Param({"lattice", "lattice:1.5", "lattice:2", "manhattan"})
+    public String heuristic;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long expandedNodes;
+        public long moves;
+    }
+
+    @Param({"astar", "bidirectional", "jump_point", "anytime", "ida_star", "hierarchical"})
+    public String strategy;
+
+    private AStarPathFinder pathFinder;
+    private LngLat restaurantLocation;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] nameAndWeight = heuristic.split(":");
+        double weight = nameAndWeight.length > 1 ? Double.parseDouble(nameAndWeight[1]) : 1;
+        pathFinder = new AStarPathFinder(Heuristic.fromName(nameAndWeight[0], weight));
+        pathFinder.updateZones(EdinburghFixture.loadNoFlyZones(), null);
+        pathFinder.setSearchStrategy(SearchStrategy.fromName(strategy));
+        restaurantLocation = EdinburghFixture.RESTAURANTS[restaurant];
+    }
+
+    @Benchmark
+    public List<Cell> outbound(Counters counters) {
+        SearchStatistics statistics = new SearchStatistics();
+        List<Cell> path = pathFinder.findShortestPath(EdinburghFixture.APPLETON_TOWER, restaurantLocation, statistics);
+        counters.expandedNodes += statistics.getExpandedNodes();
+        counters.moves += statistics.getPathLength();
+        return path;
+    }
+
+    @Benchmark
+    public List<Cell> inbound(Counters counters) {
+        SearchStatistics statistics = new SearchStatistics();
+        List<Cell> path = pathFinder.findShortestPath(restaurantLocation, EdinburghFixture.APPLETON_TOWER, statistics);
+        counters.expandedNodes += statistics.getExpandedNodes();
+        counters.moves += statistics.getPathLength();
+        return path;
+    }
+}
@@ -0,0 +1,73 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.utils.LngLatHandler;
+import uk.ac.ed.inf.utils.PreparedRegion;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LngLatHandler.isInRegion on the NamedRegions (vertices re-read, modulo and division per edge)
+ * against the same regions prepared once as PreparedRegions, for every Edinburgh noFlyZone.
+ * Half of the points are near the zones, so both the bounding-box rejection and the ray-cast are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionBenchmark {
+    private static final int POINTS = 1 << 14;
+
+    private final LngLatHandler lngLatHandler = new LngLatHandler();
+    private NamedRegion[] regions;
+    private PreparedRegion[] preparedRegions;
+    private final double[] xs = new double[POINTS];
+    private final double[] ys = new double[POINTS];
+
+    @Setup
+    public void setUp() throws Exception {
+        regions = EdinburghFixture.loadNoFlyZones();
+        preparedRegions = PreparedRegion.prepare(regions);
+        Random random = new Random(2);
+        for (int i = 0; i < POINTS; i++) {
+            // around the zones, then over the operating area
+            boolean near = i % 2 == 0;
+            xs[i] = near ? -3.195 + random.nextDouble() * 0.012 : -3.25 + random.nextDouble() * 0.15;
+            ys[i] = near ? 55.940 + random.nextDouble() * 0.008 : 55.90 + random.nextDouble() * 0.08;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int named() {
+        int inside = 0;
+        for (int i = 0; i < POINTS; i++) {
+            for (NamedRegion region : regions) {
+                if (lngLatHandler.isInRegion(xs[i], ys[i], region)) {
+                    inside++;
+                    break;
+                }
+            }
+        }
+        return inside;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int prepared() {
+        int inside = 0;
+        for (int i = 0; i < POINTS; i++) {
+            for (PreparedRegion region : preparedRegions) {
+                if (lngLatHandler.isInRegion(xs[i], ys[i], region)) {
+                    inside++;
+                    break;
+                }
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,102 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.Lattice;
+import uk.ac.ed.inf.utils.LongDoubleHashMap;
+import uk.ac.ed.inf.utils.LongLongHashMap;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the bookkeeping of an A* search (closed set, gScore and cameFrom updates for 16 neighbors
+ * of every expanded node) with the boxed collections findShortestPath used to have
+ * and with the primitive tables it uses now.
+ * Run with `-prof gc` and compare gc.alloc.rate.norm to see the allocation per search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchTablesBenchmark {
+    @Param({"1000", "10000"})
+    public int expansions;
+
+    private Lattice lattice;
+    // nodes in the order they are expanded
+    private long[] expanded;
+
+    @Setup
+    public void setUp() {
+        lattice = new Lattice(EdinburghFixture.APPLETON_TOWER);
+        // breadth-first order around the origin
+        expanded = new long[expansions];
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        HashSet<Long> seen = new HashSet<>();
+        queue.add(Lattice.ORIGIN_KEY);
+        seen.add(Lattice.ORIGIN_KEY);
+        for (int i = 0; i < expansions; i++) {
+            long key = queue.poll();
+            expanded[i] = key;
+            for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+                long next = lattice.step(key, direction);
+                if (seen.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int boxedTables() {
+        HashSet<Cell> closed = new HashSet<>();
+        HashMap<Cell, Cell> cameFrom = new HashMap<>();
+        HashMap<Cell, Double> gScore = new HashMap<>();
+        gScore.put(new Cell(lattice, Lattice.ORIGIN_KEY, Cell.HOVER_ANGLE), 0.0);
+        for (long key : expanded) {
+            Cell current = new Cell(lattice, key, 0);
+            closed.add(current);
+            double tentativeScore = gScore.getOrDefault(current, 0.0) + SystemConstants.DRONE_MOVE_DISTANCE;
+            for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+                Cell neighbor = new Cell(lattice, lattice.step(key, direction), Lattice.toAngle(direction));
+                if (closed.contains(neighbor)) {
+                    continue;
+                }
+                if (tentativeScore < gScore.getOrDefault(neighbor, Double.POSITIVE_INFINITY)) {
+                    cameFrom.put(neighbor, current);
+                    gScore.put(neighbor, tentativeScore);
+                }
+            }
+        }
+        return gScore.size() + cameFrom.size();
+    }
+
+    @Benchmark
+    public int primitiveTables() {
+        LongDoubleHashMap gScore = new LongDoubleHashMap(1 << 10);
+        LongLongHashMap cameFrom = new LongLongHashMap(1 << 10);
+        BitSet closed = new BitSet(1 << 10);
+        gScore.put(Lattice.ORIGIN_KEY, 0);
+        for (long key : expanded) {
+            int id = gScore.indexOf(key);
+            closed.set(id);
+            double tentativeScore = gScore.valueAt(id) + SystemConstants.DRONE_MOVE_DISTANCE;
+            for (int direction = 0; direction < Lattice.DIRECTIONS; direction++) {
+                long neighbor = lattice.step(key, direction);
+                int neighborId = gScore.indexOf(neighbor);
+                if (neighborId != -1 && closed.get(neighborId)) {
+                    continue;
+                }
+                if (neighborId == -1 || tentativeScore < gScore.valueAt(neighborId)) {
+                    cameFrom.put(neighbor, key);
+                    gScore.put(neighbor, tentativeScore);
+                }
+            }
+        }
+        return gScore.size() + cameFrom.size();
+    }
+}
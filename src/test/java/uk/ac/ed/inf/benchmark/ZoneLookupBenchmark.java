@@ -0,0 +1,76 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.utils.ZoneIndex;
+import uk.ac.ed.inf.utils.ZoneLookup;
+import uk.ac.ed.inf.utils.ZoneRaster;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collision checks against the exact zone index (bounding boxes + ray-cast)
+ * and against the occupancy bitmap, on the Edinburgh noFlyZones alone and with 200 more zones.
+ * `check` is the cost of one point, `build` the cost of preparing the zones after an update
+ * (run with `-prof gc` for its allocation), the size of the bitmap is printed by the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoneLookupBenchmark {
+    private static final int POINTS = 1 << 14;
+
+    @Param({"index", "raster"})
+    public String lookup;
+
+    @Param({"0", "200"})
+    public int extraZones;
+
+    private NamedRegion[] zones;
+    private ZoneLookup zoneLookup;
+    // points scattered over the operating area
+    private final double[] xs = new double[POINTS];
+    private final double[] ys = new double[POINTS];
+
+    @Setup
+    public void setUp() throws Exception {
+        zones = EdinburghFixture.loadNoFlyZones(extraZones, 1);
+        zoneLookup = build();
+        if (zoneLookup instanceof ZoneRaster raster) {
+            int[] dimensions = raster.getDimensions();
+            System.out.printf("%n%d x %d cells, %d KB%n",
+                    dimensions[0], dimensions[1], raster.getMemoryBytes() / 1024);
+        }
+        Random random = new Random(2);
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = -3.25 + random.nextDouble() * 0.15;
+            ys[i] = 55.90 + random.nextDouble() * 0.08;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int check() {
+        int inside = 0;
+        for (int i = 0; i < POINTS; i++) {
+            if (zoneLookup.contains(xs[i], ys[i])) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ZoneLookup build() {
+        if (lookup.equals("raster")) {
+            return new ZoneRaster(zones, null, SystemConstants.DRONE_MOVE_DISTANCE);
+        }
+        return new ZoneIndex(zones);
+    }
+}
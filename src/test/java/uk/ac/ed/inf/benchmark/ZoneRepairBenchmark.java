@@ -0,0 +1,96 @@
+package uk.ac.ed.inf.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.path.AStarPathFinder;
+import uk.ac.ed.inf.path.Cell;
+import uk.ac.ed.inf.path.IncrementalSearch;
+import uk.ac.ed.inf.path.LatticeHeuristic;
+import uk.ac.ed.inf.path.SearchStatistics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding one zone mid-day for a route that was already computed:
+ * `repair` updates the kept LPA* search of the route (IncrementalSearch), `replan` prepares the zones
+ * and searches the route again from scratch with AStarPathFinder.
+ * The zone is a square 6 moves wide, either across the middle of the route (`across`)
+ * or diagonally next to it (`aside`), where the repair has little or nothing to redo.
+ * Expanded nodes are reported as secondary results
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoneRepairBenchmark {
+    // half the side of the added zone
+    private static final double ZONE_RADIUS = 0.00045;
+
+    // index into EdinburghFixture.RESTAURANTS
+    @Param({"0", "1", "2", "3", "4", "5", "6"})
+    public int restaurant;
+
+    @Param({"across", "aside"})
+    public String placement;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long expandedNodes;
+    }
+
+    private NamedRegion[] zones;
+    private NamedRegion[] zonesWithRestriction;
+    private LngLat restaurantLocation;
+    private IncrementalSearch search;
+
+    @Setup(Level.Trial)
+    public void setUpZones() throws Exception {
+        zones = EdinburghFixture.loadNoFlyZones();
+        restaurantLocation = EdinburghFixture.RESTAURANTS[restaurant];
+        AStarPathFinder pathFinder = new AStarPathFinder(new LatticeHeuristic());
+        pathFinder.updateZones(zones, null);
+        List<Cell> path = pathFinder.findShortestPath(EdinburghFixture.APPLETON_TOWER, restaurantLocation);
+        LngLat middle = path.get(path.size() / 2).getCoordinates();
+        double offset = placement.equals("aside") ? 3 * ZONE_RADIUS : 0;
+        double lng = middle.lng() + offset, lat = middle.lat() + offset;
+        zonesWithRestriction = Arrays.copyOf(zones, zones.length + 1);
+        zonesWithRestriction[zones.length] = new NamedRegion("restriction", new LngLat[] {
+                new LngLat(lng - ZONE_RADIUS, lat - ZONE_RADIUS), new LngLat(lng + ZONE_RADIUS, lat - ZONE_RADIUS),
+                new LngLat(lng + ZONE_RADIUS, lat + ZONE_RADIUS), new LngLat(lng - ZONE_RADIUS, lat + ZONE_RADIUS)});
+    }
+
+    /**
+     * the repair changes the kept search, so every invocation gets a freshly computed one
+     */
+    @Setup(Level.Invocation)
+    public void setUpSearch() {
+        search = new IncrementalSearch(EdinburghFixture.APPLETON_TOWER, restaurantLocation, zones,
+                new LatticeHeuristic());
+        search.findPath(new SearchStatistics());
+    }
+
+    @Benchmark
+    public List<Cell> repair(Counters counters) {
+        SearchStatistics statistics = new SearchStatistics();
+        search.updateZones(zonesWithRestriction);
+        List<Cell> path = search.findPath(statistics);
+        counters.expandedNodes += statistics.getExpandedNodes();
+        return path;
+    }
+
+    @Benchmark
+    public List<Cell> replan(Counters counters) {
+        SearchStatistics statistics = new SearchStatistics();
+        AStarPathFinder pathFinder = new AStarPathFinder(new LatticeHeuristic());
+        pathFinder.updateZones(zonesWithRestriction, null);
+        List<Cell> path = pathFinder.findShortestPath(EdinburghFixture.APPLETON_TOWER, restaurantLocation, statistics);
+        counters.expandedNodes += statistics.getExpandedNodes();
+        return path;
+    }
+}